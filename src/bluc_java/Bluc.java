@@ -18,14 +18,19 @@ package bluc_java;
 import bluc_java.parser.Parser;
 import bluc_java.parser.expressions.Expr;
 import bluc_java.parser.expressions.ExprPrinter;
+import java.io.InputStreamReader;
 import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Main class of the program.
  */
 public class Bluc
 {
+    private static final String OFF_HEAP_TOKENS_FLAG = "--off-heap-tokens";
+    
     public static void main(String[] args)
     {
         if (args.length == 0)
@@ -36,20 +41,66 @@ public class Bluc
         
         Bluc.runParserTests();
         
-        var equalsIndex = args[0].indexOf("=");
-        var filePath = args[0].substring(equalsIndex + 1);
-        var lexer = new Lexer();
+        var filePaths = new ArrayList<String>();
+        var doUseOffHeapTokens = false;
+        
+        for (var arg : args)
+        {
+            if (arg.equals(OFF_HEAP_TOKENS_FLAG))
+            {
+                doUseOffHeapTokens = true;
+                continue;
+            }
+            
+            var equalsIndex = arg.indexOf("=");
+            filePaths.add(arg.substring(equalsIndex + 1));
+        }
+        
+        if (filePaths.contains("-"))
+        {
+            if (filePaths.size() > 1)
+            {
+                System.err.println("`-f=-` can't be combined with other files.");
+                return;
+            }
+            
+            Bluc.compileStdin();
+            return;
+        }
         
-        var lexResult = lexer.lexFile(filePath);
+        var sourceFiles = CompileDriver.findSourceFiles(filePaths, System.err);
         
-        if (lexResult.hasFailed())
+        if (sourceFiles == null)
         {
             return;
         }
         
-        var tokens = lexResult.data();
+        var pool
+            = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
         
-        Bluc.printLexerOutput(tokens);
+        try
+        {
+            var driver = new CompileDriver(pool);
+            driver.doUseOffHeapTokens(doUseOffHeapTokens);
+            
+            driver.compile(sourceFiles, System.out, System.err);
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+    }
+    
+    /**
+     * Compiles code that's piped into stdin. The code is lexed as the parser
+     *  reads it, so the whole token list is never held in memory.
+     */
+    private static void compileStdin()
+    {
+        var tokens
+            = new StreamingTokenSource(
+                new InputStreamReader(System.in, StandardCharsets.UTF_8),
+                "<stdin>");
         
         var parser = new Parser(tokens);
         parser.parse();
@@ -77,24 +128,28 @@ public class Bluc
         System.out.println("==== end of Parser tests ====\n");
     }
     
-    private static void printLexerOutput(ArrayList<Token> tokens)
+    static void printLexerOutput(TokenBuffer tokens, PrintStream out)
     {
-        var output = "Lexer output is ...< ";
+        var output = new StringBuilder("Lexer output is ...< ");
         
-        for (var token : tokens)
+        for (int i = 0; i < tokens.size(); i++)
         {
-            output += "`" + token.text() + "`, ";
+            output.append("`").append(tokens.text(i)).append("`, ");
         }
         
-        output += ">...";
+        output.append(">...");
         
-        System.out.println(output);
+        out.println(output);
     }
     
     
     private static void printHelp(PrintStream out)
     {
         out.println("-f= flag: \t\t-f=fileNameHere\t\twhere `fileNameHere` " +
-                "is the file to compile");
+                "is the file to compile, or `-` to read it from stdin.\n" +
+                "\t\t\tMay be given more than once, and may be a directory " +
+                "or a glob pattern.");
+        out.println(OFF_HEAP_TOKENS_FLAG + " flag: \t\tstore tokens " +
+                "outside of the Java heap, for very large files.");
     }
 }
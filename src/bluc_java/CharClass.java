@@ -0,0 +1,117 @@
+/*
+ * Copyright 2023 John Schneider.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bluc_java;
+
+/**
+ * Classifies chars for the lexer. ASCII chars are classified with a single
+ *  lookup in a precomputed table; other chars go through a slower path.
+ */
+public class CharClass
+{
+    /**
+     * Any char that can be part of a word (identifier, keyword or number).
+     */
+    public static final byte WORD = 0;
+    
+    /**
+     * White space, other than line terminators.
+     */
+    public static final byte WHITESPACE = 1;
+    
+    /**
+     * "\n" or "\r".
+     */
+    public static final byte LINE_TERMINATOR = 2;
+    
+    /**
+     * Chars that are always a token on their own, e.g. '(' or ','.
+     */
+    public static final byte PUNCTUATION = 3;
+    
+    /**
+     * Chars that make up operators, e.g. '+' or '='.
+     */
+    public static final byte OPERATOR = 4;
+    
+    /**
+     * The string literal delimiter, '"'.
+     */
+    public static final byte QUOTE = 5;
+    
+    /**
+     * The start of a comment, '#'.
+     */
+    public static final byte COMMENT = 6;
+    
+    /**
+     * The class of each ASCII char, indexed by the char.
+     */
+    private static final byte[] ASCII_CLASSES = new byte[128];
+    
+    static
+    {
+        for (char character = 0; character < 128; character++)
+        {
+            if (Character.isWhitespace(character))
+            {
+                ASCII_CLASSES[character] = WHITESPACE;
+            }
+        }
+        
+        ASCII_CLASSES['\n'] = LINE_TERMINATOR;
+        ASCII_CLASSES['\r'] = LINE_TERMINATOR;
+        
+        for (var character : "(){}[],".toCharArray())
+        {
+            ASCII_CLASSES[character] = PUNCTUATION;
+        }
+        
+        for (var character : "+-*/%=!<>|&^".toCharArray())
+        {
+            ASCII_CLASSES[character] = OPERATOR;
+        }
+        
+        ASCII_CLASSES['"'] = QUOTE;
+        ASCII_CLASSES['#'] = COMMENT;
+    }
+    
+    /**
+     * Returns the class of the specified char.
+     */
+    public static byte of(char character)
+    {
+        if (character < 128)
+        {
+            return ASCII_CLASSES[character];
+        }
+        
+        return CharClass.ofNonAscii(character);
+    }
+    
+    /**
+     * The slow path of CharClass.of, for chars outside of ASCII. The only
+     *  special chars outside of ASCII are white space.
+     */
+    private static byte ofNonAscii(char character)
+    {
+        if (Character.isWhitespace(character))
+        {
+            return WHITESPACE;
+        }
+        
+        return WORD;
+    }
+}
@@ -0,0 +1,488 @@
+/*
+ * Copyright 2023 John Schneider.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bluc_java;
+
+import bluc_java.parser.Parser;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Compiles many source files at once, each on its own worker.<br/><br/>
+ *
+ * <b>Remarks:</b><br/>&#9;
+ *      Every file gets its own LexerState and Parser, and its output is
+ *  buffered until it's done. The outputs are then printed in the same order
+ *  as the files were given, so the output doesn't depend on which worker
+ *  finished first.<br/><br/>&#9;
+ *      The first file (in that order) that fails to compile stops the
+ *  compilation. Files after it that haven't started yet are skipped, and
+ *  their output isn't printed.<br/><br/>&#9;
+ *      All of the workers share one Lexer, which doesn't keep any state of
+ *  its own between files. Every file of a compilation interns its token text
+ *  into the same SymbolTable, so text that's in many files (e.g. common
+ *  identifiers) is stored once, however many workers lex it. Each worker thread keeps one LexerState and one
+ *  Parser, and resets them for every file it compiles, so their buffers only
+ *  grow to fit the largest file rather than being reallocated per file. They
+ *  are reset again once the file is done, so that an idle worker doesn't keep
+ *  the last file's tokens and AST alive.<br/><br/>&#9;
+ *      With doUseOffHeapTokens, each file's tokens are lexed into an
+ *  OffHeapTokenBuffer instead, which is closed as soon as the file has been
+ *  parsed, so its memory is handed back before the next file starts.
+ */
+public class CompileDriver
+{
+    /**
+     * The extension of bluc source files, used when searching directories.
+     */
+    public static final String SOURCE_FILE_EXTENSION = ".bluc";
+
+    /**
+     * The lexer that every worker lexes with, each with its own state.
+     */
+    private static final Lexer LEXER = new Lexer();
+
+    private static final ThreadLocal<LexerState> LEXER_STATES
+        = ThreadLocal.withInitial(LexerState::new);
+
+    /**
+     * The parser of each worker thread, or null until the thread has parsed
+     *  its first file.
+     */
+    private static final ThreadLocal<Parser> PARSERS = new ThreadLocal<>();
+
+    /**
+     * The pool that files are compiled on.
+     */
+    @Getter
+    private final ForkJoinPool pool;
+
+    /**
+     * True if tokens should be stored outside of the Java heap, for inputs
+     *  whose tokens are too large to keep on it.
+     */
+    @Getter
+    @Setter
+    private boolean doUseOffHeapTokens;
+
+    public CompileDriver(ForkJoinPool pool)
+    {
+        this.pool = pool;
+    }
+
+    /**
+     * Finds the source files that the specified paths refer to. Each path may
+     *  be a file, a directory (which is searched recursively for
+     *  SOURCE_FILE_EXTENSION files) or a glob pattern, e.g. "src/**.bluc".
+     *
+     * @param paths - the paths to search
+     * @param err - where to print paths that don't match any files
+     * @return the files in the same order as the paths that they were found
+     *  from (sorted within each path), without duplicates, or null if any
+     *  path didn't match any files.
+     */
+    public static List<Path> findSourceFiles(List<String> paths, PrintStream err)
+    {
+        var sourceFiles = new LinkedHashSet<Path>();
+
+        for (var path : paths)
+        {
+            var matches = CompileDriver.findSourceFiles(path);
+
+            if (matches.isEmpty())
+            {
+                err.println("No source files match `" + path + "`.");
+
+                return null;
+            }
+
+            sourceFiles.addAll(matches);
+        }
+
+        return new ArrayList<>(sourceFiles);
+    }
+
+    private static List<Path> findSourceFiles(String path)
+    {
+        var globStart = CompileDriver.findGlobStart(path);
+
+        if (globStart < 0)
+        {
+            var file = Paths.get(path);
+
+            if (Files.isDirectory(file))
+            {
+                return CompileDriver.walkSorted(
+                    file,
+                    "glob:**" + SOURCE_FILE_EXTENSION);
+            }
+
+            return Files.isRegularFile(file) ? List.of(file) : List.of();
+        }
+
+        // Only walk the directories that the pattern can match in.
+        var baseDirEnd
+            = Math.max(
+                path.lastIndexOf('/', globStart),
+                path.lastIndexOf(File.separatorChar, globStart));
+
+        var baseDir
+            = baseDirEnd < 0
+            ? Paths.get("")
+            : Paths.get(path.substring(0, baseDirEnd + 1));
+
+        if (!Files.isDirectory(baseDir))
+        {
+            return List.of();
+        }
+
+        return CompileDriver.walkSorted(baseDir, "glob:" + path);
+    }
+
+    /**
+     * Returns the index of the first glob special char in path, or -1 if it
+     *  has none.
+     */
+    private static int findGlobStart(String path)
+    {
+        for (int i = 0; i < path.length(); i++)
+        {
+            switch (path.charAt(i))
+            {
+                case '*':
+                case '?':
+                case '[':
+                case '{':
+                    return i;
+
+                default:
+                    break;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns every file under dir that matches the path matcher pattern, in
+     *  sorted order.
+     */
+    private static List<Path> walkSorted(Path dir, String matcherPattern)
+    {
+        var matcher = FileSystems.getDefault().getPathMatcher(matcherPattern);
+
+        try (var walkedPaths = Files.walk(dir))
+        {
+            return walkedPaths
+                .filter(Files::isRegularFile)
+                .filter(matcher::matches)
+                .sorted()
+                .toList();
+        }
+        catch (IOException ex)
+        {
+            ex.printStackTrace();
+            System.exit(1);
+
+            return List.of();
+        }
+    }
+
+    /**
+     * Compiles the specified files, and prints their output in order.
+     *
+     * @param sourceFiles - the files to compile
+     * @param out - where to print each file's output
+     * @param err - where to print each file's errors
+     * @return the result of compiling, with the error code of the first file
+     *  that failed (if any)
+     */
+    public Result<CompileErrCode> compile(
+        List<Path> sourceFiles,
+        PrintStream out,
+        PrintStream err)
+    {
+        var firstFailedIndex = new AtomicInteger(Integer.MAX_VALUE);
+        var fileTasks = new ArrayList<ForkJoinTask<FileOutput>>();
+        var symbolTable = new SymbolTable();
+
+        for (int i = 0; i < sourceFiles.size(); i++)
+        {
+            var fileIndex = i;
+            var sourceFile = sourceFiles.get(i);
+            var doUseOffHeapTokens = this.doUseOffHeapTokens();
+
+            fileTasks.add(this.pool().submit(
+                () -> CompileDriver.compileFile(
+                    sourceFile,
+                    fileIndex,
+                    firstFailedIndex,
+                    symbolTable,
+                    sourceFiles.size() > 1,
+                    doUseOffHeapTokens)));
+        }
+
+        for (var fileTask : fileTasks)
+        {
+            var fileOutput = fileTask.join();
+
+            out.print(fileOutput.out());
+            err.print(fileOutput.err());
+
+            if (fileOutput.result().hasFailed())
+            {
+                for (var remainingTask : fileTasks)
+                {
+                    remainingTask.cancel(false);
+                }
+
+                return fileOutput.result();
+            }
+        }
+
+        return Result.success();
+    }
+
+    /**
+     * Lexes and parses one file, buffering its output.
+     *
+     * @param sourceFile - the file to compile
+     * @param fileIndex - the index of the file, in the order it was given
+     * @param firstFailedIndex - the index of the first file that's failed so
+     *  far. The file is skipped if a file before it has already failed.
+     * @param symbolTable - the table that every file of the compilation
+     *  interns its token text into
+     * @param doPrintHeader - true if the file's path should be printed before
+     *  its output, to tell the outputs of multiple files apart
+     * @param doUseOffHeapTokens - true if the file's tokens should be stored
+     *  in an OffHeapTokenBuffer
+     */
+    private static FileOutput compileFile(
+        Path sourceFile,
+        int fileIndex,
+        AtomicInteger firstFailedIndex,
+        SymbolTable symbolTable,
+        boolean doPrintHeader,
+        boolean doUseOffHeapTokens)
+    {
+        var fileOutput = new FileOutput();
+
+        if (fileIndex > firstFailedIndex.get())
+        {
+            fileOutput.result(Result.failure(CompileErrCode.CANCELLED));
+
+            return fileOutput;
+        }
+
+        var out = fileOutput.outStream();
+
+        if (doPrintHeader)
+        {
+            out.println("==== " + sourceFile + " ====");
+        }
+
+        var lexerState = LEXER_STATES.get();
+        lexerState.reset();
+        lexerState.lexedTokens().useSymbolTable(symbolTable);
+
+        try
+        {
+            if (!doUseOffHeapTokens)
+            {
+                CompileDriver.lexAndParse(
+                    sourceFile,
+                    fileIndex,
+                    firstFailedIndex,
+                    lexerState,
+                    fileOutput);
+
+                return fileOutput;
+            }
+
+            var heapTokens = lexerState.lexedTokens();
+
+            try (var offHeapTokens = new OffHeapTokenBuffer(symbolTable))
+            {
+                lexerState.lexedTokens(offHeapTokens);
+
+                CompileDriver.lexAndParse(
+                    sourceFile,
+                    fileIndex,
+                    firstFailedIndex,
+                    lexerState,
+                    fileOutput);
+            }
+            finally
+            {
+                lexerState.lexedTokens(heapTokens);
+            }
+
+            return fileOutput;
+        }
+        finally
+        {
+            CompileDriver.releaseFile(lexerState);
+        }
+    }
+
+    /**
+     * Resets the worker's pooled lexer state and parser once a file is done
+     *  with them, so that they don't keep its tokens, AST and compilation's
+     *  symbol table alive until the worker compiles another file. Their
+     *  buffers keep their capacity.
+     */
+    private static void releaseFile(LexerState lexerState)
+    {
+        lexerState.reset();
+        lexerState.lexedTokens().useSymbolTable(null);
+
+        var parser = PARSERS.get();
+
+        if (parser != null)
+        {
+            parser.reset();
+        }
+    }
+
+    /**
+     * Lexes and parses one file with the specified lexer state, recording the
+     *  result in fileOutput (@see CompileDriver.compileFile).
+     */
+    private static void lexAndParse(
+        Path sourceFile,
+        int fileIndex,
+        AtomicInteger firstFailedIndex,
+        LexerState lexerState,
+        FileOutput fileOutput)
+    {
+        var out = fileOutput.outStream();
+        var lexResult = LEXER.lexFile(sourceFile.toString(), lexerState);
+
+        if (lexResult.hasFailed())
+        {
+            out.println(lexResult.errCode().errorMessage());
+
+            fileOutput.result(Result.failure(CompileErrCode.LEX_FAILED));
+            firstFailedIndex.accumulateAndGet(fileIndex, Math::min);
+
+            return;
+        }
+
+        var tokens = lexResult.data();
+
+        Bluc.printLexerOutput(tokens, out);
+
+        var parser = PARSERS.get();
+
+        if (parser == null)
+        {
+            parser = new Parser(tokens);
+            PARSERS.set(parser);
+        }
+        else
+        {
+            parser.reset(tokens);
+        }
+
+        parser.out(out);
+        parser.err(fileOutput.errStream());
+
+        var parseResult = parser.parse();
+
+        if (parseResult.hasFailed())
+        {
+            fileOutput.result(Result.failure(CompileErrCode.PARSE_FAILED));
+            firstFailedIndex.accumulateAndGet(fileIndex, Math::min);
+        }
+    }
+
+    /**
+     * The buffered output of compiling one file.
+     */
+    private static class FileOutput
+    {
+        private final ByteArrayOutputStream outBytes;
+
+        private final ByteArrayOutputStream errBytes;
+
+        @Getter
+        private final PrintStream outStream;
+
+        @Getter
+        private final PrintStream errStream;
+
+        /**
+         * The result of compiling the file, which stays a success until a
+         *  step fails.
+         */
+        @Getter
+        @Setter
+        private Result<CompileErrCode> result;
+
+        public FileOutput()
+        {
+            this.outBytes = new ByteArrayOutputStream();
+            this.errBytes = new ByteArrayOutputStream();
+            this.outStream
+                = new PrintStream(this.outBytes, true, StandardCharsets.UTF_8);
+            this.errStream
+                = new PrintStream(this.errBytes, true, StandardCharsets.UTF_8);
+            this.result = Result.success();
+        }
+
+        public String out()
+        {
+            return this.outBytes.toString(StandardCharsets.UTF_8);
+        }
+
+        public String err()
+        {
+            return this.errBytes.toString(StandardCharsets.UTF_8);
+        }
+    }
+
+    public enum CompileErrCode
+    {
+        /**
+         * The file couldn't be lexed.
+         */
+        LEX_FAILED,
+
+        /**
+         * The file was lexed, but couldn't be parsed.
+         */
+        PARSE_FAILED,
+
+        /**
+         * The file was skipped, since a file before it failed.
+         */
+        CANCELLED,
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2023 John Schneider.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bluc_java;
+
+import lombok.Getter;
+
+/**
+ * The details of one error, e.g. the message to report for it.<br/><br/>
+ *
+ * <b>Remarks:</b><br/>&#9;
+ *      Error codes are shared constants, so they can't hold anything that's
+ *  specific to one error. Those details go in a Diagnostic instead, which is
+ *  created along with the failed Result that carries it (@see
+ *  Result.failure). A Diagnostic is immutable, so it can be handed between
+ *  threads freely.
+ */
+public class Diagnostic
+{
+    /**
+     * The token that the error occurred on, or null if it isn't on a token.
+     */
+    @Getter
+    private final Token token;
+
+    /**
+     * The formatted message to report for the error.
+     */
+    @Getter
+    private final String message;
+
+    public Diagnostic(Token token, String message)
+    {
+        this.token = token;
+        this.message = message;
+    }
+}
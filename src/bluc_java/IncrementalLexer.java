@@ -0,0 +1,808 @@
+/*
+ * Copyright 2023 John Schneider.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bluc_java;
+
+import bluc_java.Lexer.LexErrCode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import lombok.Getter;
+
+/**
+ * Lexes a file that's being edited, re-lexing only the lines that an edit
+ *  can affect.<br/><br/>
+ *
+ * <b>Remarks:</b><br/>&#9;
+ *      Each line is lexed on its own, and the lexer state at the start of
+ *  every line is saved. An edit resumes lexing from the saved state of the
+ *  first edited line, and stops as soon as the state at the start of a line
+ *  after the edit matches the state that was saved for it. Everything after
+ *  that point would lex the same as before, so its tokens are kept as-is.
+ *  The lines are kept in a balanced tree (@see LineTree), so splicing them
+ *  and finding where their tokens start takes O(log n) time, rather than
+ *  time that grows with the number of lines after the edit.<br/><br/>&#9;
+ *      The tokens are the same as what Lexer.lexString would produce for
+ *  the same lines. Lines must not contain line terminators.<br/><br/>&#9;
+ *      Every line keeps its own token buffer, and the file's tokens are
+ *  read through a view of those buffers (@see IncrementalLexer.tokens), so
+ *  an edit never copies the tokens of the lines that it didn't re-lex.<br/>
+ *  <br/>&#9;
+ *      Unbalanced brackets are reported after every edit, the same as
+ *  Lexer.lexString reports them. Only the lines with a bracket that isn't
+ *  matched on the same line are checked, since the brackets of every other
+ *  line balance (@see LineTree.nextLineWithUnmatchedBracket).
+ */
+public class IncrementalLexer
+{
+    /**
+     * Most lines only have a handful of tokens.
+     */
+    private static final int LINE_TOKEN_CAPACITY = 8;
+
+    /**
+     * The number of symbols per token in the file that the symbol table may
+     *  grow to before it's rebuilt from the lines that are left.
+     */
+    private static final int MAX_SYMBOLS_PER_TOKEN = 2;
+
+    /**
+     * The number of symbols that the symbol table may have on top of
+     *  MAX_SYMBOLS_PER_TOKEN per token, so that a small file isn't rebuilt
+     *  after every few edits.
+     */
+    private static final int SYMBOL_SLACK = 1024;
+
+    private final Lexer lexer;
+
+    private final LexerState state;
+
+    /**
+     * The table that every line's tokens are interned into, so that tokens
+     *  on different lines share their text and symbol ids.<br/><br/>
+     *
+     * <b>Remarks:</b><br/>&#9;
+     *      Symbols are never removed from a table, so it still has the text
+     *  of every line that was edited away. Once that's most of it, it's
+     *  replaced by a table of only the text that the lines still use (@see
+     *  IncrementalLexer.compactSymbolTable).
+     */
+    private SymbolTable symbolTable;
+
+    private final LineTree lines;
+
+    /**
+     * The error from lexing the last line, or null if it lexed successfully.
+     *  Only the last line can fail to lex, since only it can end inside of a
+     *  string.
+     */
+    private LexErrCode scanErrCode;
+
+    /**
+     * The error from lexing the file as of the latest edit, which is either
+     *  scanErrCode or an unbalanced bracket, or null if there was none.
+     */
+    private LexErrCode errCode;
+
+    /**
+     * The line text, column and kind of each bracket that's open while the
+     *  brackets are checked (@see IncrementalLexer.findUnbalancedBracket),
+     *  innermost last.
+     */
+    private String[] openBracketLines;
+
+    private int[] openBracketColumns;
+
+    private int[] openBracketKinds;
+
+    private int openBracketCount;
+
+    private final TokenView tokens;
+
+    /**
+     * The number of lines that the last edit (or the initial lex) re-lexed.
+     */
+    @Getter
+    private int relexedLineCount;
+
+    /**
+     * Lexes the specified file contents.
+     *
+     * @param allLinesOfFile - the file contents to lex. Each new index
+     *  represents a new line in the file.
+     */
+    public IncrementalLexer(List<String> allLinesOfFile)
+    {
+        this.lexer = new Lexer();
+        this.state = new LexerState();
+        this.symbolTable = new SymbolTable();
+        this.lines = new LineTree();
+        this.tokens = new TokenView();
+        this.openBracketLines = new String[16];
+        this.openBracketColumns = new int[16];
+        this.openBracketKinds = new int[16];
+
+        this.edit(1, 0, allLinesOfFile);
+    }
+
+    /**
+     * Replaces lines of the file, and re-lexes the lines that the edit
+     *  affects.
+     *
+     * @param firstLineNum - the line number (the same as Token.lineNum) of
+     *  the first line to replace. This may be one past the last line, in
+     *  order to append lines.
+     * @param removedLineCount - the number of lines to remove, starting at
+     *  firstLineNum. This may be 0, in order to only insert lines.
+     * @param newLines - the lines to insert in place of the removed lines
+     * @return the result of lexing the file after the edit
+     */
+    public Result<LexErrCode> edit(
+        int firstLineNum,
+        int removedLineCount,
+        List<String> newLines)
+    {
+        var oldLineCount = this.lines.size();
+        var editStart = firstLineNum - 1;
+        var editEnd = editStart + removedLineCount;
+
+        Objects.checkFromIndexSize(editStart, removedLineCount, oldLineCount);
+
+        // The last line is lexed differently to the others, since that's
+        //  where EOF is. If the edit reaches the end of the file, the line
+        //  before it may become (or stop being) the last line.
+        var restartIndex
+            = editEnd == oldLineCount
+            ? Math.max(0, editStart - 1)
+            : editStart;
+
+        var startState
+            = restartIndex < oldLineCount
+            ? this.lines.get(restartIndex).startState()
+            : LexerState.Snapshot.INITIAL;
+
+        var replacedLines = new ArrayList<LineTree.Line>(newLines.size());
+
+        for (var line : newLines)
+        {
+            replacedLines.add(new LineTree.Line(line));
+        }
+
+        this.lines.replace(editStart, removedLineCount, replacedLines);
+
+        return this.relexFrom(
+            restartIndex, startState, editStart + newLines.size());
+    }
+
+    /**
+     * Re-lexes lines until the lexer state converges with the state that was
+     *  saved for a line.
+     *
+     * @param restartIndex - the index of the first line to lex
+     * @param startState - the state at the start of that line
+     * @param editedEnd - the index just past the last inserted line. Lines
+     *  before this index are always lexed, since they have no saved state.
+     */
+    private Result<LexErrCode> relexFrom(
+        int restartIndex,
+        LexerState.Snapshot startState,
+        int editedEnd)
+    {
+        var lineCount = this.lines.size();
+
+        this.state.restore(startState);
+        this.relexedLineCount = 0;
+
+        for (int i = restartIndex; i < lineCount; i++)
+        {
+            var line = this.lines.get(i);
+            var lineStartState
+                = i == restartIndex ? startState : this.state.snapshot();
+
+            if (i >= editedEnd && lineStartState.equals(line.startState()))
+            {
+                break;
+            }
+
+            line.startState(lineStartState);
+
+            var lineResult = this.lexLine(line, i, i == lineCount - 1);
+            this.lines.update(i);
+            this.relexedLineCount++;
+
+            if (i == lineCount - 1)
+            {
+                this.scanErrCode = lineResult.errCode();
+            }
+        }
+
+        if (lineCount == 0)
+        {
+            this.scanErrCode = null;
+        }
+
+        this.tokens.forgetFoundLine();
+        this.compactSymbolTable();
+
+        // Like Lexer.lexString, the brackets are only checked if the file
+        //  lexed successfully.
+        this.errCode
+            = this.scanErrCode != null
+            ? this.scanErrCode
+            : this.findUnbalancedBracket();
+
+        if (this.errCode != null)
+        {
+            return Result.failure(this.errCode);
+        }
+
+        return Result.success();
+    }
+
+    private Result<LexErrCode> lexLine(
+        LineTree.Line line,
+        int lineIndex,
+        boolean isLastLine)
+    {
+        var chars = line.text().toCharArray();
+
+        line.tokens(new TokenBuffer(LINE_TOKEN_CAPACITY, this.symbolTable));
+
+        this.state.lexedTokens(line.tokens());
+        this.state.lineNum(lineIndex + 1);
+        this.state.useBuffer(chars, chars.length, isLastLine);
+
+        return this.lexer.scanBuffer(this.state);
+    }
+
+    /**
+     * Returns the error for the first closing bracket that doesn't close the
+     *  innermost open bracket, or else for the first opening bracket that's
+     *  never closed, or null if every bracket is balanced. This is the same
+     *  bracket that Lexer.findUnbalancedBracket reports.<br/><br/>
+     *
+     * <b>Remarks:</b><br/>&#9;
+     *      Only the lines with an unmatched bracket are checked. Any other
+     *  line's brackets all close each other, so they'd be pushed and popped
+     *  without changing the open brackets that come before them.
+     */
+    private LexErrCode findUnbalancedBracket()
+    {
+        this.openBracketCount = 0;
+
+        var lineIndex = this.lines.nextLineWithUnmatchedBracket(0);
+
+        while (lineIndex != -1)
+        {
+            var line = this.lines.get(lineIndex);
+            var lineTokens = line.tokens();
+
+            // The number of brackets that were opened on this line and are
+            //  still open, whether they're closed on a later line or not.
+            var lineOpenCount = 0;
+
+            for (int i = 0; i < lineTokens.size(); i++)
+            {
+                var kind = lineTokens.kind(i);
+                var column = lineTokens.offset(i) + 1;
+
+                if (TokenKind.isIn(kind, TokenKind.OPENING_BRACKETS))
+                {
+                    lineOpenCount++;
+
+                    if (lineTokens.matchingBracket(i) == TokenBuffer.NO_MATCH)
+                    {
+                        this.pushOpenBracket(line.text(), column, kind);
+                    }
+                }
+                else if (!TokenKind.isIn(kind, TokenKind.CLOSING_BRACKETS))
+                {
+                    continue;
+                }
+                else if (lineTokens.matchingBracket(i) != TokenBuffer.NO_MATCH)
+                {
+                    lineOpenCount--;
+                }
+                else
+                {
+                    // A bracket that's unmatched while one of its line's
+                    //  brackets is open didn't close that bracket, so it's
+                    //  unbalanced. Otherwise, it may close a bracket from an
+                    //  earlier line.
+                    var innermost = this.openBracketCount - 1;
+
+                    if (lineOpenCount > 0
+                        || innermost < 0
+                        || this.openBracketKinds[innermost]
+                            != TokenKind.openingBracketOf(kind))
+                    {
+                        return new LexErrCode(
+                            LexErrCode.UNBALANCED_BRACKET, line.text(), column);
+                    }
+
+                    // Drop the reference, so that the line's text can be
+                    //  freed.
+                    this.openBracketLines[innermost] = null;
+                    this.openBracketCount--;
+                }
+            }
+
+            lineIndex = this.lines.nextLineWithUnmatchedBracket(lineIndex + 1);
+        }
+
+        if (this.openBracketCount == 0)
+        {
+            return null;
+        }
+
+        var errCode
+            = new LexErrCode(
+                LexErrCode.UNBALANCED_BRACKET,
+                this.openBracketLines[0],
+                this.openBracketColumns[0]);
+
+        Arrays.fill(this.openBracketLines, 0, this.openBracketCount, null);
+
+        return errCode;
+    }
+
+    private void pushOpenBracket(String line, int column, int kind)
+    {
+        if (this.openBracketCount == this.openBracketKinds.length)
+        {
+            var newCapacity = this.openBracketCount * 2;
+
+            this.openBracketLines
+                = Arrays.copyOf(this.openBracketLines, newCapacity);
+            this.openBracketColumns
+                = Arrays.copyOf(this.openBracketColumns, newCapacity);
+            this.openBracketKinds
+                = Arrays.copyOf(this.openBracketKinds, newCapacity);
+        }
+
+        this.openBracketLines[this.openBracketCount] = line;
+        this.openBracketColumns[this.openBracketCount] = column;
+        this.openBracketKinds[this.openBracketCount] = kind;
+        this.openBracketCount++;
+    }
+
+    /**
+     * Rebuilds the symbol table from the lines' tokens, if it has grown past
+     *  MAX_SYMBOLS_PER_TOKEN symbols per token (plus SYMBOL_SLACK). The new
+     *  table has at most one symbol per token, so this happens at most once
+     *  per file's worth of new text, and its cost is spread over the edits
+     *  that added that text.
+     */
+    private void compactSymbolTable()
+    {
+        var symbolLimit
+            = MAX_SYMBOLS_PER_TOKEN * this.tokens.size() + SYMBOL_SLACK;
+
+        if (this.symbolTable.size() <= symbolLimit)
+        {
+            return;
+        }
+
+        var newTable = new SymbolTable();
+
+        this.lines.forEach(line ->
+        {
+            if (line.tokens() != null)
+            {
+                line.tokens().moveToSymbolTable(newTable);
+            }
+        });
+        this.tokens.fileEnds.moveToSymbolTable(newTable);
+
+        this.symbolTable = newTable;
+    }
+
+    /**
+     * Returns the number of distinct token texts in the symbol table,
+     *  including the text of lines that were edited away and haven't been
+     *  dropped yet.
+     */
+    public int symbolCount()
+    {
+        return this.symbolTable.size();
+    }
+
+    /**
+     * Returns all of the lexed tokens, including the SOF and EOF tokens.
+     *
+     * <b>Remarks:</b><br/>&#9;
+     *      This is a view of the lines' own tokens rather than a copy of
+     *  them, so it always has the tokens as of the latest edit.
+     */
+    public TokenView tokens()
+    {
+        return this.tokens;
+    }
+
+    /**
+     * Returns the tokens that were lexed from the line at lineIndex.
+     */
+    TokenBuffer lineTokens(int lineIndex)
+    {
+        return this.lines.get(lineIndex).tokens();
+    }
+
+    /**
+     * Returns the number of lines in the file.
+     */
+    public int lineCount()
+    {
+        return this.lines.size();
+    }
+
+    /**
+     * The lexed tokens of the whole file, read straight from the token
+     *  buffers of its lines.<br/><br/>
+     *
+     * <b>Remarks:</b><br/>&#9;
+     *      A token is found from its index by walking down the line tree
+     *  (@see LineTree.lineIndexOfToken). The line of the last token that
+     *  was found is checked first, so reading the tokens in order (as the
+     *  parser does) only walks the tree once per line.<br/><br/>&#9;
+     *      Brackets are matched by each line's buffer as it's lexed. A
+     *  bracket whose match is on another line is matched by counting the
+     *  brackets after it (or before it) on its line, then finding the line
+     *  where that count drops to 0 from the lines' bracket summaries (@see
+     *  LineTree.findClosingLine), so the lines in between are never read.
+     */
+    public class TokenView implements TokenSource
+    {
+        /**
+         * The SOF and EOF tokens.
+         */
+        private final TokenBuffer fileEnds;
+
+        /**
+         * The buffer and the index in it of the token that was last found
+         *  (@see TokenView.find).
+         */
+        private TokenBuffer foundTokens;
+
+        private int foundIndex;
+
+        /**
+         * The index, tokens and first token's index (in the view) of the
+         *  line that a token was last found on. The tokens are null if no
+         *  token has been found on a line since the last edit.
+         */
+        private int foundLineIndex;
+
+        private TokenBuffer foundLineTokens;
+
+        private int foundLineStart;
+
+        /**
+         * The number of brackets that are left to match, while scanning a
+         *  line for the match of a bracket (@see TokenView.scanLineForMatch).
+         */
+        private int scanDepth;
+
+        private TokenView()
+        {
+            this.fileEnds
+                = new TokenBuffer(2, IncrementalLexer.this.symbolTable);
+            this.fileEnds.append(Token.BLUC_SOF);
+            this.fileEnds.append(Token.BLUC_EOF);
+        }
+
+        /**
+         * Returns the number of tokens, including the SOF and EOF tokens.
+         */
+        public int size()
+        {
+            return IncrementalLexer.this.lines.tokenCount() + 2;
+        }
+
+        @Override
+        public int kind(int index)
+        {
+            this.find(index);
+
+            return this.foundTokens.kind(this.foundIndex);
+        }
+
+        @Override
+        public int symbol(int index)
+        {
+            this.find(index);
+
+            return this.foundTokens.symbol(this.foundIndex);
+        }
+
+        @Override
+        public int lineNum(int index)
+        {
+            this.find(index);
+
+            if (this.foundTokens == this.fileEnds)
+            {
+                return this.fileEnds.lineNum(this.foundIndex);
+            }
+
+            return this.foundLineIndex + 1;
+        }
+
+        @Override
+        public int columnNum(int index)
+        {
+            this.find(index);
+
+            if (this.foundTokens == this.fileEnds)
+            {
+                return this.fileEnds.columnNum(this.foundIndex);
+            }
+
+            // Each line's offsets start from 0 at the start of the line.
+            return this.foundTokens.offset(this.foundIndex) + 1;
+        }
+
+        @Override
+        public String text(int index)
+        {
+            this.find(index);
+
+            return this.foundTokens.text(this.foundIndex);
+        }
+
+        @Override
+        public boolean textEquals(int index, String textToMatch)
+        {
+            return this.text(index).equals(textToMatch);
+        }
+
+        @Override
+        public Token get(int index)
+        {
+            this.find(index);
+
+            if (this.foundTokens == this.fileEnds)
+            {
+                return this.fileEnds.get(this.foundIndex);
+            }
+
+            return new Token(
+                null,
+                this.lineNum(index),
+                this.columnNum(index),
+                this.text(index),
+                this.kind(index));
+        }
+
+        @Override
+        public boolean hasLiteralValue(int index)
+        {
+            this.find(index);
+
+            return this.foundTokens.hasLiteralValue(this.foundIndex);
+        }
+
+        @Override
+        public long integerValue(int index)
+        {
+            this.find(index);
+
+            return this.foundTokens.integerValue(this.foundIndex);
+        }
+
+        @Override
+        public double floatValue(int index)
+        {
+            this.find(index);
+
+            return this.foundTokens.floatValue(this.foundIndex);
+        }
+
+        @Override
+        public String stringValue(int index)
+        {
+            this.find(index);
+
+            return this.foundTokens.stringValue(this.foundIndex);
+        }
+
+        @Override
+        public int matchingBracket(int index)
+        {
+            this.find(index);
+
+            var kind = this.foundTokens.kind(this.foundIndex);
+
+            if (this.foundTokens == this.fileEnds
+                || !TokenKind.isIn(
+                    kind,
+                    TokenKind.OPENING_BRACKETS | TokenKind.CLOSING_BRACKETS))
+            {
+                return TokenBuffer.NO_MATCH;
+            }
+
+            var lineMatch = this.foundTokens.matchingBracket(this.foundIndex);
+
+            if (lineMatch != TokenBuffer.NO_MATCH)
+            {
+                return index - this.foundIndex + lineMatch;
+            }
+
+            var lines = IncrementalLexer.this.lines;
+            var isOpening = TokenKind.isIn(kind, TokenKind.OPENING_BRACKETS);
+            var step = isOpening ? 1 : -1;
+            var lineIndex = this.foundLineIndex;
+            var lineTokens = this.foundTokens;
+
+            this.scanDepth = 1;
+
+            var match
+                = this.scanLineForMatch(
+                    lineTokens, this.foundIndex + step, step);
+
+            if (match == TokenBuffer.NO_MATCH)
+            {
+                lineIndex
+                    = isOpening
+                    ? lines.findClosingLine(lineIndex + 1, this.scanDepth)
+                    : lines.findOpeningLine(lineIndex, this.scanDepth);
+
+                if (lineIndex == -1)
+                {
+                    return TokenBuffer.NO_MATCH;
+                }
+
+                lineTokens = lines.get(lineIndex).tokens();
+                this.scanDepth = lines.searchDepth();
+
+                match
+                    = this.scanLineForMatch(
+                        lineTokens,
+                        isOpening ? 0 : lineTokens.size() - 1,
+                        step);
+            }
+
+            var matchKind = lineTokens.kind(match);
+            var openingKind = isOpening ? kind : matchKind;
+            var closingKind = isOpening ? matchKind : kind;
+
+            if (TokenKind.openingBracketOf(closingKind) != openingKind)
+            {
+                return TokenBuffer.NO_MATCH;
+            }
+
+            // The line tokens start after the SOF token.
+            return lines.tokenStart(lineIndex) + 1 + match;
+        }
+
+        @Override
+        public int clampIndex(int index)
+        {
+            return Math.max(0, Math.min(index, this.size() - 1));
+        }
+
+        @Override
+        public boolean hasTokenAfter(int index)
+        {
+            return index + 1 < this.size();
+        }
+
+        /**
+         * Does nothing, since all of the tokens are kept by their lines.
+         */
+        @Override
+        public void discardBefore(int index)
+        {
+        }
+
+        @Override
+        public boolean keepsAllTokens()
+        {
+            return true;
+        }
+
+        /**
+         * Returns the error from lexing the file as of the latest edit.
+         */
+        @Override
+        public LexErrCode errCode()
+        {
+            return IncrementalLexer.this.errCode;
+        }
+
+        /**
+         * Counts the brackets of a line, from the token at start, stepping
+         *  towards the end of the line if step is 1, or towards the start if
+         *  it's -1, until scanDepth brackets are matched. A bracket that's
+         *  opened in the direction of the step adds to scanDepth, and one
+         *  that's closed takes away from it.
+         *
+         * @return the index in lineTokens of the bracket that scanDepth drops
+         *  to 0 at, or TokenBuffer.NO_MATCH if it doesn't drop to 0 on this
+         *  line, in which case scanDepth is what's left to match
+         */
+        private int scanLineForMatch(
+            TokenBuffer lineTokens,
+            int start,
+            int step)
+        {
+            for (int i = start; i >= 0 && i < lineTokens.size(); i += step)
+            {
+                var kind = lineTokens.kind(i);
+
+                if (TokenKind.isIn(kind, TokenKind.OPENING_BRACKETS))
+                {
+                    this.scanDepth += step;
+                }
+                else if (TokenKind.isIn(kind, TokenKind.CLOSING_BRACKETS))
+                {
+                    this.scanDepth -= step;
+                }
+                else
+                {
+                    continue;
+                }
+
+                if (this.scanDepth == 0)
+                {
+                    return i;
+                }
+            }
+
+            return TokenBuffer.NO_MATCH;
+        }
+
+        /**
+         * Finds the buffer that holds the token at index, and the token's
+         *  index in it, and stores them in foundTokens and foundIndex.
+         */
+        private void find(int index)
+        {
+            var lines = IncrementalLexer.this.lines;
+
+            if (index <= 0 || index > lines.tokenCount())
+            {
+                this.foundTokens = this.fileEnds;
+                this.foundIndex = index <= 0 ? 0 : 1;
+
+                return;
+            }
+
+            if (this.foundLineTokens == null
+                || index < this.foundLineStart
+                || index >= this.foundLineStart + this.foundLineTokens.size())
+            {
+                // The line tokens start after the SOF token.
+                this.foundLineIndex = lines.lineIndexOfToken(index - 1);
+                this.foundLineStart
+                    = lines.tokenStart(this.foundLineIndex) + 1;
+                this.foundLineTokens
+                    = lines.get(this.foundLineIndex).tokens();
+            }
+
+            this.foundTokens = this.foundLineTokens;
+            this.foundIndex = index - this.foundLineStart;
+        }
+
+        /**
+         * Forgets the line of the last token that was found, since an edit
+         *  may have moved or replaced it.
+         */
+        private void forgetFoundLine()
+        {
+            this.foundLineTokens = null;
+        }
+    }
+}
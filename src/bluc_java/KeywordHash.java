@@ -0,0 +1,187 @@
+/*
+ * Copyright 2023 John Schneider.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bluc_java;
+
+import java.util.Arrays;
+
+/**
+ * A minimal perfect hash of a fixed set of keywords, for telling keywords
+ *  apart from identifiers without comparing against every keyword.<br/><br/>
+ *
+ * <b>Remarks:</b><br/>&#9;
+ *      A word is hashed from its length and its first and last chars, so
+ *  hashing takes the same time however long the word is. The hash is
+ *  multiplied by a seed that's searched for when the table is built, until
+ *  every keyword lands in its own slot. The table has one slot per keyword
+ *  (rounded up to a power of two), so it's minimal for the current keyword
+ *  set.<br/><br/>&#9;
+ *      A lookup hashes the word, then does at most one comparison against
+ *  the keyword in its slot to confirm it. No string is created.
+ */
+public class KeywordHash
+{
+    /**
+     * The number of seeds to try before giving up on finding a perfect hash.
+     */
+    private static final int MAX_SEED_ATTEMPTS = 1 << 20;
+
+    /**
+     * The kind that KeywordHash.kindOf returns for a word that isn't a
+     *  keyword.
+     */
+    public static final int NOT_A_KEYWORD = -1;
+
+    private final int seed;
+
+    /**
+     * The number of bits of the hash that select a slot.
+     */
+    private final int slotBits;
+
+    private final char[][] slotTexts;
+
+    private final int[] slotKinds;
+
+    private final int minLength;
+
+    private final int maxLength;
+
+    /**
+     * @param texts - the text of each keyword. Keywords must be at least one
+     *  char long, and no two keywords may have the same length, first char
+     *  and last char.
+     * @param kinds - the TokenKind of each keyword, in the same order as
+     *  texts
+     */
+    public KeywordHash(String[] texts, int[] kinds)
+    {
+        this.slotBits
+            = Math.max(1, 32 - Integer.numberOfLeadingZeros(texts.length - 1));
+        this.slotTexts = new char[1 << this.slotBits][];
+        this.slotKinds = new int[1 << this.slotBits];
+        this.seed = KeywordHash.findSeed(texts, this.slotBits);
+
+        var minLength = Integer.MAX_VALUE;
+        var maxLength = 0;
+
+        for (int i = 0; i < texts.length; i++)
+        {
+            var text = texts[i].toCharArray();
+            var slot
+                = KeywordHash.slot(
+                    text, 0, text.length, this.seed, this.slotBits);
+
+            this.slotTexts[slot] = text;
+            this.slotKinds[slot] = kinds[i];
+
+            minLength = Math.min(minLength, text.length);
+            maxLength = Math.max(maxLength, text.length);
+        }
+
+        this.minLength = minLength;
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * Returns the TokenKind of the keyword whose text is the specified slice
+     *  of chars, or NOT_A_KEYWORD if it isn't a keyword.
+     *
+     * @param chars - the array that holds the word
+     * @param start - the index (in chars) of the word's first char
+     * @param length - the number of chars in the word
+     */
+    public int kindOf(char[] chars, int start, int length)
+    {
+        if (length < this.minLength || length > this.maxLength)
+        {
+            return NOT_A_KEYWORD;
+        }
+
+        var slot
+            = KeywordHash.slot(chars, start, length, this.seed, this.slotBits);
+        var keyword = this.slotTexts[slot];
+
+        if (keyword == null || keyword.length != length)
+        {
+            return NOT_A_KEYWORD;
+        }
+
+        for (int i = 0; i < length; i++)
+        {
+            if (chars[start + i] != keyword[i])
+            {
+                return NOT_A_KEYWORD;
+            }
+        }
+
+        return this.slotKinds[slot];
+    }
+
+    /**
+     * Returns the first seed that puts every keyword in its own slot.
+     */
+    private static int findSeed(String[] texts, int slotBits)
+    {
+        var usedSlots = new boolean[1 << slotBits];
+
+        // Only odd seeds, so that multiplying by the seed doesn't lose bits.
+        for (int attempt = 0; attempt < MAX_SEED_ATTEMPTS; attempt++)
+        {
+            var seed = 0x9E3779B9 + 2 * attempt;
+            var isPerfect = true;
+
+            Arrays.fill(usedSlots, false);
+
+            for (var text : texts)
+            {
+                var chars = text.toCharArray();
+                var slot
+                    = KeywordHash.slot(chars, 0, chars.length, seed, slotBits);
+
+                if (usedSlots[slot])
+                {
+                    isPerfect = false;
+                    break;
+                }
+
+                usedSlots[slot] = true;
+            }
+
+            if (isPerfect)
+            {
+                return seed;
+            }
+        }
+
+        throw new IllegalArgumentException(
+            "No perfect hash was found for the keywords, two of them may "
+            + "have the same length, first char and last char.");
+    }
+
+    private static int slot(
+        char[] chars,
+        int start,
+        int length,
+        int seed,
+        int slotBits)
+    {
+        var hash
+            = (chars[start] << 16) ^ (chars[start + length - 1] << 5) ^ length;
+
+        // The top bits of the product depend on every bit of the hash.
+        return (hash * seed) >>> (32 - slotBits);
+    }
+}
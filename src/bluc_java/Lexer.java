@@ -17,71 +17,163 @@ package bluc_java;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.PrintStream;
 import java.nio.file.Files;
 import java.nio.file.Paths;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.Setter;
 
 /**
- * Lexes a source file into tokens, for use by the parser.
+ * Lexes a source file into tokens, for use by the parser.<br/><br/>
+ *
+ * <b>Remarks:</b><br/>&#9;
+ *      Everything that changes while lexing is kept in a LexerState. The
+ *  methods that take a LexerState only modify that state, so one lexer can
+ *  lex many inputs at once (e.g. one per worker thread), as long as each
+ *  input has its own state. The lexer's settings (out, runScanner and
+ *  doLexBytes) should be set before it's shared.<br/><br/>&#9;
+ *      The methods without a LexerState use the lexer's own state, so they
+ *  must not be called from more than one thread at once, and their tokens
+ *  accumulate until the lexer is reset.
  */
 public class Lexer
 {
+    /**
+     * Files with at least this many chars are lexed in parallel, if there's
+     *  more than one core to lex them on.
+     */
+    private static final int PARALLEL_THRESHOLD = 4 * 1024 * 1024;
+    
+    /**
+     * The approximate number of chars that each core lexes at a time when
+     *  lexing in parallel.
+     */
+    private static final int PARALLEL_CHUNK_SIZE = 1024 * 1024;
+    
+    /**
+     * The state that the methods without a LexerState lex with.
+     */
     @Getter
     @Setter
     private LexerState state;
     
+    /**
+     * Where lexer errors are printed to.
+     */
+    @Getter
+    @Setter
+    private PrintStream out;
+    
+    /**
+     * Skips over runs of chars that lex the same way, e.g. the rest of a
+     *  word, so that only the chars at the ends of runs are lexed one at a
+     *  time.
+     */
+    @Getter
+    @Setter
+    private RunScanner runScanner;
+    
+    /**
+     * True if files should be lexed straight from their UTF-8 bytes, rather
+     *  than being decoded into chars first. Files that are large enough to be
+     *  lexed in parallel are always decoded into chars.
+     */
+    @Getter
+    @Setter
+    private boolean doLexBytes;
+    
     public Lexer()
     {
         this.state = new LexerState();
+        this.out = System.out;
+        this.runScanner = RunScanner.fastest();
+        this.doLexBytes = true;
     }
     
     /**
-     * Reads the file at the specified file path, then lexes the file.
+     * Resets the lexer so that it can lex another file, the same as a new
+     *  lexer would, without growing its buffers again
+     *  (@see LexerState.reset).<br/><br/>
+     * 
+     * <b>Remarks:</b><br/>&#9;
+     *      Without a reset, the tokens of each file that's lexed are appended
+     *  to the tokens of the files before it. The tokens that were lexed
+     *  before the reset must not be used afterwards, since their storage is
+     *  reused.
+     */
+    public void reset()
+    {
+        this.state().reset();
+    }
+    
+    /**
+     * Reads the file at the specified file path, then lexes the file with
+     *  the lexer's own state. A lexer error is printed to out.
      * 
      * @param filePath - the file to read and lex
      */
     public LexResult lexFile(String filePath)
     {
-        var result = new LexResult();
-        var lexedTokens = new ArrayList<Token>();
+        return this.printIfFailed(this.lexFile(filePath, this.state()));
+    }
+    
+    /**
+     * Reads the file at the specified file path, then lexes the file with the
+     *  specified state. Only the state is modified, so this may be called
+     *  from many threads at once, each with its own state.<br/><br/>
+     * 
+     * <b>Remarks:</b><br/>&#9;
+     *      A lexer error isn't printed, it's only returned in the result, so
+     *  that the caller can report it wherever its own output goes.
+     * 
+     * @param filePath - the file to read and lex
+     * @param state - the state to lex with. The tokens are appended to its
+     *  lexedTokens, so it should be new or reset.
+     */
+    public LexResult lexFile(String filePath, LexerState state)
+    {
         var absoluteFilePath = new File(filePath).getAbsolutePath();
         
-        this.state().filePath(absoluteFilePath);
-        
         try
         {
-            var allLinesOfFile
-                    = Files.readAllLines(Paths.get(absoluteFilePath));
-
-            var lexResult
-                    = this.lexString(allLinesOfFile, this.state());
-
-            if (lexResult.hasFailed())
+            var fileSize = Files.size(Paths.get(absoluteFilePath));
+            
+            if (this.doLexBytes() && !Lexer.isWorthLexingInParallel(fileSize))
             {
-                System.out.println(lexResult.errCode().errorMessage());
+                var source
+                        = new SourceReader()
+                        .readBytes(
+                            absoluteFilePath, state.takeSpareFileBytes());
                 
-                result.errCode(lexResult.errCode());
-
-                return result;
+                state.keepFileBytes(source.array());
+                state.sourceFile(
+                    SourceFile.fromBytes(
+                        absoluteFilePath, source.array(), source.limit()));
+                state.useBytes(source.array(), source.limit());
+                
+                return this.lexCurrentBuffer(state);
             }
+            
+            var source
+                    = new SourceReader().readFile(absoluteFilePath);
 
-            lexedTokens
-                    = lexResult.data();
+            return this.lexSource(
+                absoluteFilePath,
+                source.array(),
+                source.limit(),
+                state);
         } 
         catch (IOException ex)
         {
             ex.printStackTrace();
             System.exit(1);
+            
+            return LexResult.success(null);
         }
-        
-        result.data(lexedTokens);
-
-        return result;
     }
     
     /**
@@ -96,82 +188,440 @@ public class Lexer
      */
     public LexResult lexString(List<String> allLinesOfFile)
     {
-        return this.lexString(allLinesOfFile, this.state());
+        return this.printIfFailed(
+            this.lexString(allLinesOfFile, this.state()));
+    }
+    
+    /**
+     * Lexes the specified file contents with the specified state, without
+     *  printing a lexer error (@see Lexer.lexFile(String, LexerState)).
+     * 
+     * @param allLinesOfFile - the file contents to lex. Each new index
+     *  represents a new line in the file.
+     * @param state - the state to lex with
+     */
+    public LexResult lexString(List<String> allLinesOfFile, LexerState state)
+    {
+        var sourceBuilder = new StringBuilder();
+        
+        // Terminate every line (rather than joining them), so that a trailing
+        //  empty line is kept as a line of its own.
+        for (var line : allLinesOfFile)
+        {
+            sourceBuilder.append(line).append('\n');
+        }
+        
+        var source = sourceBuilder.toString().toCharArray();
+        
+        return this.lexBuffer(null, source, source.length, state);
+    }
+    
+    /**
+     * Prints the error of the result to out, if it failed.
+     */
+    private LexResult printIfFailed(LexResult result)
+    {
+        if (result.hasFailed())
+        {
+            this.out().println(result.errCode().errorMessage());
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Lexes the first `length` chars of the specified buffer, in parallel if
+     *  it's large enough to be worth it.
+     * 
+     * @param filePath - the file path to report for the tokens
+     */
+    private LexResult lexSource(
+        String filePath,
+        char[] buffer,
+        int length,
+        LexerState state)
+    {
+        if (!Lexer.isWorthLexingInParallel(length))
+        {
+            return this.lexBuffer(filePath, buffer, length, state);
+        }
+        
+        return new ParallelLexer(
+                ForkJoinPool.commonPool(), PARALLEL_CHUNK_SIZE, this)
+            .lexBuffer(buffer, length, filePath, state.lexedTokens());
     }
     
-    private LexResult lexString(List<String> allLinesOfFile, LexerState state)
+    /**
+     * Returns true if an input of the specified length should be lexed in
+     *  parallel, i.e. it's large and there's more than one core to lex it on.
+     */
+    private static boolean isWorthLexingInParallel(long length)
     {
-        var result = new LexResult();
-        var commentsRemover = new CommentsRemover();
-        var linesOfFile = commentsRemover.run(allLinesOfFile);
+        return length >= PARALLEL_THRESHOLD
+            && ForkJoinPool.commonPool().getParallelism() >= 2;
+    }
+    
+    /**
+     * Lexes the first `length` chars of the specified buffer. Lines may be
+     *  terminated by "\n", "\r\n" or "\r", the same as
+     *  Files.readAllLines.
+     * 
+     * @param filePath - the file path to report for the tokens
+     */
+    private LexResult lexBuffer(
+        String filePath,
+        char[] buffer,
+        int length,
+        LexerState state)
+    {
+        state.sourceFile(SourceFile.fromChars(filePath, buffer, length));
+        state.useBuffer(buffer, length);
         
+        return this.lexCurrentBuffer(state);
+    }
+    
+    /**
+     * Lexes the whole of the state's current buffer, which may be either a
+     *  char buffer or a byte buffer.
+     */
+    private LexResult lexCurrentBuffer(LexerState state)
+    {
         state.appendLexedToken(Token.BLUC_SOF);
         
-        state.totalLineCount(linesOfFile.size());
-
-        for (var line : linesOfFile)
+        var scanResult
+            = state.isScanningBytes()
+            ? this.scanBytes(state, 0, state.bufferLength())
+            : this.scanBuffer(state);
+        
+        if (scanResult.hasFailed())
         {
-            state.line(line);
-            
-            var lexLineResult = this.lexLine(this.state());
-            
-            if (lexLineResult.hasFailed())
-            {
-                var errCode = result.errCode();
-                System.out.println(errCode.errorMessage());
-                
-                result.errCode(errCode);
-
-                // A lexer error is a critical error, we can't continue lexing.
-                return result;
-            }
-
-            state.incrementLineNum();
+            // A lexer error is a critical error, we can't continue lexing.
+            return LexResult.failure(scanResult.errCode());
         }
         
         state.appendLexedToken(Token.BLUC_EOF);
         
-        result.data(state.lexedTokens());
-
-        return result;
+        var bracketErrCode
+            = Lexer.findUnbalancedBracket(state.lexedTokens(), state);
+        
+        if (bracketErrCode != null)
+        {
+            return LexResult.failure(bracketErrCode);
+        }
+        
+        return LexResult.success(state.lexedTokens());
     }
     
-    private Result<LexErrCode> lexLine(LexerState state)
+    /**
+     * Returns the error for the first unbalanced bracket in the lexed tokens
+     *  (@see TokenBuffer.firstUnbalancedBracket), or null if every bracket is
+     *  balanced.
+     * 
+     * @param tokens - the lexed tokens
+     * @param state - a state whose buffer is the whole input that the tokens
+     *  were lexed from, for the text of the bracket's line
+     */
+    static LexErrCode findUnbalancedBracket(
+        TokenBuffer tokens,
+        LexerState state)
     {
-        var result = new Result<LexErrCode>();
-        var lineAsArray = state.line().toCharArray();
+        var bracketIndex = tokens.firstUnbalancedBracket();
+        
+        if (bracketIndex == TokenBuffer.NO_MATCH)
+        {
+            return null;
+        }
+        
+        return new LexErrCode(
+            LexErrCode.UNBALANCED_BRACKET,
+            state.lineTextAt(tokens.offset(bracketIndex)),
+            tokens.columnNum(bracketIndex));
+    }
 
-        state.column(1);
+    /**
+     * Lexes every char of the state's current buffer, starting from the
+     *  first char. The SOF and EOF tokens aren't appended, so that a file can
+     *  also be lexed one buffer at a time (@see IncrementalLexer).
+     * 
+     * @param state - the state to lex with. Its buffer must already be set
+     *  with LexerState.useBuffer.
+     */
+    Result<LexErrCode> scanBuffer(LexerState state)
+    {
+        return this.scanBuffer(state, 0, state.bufferLength());
+    }
+    
+    /**
+     * Lexes the chars of the state's current buffer from start (inclusive) to
+     *  end (exclusive). The SOF and EOF tokens aren't appended.
+     * 
+     * @param state - the state to lex with. Its buffer must already be set
+     *  with LexerState.useBuffer.
+     * @param start - the index of the first char to lex. This must be the
+     *  start of a line.
+     * @param end - the index just past the last char to lex
+     */
+    Result<LexErrCode> scanBuffer(LexerState state, int start, int end)
+    {
+        var buffer = state.buffer();
+        var length = end;
+        var column = 1;
+        
+        // Runs can't be skipped on the last line, since the lexer has to
+        //  check every char there for EOF.
+        var runLimit = Math.min(end, state.lastLineStart());
         
-        for (int column = 1; column <= lineAsArray.length; column++)
+        state.lineStart(start);
+
+        for (int position = start; position < length; position++)
         {
-            var curChar = lineAsArray[column - 1];
+            var curChar = buffer[position];
+            var curCharClass = CharClass.of(curChar);
+            
+            if (curCharClass == CharClass.LINE_TERMINATOR)
+            {
+                if (curChar == '\r'
+                    && position + 1 < length
+                    && buffer[position + 1] == '\n')
+                {
+                    position++;
+                }
+                
+                state.incrementLineNum();
+                state.lineStart(position + 1);
+                column = 1;
+                
+                continue;
+            }
             
             state.curChar(curChar);
+            state.curCharClass(curCharClass);
             state.column(column);
+            state.position(position);
+            
+            var lexCharResult = this.lexChar(state);
+            
+            if (lexCharResult.hasFailed())
+            {
+                return lexCharResult;
+            }
+            
+            // The lexer may have skipped ahead, e.g. over a comment.
+            column += state.position() - position + 1;
+            position = state.position();
+            
+            var runEnd = this.skipRun(state, position + 1, runLimit);
+            column += runEnd - (position + 1);
+            position = runEnd - 1;
+        }
+
+        return Result.success();
+    }
+    
+    /**
+     * The same as Lexer.scanBuffer, but for a state that's scanning UTF-8
+     *  bytes (@see LexerState.useBytes). ASCII chars are classified straight
+     *  from their byte, only other chars are decoded.
+     * 
+     * @param state - the state to lex with
+     * @param start - the index of the first byte to lex. This must be the
+     *  start of a line.
+     * @param end - the index just past the last byte to lex
+     */
+    Result<LexErrCode> scanBytes(LexerState state, int start, int end)
+    {
+        var buffer = state.byteBuffer();
+        var column = 1;
+        var runLimit = Math.min(end, state.lastLineStart());
+        
+        state.lineStart(start);
+        
+        var position = start;
+        
+        while (position < end)
+        {
+            var curByte = buffer[position];
+            var curChar = (char) curByte;
+            var curCharClass = CharClass.WORD;
+            var curCharLength = 1;
+            var curCharWidth = 1;
             
-            if (curChar == '"')
+            if (curByte >= 0)
             {
-                this.lexCharWhenOnAQuote(state);
+                curCharClass = CharClass.of(curChar);
             }
             else
             {
-                result = this.lexCharWhenNotOnAQuote(state);
+                var codePoint = Utf8.decode(buffer, position, end);
+                
+                if (codePoint == Utf8.MALFORMED)
+                {
+                    state.position(position);
+                    
+                    return Result.failure(
+                        new LexErrCode(
+                            LexErrCode.MALFORMED_INPUT,
+                            state.currentLineText(),
+                            column));
+                }
+                
+                curCharLength = Utf8.sequenceLength(curByte);
+                
+                // Chars outside of the BMP are a surrogate pair, i.e. two
+                //  chars wide, and are always word chars.
+                curCharWidth = Character.charCount(codePoint);
+                curChar = Character.highSurrogate(codePoint);
+                
+                if (curCharWidth == 1)
+                {
+                    curChar = (char) codePoint;
+                    curCharClass = CharClass.of(curChar);
+                }
+            }
+            
+            if (curCharClass == CharClass.LINE_TERMINATOR)
+            {
+                if (curByte == '\r'
+                    && position + 1 < end
+                    && buffer[position + 1] == '\n')
+                {
+                    position++;
+                }
+                
+                position++;
+                
+                state.incrementLineNum();
+                state.lineStart(position);
+                column = 1;
+                
+                continue;
+            }
+            
+            // A token is reported at the column of the last char (of a
+            //  surrogate pair) that it was emitted on, the same as when
+            //  lexing chars.
+            state.curChar(curChar);
+            state.curCharClass(curCharClass);
+            state.curCharLength(curCharLength);
+            state.column(column + curCharWidth - 1);
+            state.position(position);
+            
+            var lexCharResult = this.lexChar(state);
+            
+            if (lexCharResult.hasFailed())
+            {
+                return lexCharResult;
+            }
+            
+            if (state.position() != position)
+            {
+                // The lexer skipped to the end of the line, over a comment.
+                //  The column doesn't matter from there on, since the next
+                //  char is a line terminator (or the end of the input).
+                position = state.position() + 1;
+                
+                continue;
             }
+            
+            position += curCharLength;
+            column += curCharWidth;
+            
+            // Runs only contain ASCII, so their length in bytes is also their
+            //  width in chars.
+            var runEnd = this.skipRun(state, position, runLimit);
+            column += runEnd - position;
+            position = runEnd;
         }
 
-        return result;
+        return Result.success();
+    }
+    
+    /**
+     * Skips the chars after the current char that would be lexed exactly the
+     *  same way as it was, e.g. the rest of a word or of a string's body.
+     * 
+     * @param state - the state, just after lexing the current char
+     * @param start - the index of the first char that may be skipped
+     * @param limit - the index that the run must end by
+     * @return the index of the first char that wasn't skipped
+     */
+    private int skipRun(LexerState state, int start, int limit)
+    {
+        if (start >= limit)
+        {
+            return start;
+        }
+        
+        var runScanner = this.runScanner();
+        var buffer = state.buffer();
+        var byteBuffer = state.byteBuffer();
+        var isScanningBytes = state.isScanningBytes();
+        
+        if (state.isInString())
+        {
+            // The char after an escape char is lexed differently.
+            if (state.wasLastCharEscape())
+            {
+                return start;
+            }
+            
+            var runEnd
+                = isScanningBytes
+                ? runScanner.skipStringChars(byteBuffer, start, limit)
+                : runScanner.skipStringChars(buffer, start, limit);
+            
+            state.extendWordSoFar(runEnd - start);
+            state.extendStringValue(start, runEnd - start);
+            
+            return runEnd;
+        }
+        
+        var curCharClass = state.curCharClass();
+        
+        if (curCharClass == CharClass.WHITESPACE)
+        {
+            // Only the first white space char can end a token, the rest do
+            //  nothing.
+            return isScanningBytes
+                ? runScanner.skipWhitespace(byteBuffer, start, limit)
+                : runScanner.skipWhitespace(buffer, start, limit);
+        }
+        
+        if (curCharClass == CharClass.WORD)
+        {
+            var runEnd
+                = isScanningBytes
+                ? runScanner.skipWordChars(byteBuffer, start, limit)
+                : runScanner.skipWordChars(buffer, start, limit);
+            
+            state.extendWordSoFar(runEnd - start);
+            
+            return runEnd;
+        }
+        
+        return start;
+    }
+    
+    private Result<LexErrCode> lexChar(LexerState state)
+    {
+        if (state.curCharClass() == CharClass.QUOTE)
+        {
+            return this.lexCharWhenOnAQuote(state);
+        }
+        
+        return this.lexCharWhenNotOnAQuote(state);
     }
     
-    private void lexCharWhenOnAQuote(LexerState state)
+    private Result<LexErrCode> lexCharWhenOnAQuote(LexerState state)
     {
         if (!state.isInString())
         {
+            state.appendPendingOperator();
             state.appendCurCharToWordSoFar();
+            state.startStringValue();
             state.prepareForNextToken(
                 true,
                 false,
-                false,
                 false);
         }
         else if (!state.wasLastCharEscape())
@@ -180,53 +630,97 @@ public class Lexer
             state.appendTokenIfNotWhitespace();
             
             state.prepareForNextToken(
-                false,
                 false,
                 false,
                 true);
         }
+        else
+        {
+            // An escaped quote is part of the string, rather than ending it.
+            return this.lexWhenInsideString(state);
+        }
+        
+        return Result.success();
     }
     
     private Result<LexErrCode> lexCharWhenNotOnAQuote(LexerState state)
     {
-        var result = new Result<LexErrCode>();
-
         if (state.isInString())
         {
-            result = this.lexWhenInsideString(state);
-        }
-        else
-        {
-            this.lexWhenNotInString(state);
+            return this.lexWhenInsideString(state);
         }
+        
+        this.lexWhenNotInString(state);
 
-        return result;
+        return Result.success();
     }
     
     private Result<LexErrCode> lexWhenInsideString(LexerState state)
     {
-        var result = new Result<LexErrCode>();
-
-        if (state.curChar() == '\\')
+        if (state.curChar() == '\\' && !state.wasLastCharEscape())
         {
             state.wasLastCharEscape(true);
         }
         else
         {
+            // The escape char itself is left out of the token's text, but
+            //  the escaped char is kept as is. Only the string's value has
+            //  the char that the escape stands for.
             state.appendCurCharToWordSoFar();
+            
+            if (state.wasLastCharEscape())
+            {
+                Lexer.appendEscapedCharToStringValue(state);
+            }
+            else
+            {
+                state.appendCurCharToStringValue();
+            }
+            
             state.wasLastCharEscape(false);
 
             if (state.isAtEOF())
             {
-                result.errCode(
+                return Result.failure(
                     new LexErrCode(
                         LexErrCode.UNEXPECTED_EOF,
-                        state.line(),
+                        state.currentLineText(),
                         state.column()));
             }
         }
 
-        return result;
+        return Result.success();
+    }
+    
+    /**
+     * Appends the char that curChar stands for, when it's escaped, to the
+     *  value of the string literal that the lexer is in.
+     */
+    private static void appendEscapedCharToStringValue(LexerState state)
+    {
+        switch (state.curChar())
+        {
+            case 'n':
+                state.appendToStringValue('\n');
+                break;
+                
+            case 't':
+                state.appendToStringValue('\t');
+                break;
+                
+            case 'r':
+                state.appendToStringValue('\r');
+                break;
+                
+            case '0':
+                state.appendToStringValue('\0');
+                break;
+                
+            default:
+                // Any other char (including '\\' and '"') stands for itself.
+                state.appendCurCharToStringValue();
+                break;
+        }
     }
     
     /**
@@ -235,15 +729,30 @@ public class Lexer
      */
     private void lexWhenNotInString(LexerState state)
     {
-        if (state.curCharIsWhitespace())
+        var curCharClass = state.curCharClass();
+        
+        if (curCharClass != CharClass.OPERATOR
+            && curCharClass != CharClass.COMMENT)
+        {
+            // The char can't continue the operator in progress (if any), so
+            //  the operator ends before it.
+            state.appendPendingOperator();
+        }
+        
+        if (curCharClass == CharClass.COMMENT)
+        {
+            // Comments run until the end of the line. They're skipped
+            //  entirely, so any token in progress carries on to the next line,
+            //  the same as if the comment was never there.
+            state.skipToEndOfLine();
+        }
+        else if (curCharClass == CharClass.WHITESPACE)
         {
             state.appendTokenIfNotWhitespace();
             
             state.resetWordSoFar();
-            state.doCheckNextToken(false);
         }
-        else if (state.curCharMatchesAny(
-                    new char[]{'(', ')', '{', '}', '[', ']', ','}))
+        else if (curCharClass == CharClass.PUNCTUATION)
         {
             state.appendTokenIfNotWhitespace();
             
@@ -251,27 +760,10 @@ public class Lexer
             state.appendTokenIfNotWhitespace();
             
             state.resetWordSoFar();
-            state.doCheckNextToken(false);
         }
-        else if (state.curCharMatchesAny(
-                    new char[]{'+', '-', '*', '/', '%', '=', '!',
-                        '<', '>', '|', '&', '^'}))
+        else if (curCharClass == CharClass.OPERATOR)
         {
-            if (state.doCheckNextToken())
-            {
-                state.appendCurCharToWordSoFar();
-                state.appendTokenIfNotWhitespace();
-                
-                state.resetWordSoFar();
-                state.doCheckNextToken(false);
-            }
-            else
-            {
-                state.appendTokenIfNotWhitespace();
-                
-                state.setWordSoFarToCurChar();
-                state.doCheckNextToken(true);
-            }
+            this.lexOperatorChar(state);
         }
         else
         {
@@ -284,22 +776,77 @@ public class Lexer
         }
     }
 
+    /**
+     * Lexes an operator char, matching the longest operator in a single
+     *  forward pass (@see OperatorTrie). The char either continues the
+     *  operator in progress, or ends it and starts a new one. An operator is
+     *  appended as soon as no longer operator can start with it, or else when
+     *  the next char doesn't continue it.
+     */
+    private void lexOperatorChar(LexerState state)
+    {
+        var operators = TokenKind.operators();
+        var operatorNode = state.operatorNode();
+        
+        var nextNode
+            = operatorNode == OperatorTrie.NO_NODE
+            ? OperatorTrie.NO_NODE
+            : operators.child(operatorNode, state.curChar());
+        
+        if (nextNode != OperatorTrie.NO_NODE)
+        {
+            state.appendCurCharToWordSoFar();
+        }
+        else
+        {
+            state.appendPendingOperator();
+            state.appendTokenIfNotWhitespace();
+            
+            state.setWordSoFarToCurChar();
+            nextNode = operators.child(OperatorTrie.ROOT, state.curChar());
+        }
+        
+        state.operatorNode(nextNode);
+        
+        if (!operators.hasChildren(nextNode) || state.isAtEOF())
+        {
+            state.appendPendingOperator();
+        }
+    }
+
     @AllArgsConstructor
     public static class LexErrCode
     {
         public static final int UNEXPECTED_EOF = 0;
+        
+        /**
+         * The input isn't valid UTF-8. This can only happen when lexing
+         *  bytes, since a file that's decoded into chars first is rejected
+         *  by the decoder instead.
+         */
+        public static final int MALFORMED_INPUT = 1;
+        
+        /**
+         * A closing bracket doesn't close the innermost open bracket, or an
+         *  opening bracket is never closed.
+         */
+        public static final int UNBALANCED_BRACKET = 2;
+        
+        /**
+         * The parser read further ahead than a source that lexes as it's
+         *  read keeps in memory (@see StreamingTokenSource.readLimit). The
+         *  error line is the line that would have been lexed next.
+         */
+        public static final int LOOKAHEAD_LIMIT = 3;
 
         @Getter
-        @Setter
-        private int errorCode;
+        private final int errorCode;
 
         @Getter
-        @Setter
-        private String errorLine;
+        private final String errorLine;
 
         @Getter
-        @Setter
-        private int errorColumn;
+        private final int errorColumn;
 
         public String errorMessage()
         {
@@ -311,6 +858,15 @@ public class Lexer
                 case UNEXPECTED_EOF:
                     return this.getEofErrorMessage();
 
+                case MALFORMED_INPUT:
+                    return this.getMalformedInputErrorMessage();
+
+                case UNBALANCED_BRACKET:
+                    return this.getUnbalancedBracketErrorMessage();
+
+                case LOOKAHEAD_LIMIT:
+                    return this.getLookaheadLimitErrorMessage();
+
                 default:
                     return "Unknown error code.";
             }
@@ -335,12 +891,57 @@ public class Lexer
                 this.errorColumn(),
                 surroundingTokens);
         }
+        private String getMalformedInputErrorMessage()
+        {
+            return String.format(
+                "[LEXER ERROR, col %s]: The file isn't valid UTF-8. The "
+                + "invalid bytes are shown as \uFFFD in:\n"
+                + "\t`%s`.",
+                this.errorColumn(),
+                this.errorLine());
+        }
+
+        private String getUnbalancedBracketErrorMessage()
+        {
+            // Brackets are ASCII, so the bracket's column is also its index
+            //  (plus one) in the line.
+            return String.format(
+                "[LEXER ERROR, col %s]: `%s` doesn't have a matching bracket "
+                + "in:\n"
+                + "\t`%s`.",
+                this.errorColumn(),
+                this.errorLine().charAt(this.errorColumn() - 1),
+                this.errorLine());
+        }
+
+        private String getLookaheadLimitErrorMessage()
+        {
+            return String.format(
+                "[LEXER ERROR]: The parser read further ahead than the "
+                + "tokens that are kept in memory while streaming, before:\n"
+                + "\t`%s`.",
+                this.errorLine());
+        }
     }
     
     /**
-     * Shorthand alias for ResultType<LexErrCode, ArrayList<Token>>
+     * Shorthand alias for ResultType<LexErrCode, TokenBuffer>
      */
-    public static class LexResult extends ResultType<LexErrCode, ArrayList<Token>>
+    public static class LexResult extends ResultType<LexErrCode, TokenBuffer>
     {
+        private LexResult(LexErrCode errCode, TokenBuffer data)
+        {
+            super(null, errCode, data);
+        }
+        
+        public static LexResult success(TokenBuffer tokens)
+        {
+            return new LexResult(null, tokens);
+        }
+        
+        public static LexResult failure(LexErrCode errCode)
+        {
+            return new LexResult(errCode, null);
+        }
     }
 }
@@ -15,7 +15,10 @@
  */
 package bluc_java;
 
-import java.util.ArrayList;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -25,38 +28,39 @@ import lombok.Setter;
 public class LexerState
 {
     /**
-     * The tokens that we have lexed so far.
+     * The buffer of a state that isn't scanning anything yet.
      */
-    @Getter
-    private ArrayList<Token> lexedTokens;
+    private static final char[] NO_BUFFER = new char[0];
     
     /**
-     * The current line that the lexer is parsing.
+     * The tokens that we have lexed so far.
      */
     @Getter
     @Setter
-    private String line;
+    private TokenBuffer lexedTokens;
     
     /**
-     * The file path of the file that the lexer is parsing.
+     * The file that the lexer is lexing. Tokens are appended with their
+     *  offset in this file.
      */
     @Getter
     @Setter
-    private String filePath;
+    private SourceFile sourceFile;
     
     /**
-     * The current line number that the lexer is on.
+     * The offset in sourceFile of the first char (or byte) of buffer, e.g.
+     *  the start of the line when the input is lexed one line at a time.
      */
     @Getter
     @Setter
-    private int lineNum;
-
+    private int bufferOffset;
+    
     /**
-     * The total number of lines of the original input that we're lexing.
+     * The current line number that the lexer is on.
      */
     @Getter
     @Setter
-    private int totalLineCount;
+    private int lineNum;
 
     /**
      * The current column that the lexer is on.
@@ -72,6 +76,21 @@ public class LexerState
     @Setter
     private char curChar;
     
+    /**
+     * The CharClass of curChar.
+     */
+    @Getter
+    @Setter
+    private byte curCharClass;
+    
+    /**
+     * The number of buffer elements that curChar takes up. This is always 1
+     *  for a char buffer, and 1 to 4 for a byte buffer.
+     */
+    @Getter
+    @Setter
+    private int curCharLength;
+    
     /**
      * Whether or not the lexer is currently in a string.
      */
@@ -87,50 +106,294 @@ public class LexerState
     private boolean wasLastCharEscape;
     
     /**
-     * Whether we are on the first char of a potentially multi-char token, and
-     *  should check the next token to see if it's a multi-char token.
+     * The node (in TokenKind.operators) of the operator that wordSoFar is, or
+     *  OperatorTrie.NO_NODE if wordSoFar isn't an operator. The operator may
+     *  still be continued by the next char.
+     */
+    @Getter
+    @Setter
+    private int operatorNode;
+    
+    /**
+     * The buffer that the lexer is currently scanning. Tokens are tracked as
+     *  offsets into this buffer, and their text is interned straight from the
+     *  buffer when they're appended to lexedTokens.
+     */
+    @Getter
+    private char[] buffer;
+    
+    /**
+     * The UTF-8 buffer that the lexer is currently scanning, if it's scanning
+     *  bytes instead of chars (@see LexerState.isScanningBytes). All of the
+     *  indexes into "buffer" are then indexes into this instead.
+     */
+    @Getter
+    private byte[] byteBuffer;
+    
+    /**
+     * True if the lexer is scanning byteBuffer, false if it's scanning
+     *  buffer.
+     */
+    @Getter
+    private boolean isScanningBytes;
+    
+    /**
+     * The number of chars (or bytes) in the buffer that are part of the input.
+     */
+    @Getter
+    private int bufferLength;
+    
+    /**
+     * The index (in buffer) of the first char of the last line of the input.
+     */
+    @Getter
+    private int lastLineStart;
+    
+    /**
+     * The index (in buffer) just past the last char of the last line of the
+     *  input, not including any line terminator.
+     */
+    @Getter
+    private int lastLineEnd;
+    
+    /**
+     * The index (in buffer) of the first char of the current line.
      */
     @Getter
     @Setter
-    private boolean doCheckNextToken;
+    private int lineStart;
     
     /**
-     * The current text of the token we've parsed so far.
+     * The index (in buffer) of curChar.
      */
     @Getter
     @Setter
-    private String wordSoFar;
+    private int position;
+    
+    /**
+     * The index (in buffer) of the first char of the token we've parsed so
+     *  far.
+     */
+    @Getter
+    private int wordStart;
+    
+    /**
+     * The number of chars (in buffer, starting at wordStart) of the token
+     *  we've parsed so far.
+     */
+    @Getter
+    private int wordLength;
+    
+    /**
+     * Text of the token we've parsed so far that could not be tracked as a
+     *  single slice of buffer, e.g. because the token continued onto a new
+     *  buffer, or because an escape char was skipped inside of a string.
+     * 
+     * This is empty for almost all tokens, so the common case never copies
+     *  any chars until the token is appended.
+     */
+    private StringBuilder spilledWord;
+    
+    /**
+     * The value of the string literal that the lexer is in, so far. This is
+     *  the string's text without its quotes, and with its escapes replaced by
+     *  the chars that they stand for.
+     */
+    private char[] stringValueChars;
+    
+    /**
+     * The number of chars in stringValueChars that are part of the value.
+     */
+    private int stringValueLength;
+    
+    /**
+     * Scratch space for classifying spilled words (and words decoded from
+     *  byteBuffer), so that they can be classified without creating a string.
+     */
+    private char[] spilledWordChars;
+    
+    /**
+     * The array that the current file was read into, when lexing bytes. The
+     *  tokens still need it to work out their columns, so it's only reused
+     *  for the next file once the state is reset.
+     */
+    private byte[] fileBytes;
+    
+    /**
+     * An array that the next file can be read into, if it's large enough.
+     */
+    private byte[] spareFileBytes;
 
     public LexerState()
     {
-        this.lexedTokens = new ArrayList<>();
+        this(new TokenBuffer());
+    }
+    
+    /**
+     * @param lexedTokens - the buffer to append the lexed tokens to
+     */
+    public LexerState(TokenBuffer lexedTokens)
+    {
+        this.lexedTokens = lexedTokens;
         this.lineNum = 1;
-        this.doCheckNextToken = false;
+        this.operatorNode = OperatorTrie.NO_NODE;
+        this.buffer = NO_BUFFER;
+        this.spilledWord = new StringBuilder();
+        this.spilledWordChars = new char[16];
+        this.stringValueChars = new char[16];
         this.resetWordSoFar();
     }
     
     /**
-     * @return true if the lexer is on the last line of input, false otherwise.
+     * Resets this state so that it can lex another input, the same as a new
+     *  state would. lexedTokens and the scratch buffers are cleared rather
+     *  than replaced, so they stay at the capacity that the largest input so
+     *  far needed.<br/><br/>
+     * 
+     * <b>Remarks:</b><br/>&#9;
+     *      The tokens that were lexed before the reset are cleared, so they
+     *  must not be used afterwards.
      */
-    public boolean isOnLastLine()
+    public void reset()
     {
-        return this.lineNum() == this.totalLineCount();
+        this.lexedTokens.clear();
+        this.sourceFile = null;
+        this.bufferOffset = 0;
+        this.lineNum = 1;
+        this.column = 0;
+        this.curChar = 0;
+        this.curCharClass = 0;
+        this.curCharLength = 0;
+        this.buffer = NO_BUFFER;
+        this.byteBuffer = null;
+        this.isScanningBytes = false;
+        this.bufferLength = 0;
+        this.lastLineStart = 0;
+        this.lastLineEnd = 0;
+        this.lineStart = 0;
+        this.position = 0;
+        this.stringValueLength = 0;
+        
+        if (this.fileBytes != null)
+        {
+            this.spareFileBytes = this.fileBytes;
+            this.fileBytes = null;
+        }
+        
+        this.prepareForNextToken(false, false, true);
     }
-
+    
     /**
-     * @return true if the lexer is on the last character of the current line, false otherwise.
+     * Returns an array that the next file can be read into (or null if there
+     *  is none), and stops keeping it as the spare array.
      */
-    public boolean isOnLastCharOfLine()
+    byte[] takeSpareFileBytes()
     {
-        return this.column() == this.line().length();
+        var spareFileBytes = this.spareFileBytes;
+        this.spareFileBytes = null;
+        
+        return spareFileBytes;
     }
-
+    
     /**
-     * @return true if the lexer is at the end of the file, false otherwise.
+     * Keeps the array that the current file was read into, so that it can be
+     *  reused for the next file after a reset.
+     */
+    void keepFileBytes(byte[] fileBytes)
+    {
+        this.fileBytes = fileBytes;
+    }
+    
+    /**
+     * @return true if the lexer is on the last character of the last line of
+     *  input (ignoring a trailing comment), false otherwise.
      */
     public boolean isAtEOF()
     {
-        return this.isOnLastLine() && this.isOnLastCharOfLine();
+        var position = this.position();
+        
+        if (position < this.lastLineStart())
+        {
+            return false;
+        }
+        
+        var nextPosition = position + this.curCharLength();
+        
+        return nextPosition == this.lastLineEnd()
+            || (!this.isInString() && this.unitAt(nextPosition) == '#');
+    }
+    
+    /**
+     * Moves position to the last char of the current line, not including its
+     *  line terminator.
+     */
+    public void skipToEndOfLine()
+    {
+        var position = this.position();
+        
+        while (position + 1 < this.bufferLength()
+            && this.unitAt(position + 1) != '\n'
+            && this.unitAt(position + 1) != '\r')
+        {
+            position++;
+        }
+        
+        this.position(position);
+    }
+    
+    /**
+     * Returns the text of the line that the lexer is currently on, without
+     *  its line terminator.
+     * 
+     * This creates a new string, so it's intended for error messages only.
+     */
+    public String currentLineText()
+    {
+        return this.lineText(this.lineStart());
+    }
+    
+    /**
+     * Returns the text of the line of the buffer that the specified position
+     *  is on, without its line terminator. Like currentLineText, this is
+     *  intended for error messages only.
+     * 
+     * @param position - an index in the buffer
+     */
+    public String lineTextAt(int position)
+    {
+        var lineStart = position;
+        
+        while (lineStart > 0
+            && this.unitAt(lineStart - 1) != '\n'
+            && this.unitAt(lineStart - 1) != '\r')
+        {
+            lineStart--;
+        }
+        
+        return this.lineText(lineStart);
+    }
+    
+    private String lineText(int lineStart)
+    {
+        var lineEnd = lineStart;
+        
+        while (lineEnd < this.bufferLength()
+            && this.unitAt(lineEnd) != '\n'
+            && this.unitAt(lineEnd) != '\r')
+        {
+            lineEnd++;
+        }
+        
+        if (this.isScanningBytes())
+        {
+            return new String(
+                this.byteBuffer,
+                lineStart,
+                lineEnd - lineStart,
+                StandardCharsets.UTF_8);
+        }
+        
+        return new String(this.buffer, lineStart, lineEnd - lineStart);
     }
 
     /**
@@ -138,7 +401,175 @@ public class LexerState
      */
     public void appendLexedToken(Token token)
     {
-        this.lexedTokens.add(token);
+        this.lexedTokens.append(token);
+    }
+    
+    /**
+     * Switches the lexer over to scanning a new buffer. Any token that's still
+     *  in progress is carried over, so that it can continue in the new buffer.
+     * 
+     * @param buffer - the buffer to scan
+     * @param bufferLength - the number of chars in buffer that are part of
+     *  the input
+     */
+    public void useBuffer(char[] buffer, int bufferLength)
+    {
+        this.useBuffer(buffer, bufferLength, true);
+    }
+    
+    /**
+     * Switches the lexer over to scanning a new buffer, which may not be the
+     *  last buffer of the input. Any token that's still in progress is
+     *  carried over, so that it can continue in the new buffer.
+     * 
+     * @param buffer - the buffer to scan
+     * @param bufferLength - the number of chars in buffer that are part of
+     *  the input
+     * @param isLastBuffer - true if the input ends at the end of this buffer.
+     *  If false, the lexer will never consider itself to be at EOF while
+     *  scanning this buffer.
+     */
+    public void useBuffer(char[] buffer, int bufferLength, boolean isLastBuffer)
+    {
+        this.spillWordSlice();
+        
+        this.buffer = buffer;
+        this.byteBuffer = null;
+        this.isScanningBytes = false;
+        this.startBuffer(bufferLength, isLastBuffer);
+    }
+    
+    /**
+     * Switches the lexer over to scanning the UTF-8 bytes of the whole input,
+     *  rather than chars. Positions are then byte indexes, but columns are
+     *  still counted in chars.
+     * 
+     * @param byteBuffer - the buffer to scan
+     * @param bufferLength - the number of bytes in byteBuffer that are part
+     *  of the input
+     */
+    public void useBytes(byte[] byteBuffer, int bufferLength)
+    {
+        this.spillWordSlice();
+        
+        this.buffer = null;
+        this.byteBuffer = byteBuffer;
+        this.isScanningBytes = true;
+        this.startBuffer(bufferLength, true);
+    }
+    
+    private void startBuffer(int bufferLength, boolean isLastBuffer)
+    {
+        this.bufferLength = bufferLength;
+        this.lexedTokens.sourceFile(this.sourceFile());
+        this.lastLineEnd = this.findLastLineEnd();
+        this.lastLineStart
+            = isLastBuffer
+            ? this.findLineStart(this.lastLineEnd)
+            : Integer.MAX_VALUE;
+        this.position = 0;
+        this.lineStart = 0;
+        this.curCharLength = 1;
+    }
+    
+    /**
+     * Returns the char (or byte, widened to an int) at the specified index of
+     *  the buffer. This is only meant for comparing against ASCII chars.
+     */
+    private int unitAt(int index)
+    {
+        return this.isScanningBytes()
+            ? this.byteBuffer[index]
+            : this.buffer[index];
+    }
+    
+    /**
+     * Captures the part of this state that carries over from one line to the
+     *  next, i.e. everything that lexing the rest of the input depends on
+     *  (other than the input itself).
+     * 
+     * This creates a new string if a token is in progress, so it should be
+     *  called at most once per line.
+     */
+    public Snapshot snapshot()
+    {
+        var pendingWord
+            = this.spilledWord.length() == 0 && this.wordLength == 0
+            ? ""
+            : this.wordSoFar();
+        
+        var pendingStringValue
+            = this.isInString()
+            ? new String(this.stringValueChars, 0, this.stringValueLength)
+            : "";
+        
+        return new Snapshot(
+            this.isInString(),
+            this.wasLastCharEscape(),
+            this.operatorNode(),
+            pendingWord,
+            pendingStringValue);
+    }
+    
+    /**
+     * Restores the state captured by LexerState.snapshot, e.g. in order to
+     *  resume lexing from the start of a line.
+     */
+    public void restore(Snapshot snapshot)
+    {
+        this.isInString(snapshot.isInString());
+        this.wasLastCharEscape(snapshot.wasLastCharEscape());
+        this.operatorNode(snapshot.operatorNode());
+        
+        this.resetWordSoFar();
+        this.spilledWord.append(snapshot.pendingWord());
+        
+        this.startStringValue();
+        
+        for (int i = 0; i < snapshot.pendingStringValue().length(); i++)
+        {
+            this.appendToStringValue(snapshot.pendingStringValue().charAt(i));
+        }
+    }
+    
+    /**
+     * Finds the end of the last line in the buffer, not including its line
+     *  terminator. Lines are split the same way as Files.readAllLines, so a
+     *  single trailing line terminator doesn't start a new (empty) line.
+     */
+    private int findLastLineEnd()
+    {
+        var end = this.bufferLength();
+        
+        if (end > 0 && this.unitAt(end - 1) == '\n')
+        {
+            end--;
+        }
+        
+        // Either a lone "\r" terminator, or the first half of "\r\n".
+        if (end > 0 && this.unitAt(end - 1) == '\r')
+        {
+            end--;
+        }
+        
+        return end;
+    }
+    
+    /**
+     * Finds the start of the line that ends at lineEnd.
+     */
+    private int findLineStart(int lineEnd)
+    {
+        var start = lineEnd;
+        
+        while (start > 0
+            && this.unitAt(start - 1) != '\n'
+            && this.unitAt(start - 1) != '\r')
+        {
+            start--;
+        }
+        
+        return start;
     }
     
     /**
@@ -146,35 +577,226 @@ public class LexerState
      */
     public void appendCurCharToWordSoFar()
     {
-        this.wordSoFar(this.wordSoFar() + this.curChar());
+        var position = this.position();
+        
+        if (this.wordLength == 0)
+        {
+            this.wordStart = position;
+        }
+        else if (this.wordStart + this.wordLength != position)
+        {
+            // The token skipped over some chars, so it can't be represented
+            //  as one slice anymore.
+            this.spillWordSlice();
+            this.wordStart = position;
+        }
+        
+        this.wordLength += this.curCharLength();
+    }
+    
+    /**
+     * Appends the `count` chars after curChar to wordSoFar, as though each of
+     *  them had been appended with appendCurCharToWordSoFar. curChar must be
+     *  the last char that was appended.
+     */
+    public void extendWordSoFar(int count)
+    {
+        this.wordLength += count;
     }
     
     /**
-     * Returns true if curChar is white space, false otherwise.
+     * Empties the value of the string literal, when the lexer enters one.
      */
-    public boolean curCharIsWhitespace()
+    public void startStringValue()
+    {
+        this.stringValueLength = 0;
+    }
+    
+    /**
+     * Appends a char to the value of the string literal that the lexer is in.
+     */
+    public void appendToStringValue(char character)
+    {
+        if (this.stringValueLength == this.stringValueChars.length)
+        {
+            this.stringValueChars
+                = Arrays.copyOf(
+                    this.stringValueChars, this.stringValueLength * 2);
+        }
+        
+        this.stringValueChars[this.stringValueLength] = character;
+        this.stringValueLength++;
+    }
+    
+    /**
+     * Appends curChar to the value of the string literal that the lexer is
+     *  in. When scanning bytes, a char outside of the BMP is appended as both
+     *  halves of its surrogate pair.
+     */
+    public void appendCurCharToStringValue()
+    {
+        if (!this.isScanningBytes() || this.curCharLength() < 4)
+        {
+            this.appendToStringValue(this.curChar());
+            
+            return;
+        }
+        
+        var codePoint
+            = Utf8.decode(
+                this.byteBuffer, this.position(), this.bufferLength());
+        
+        this.appendToStringValue(Character.highSurrogate(codePoint));
+        this.appendToStringValue(Character.lowSurrogate(codePoint));
+    }
+    
+    /**
+     * Appends `count` chars of the buffer, starting at index `start`, to the
+     *  value of the string literal that the lexer is in. When scanning bytes,
+     *  the chars must all be ASCII.
+     */
+    public void extendStringValue(int start, int count)
+    {
+        for (int i = start; i < start + count; i++)
+        {
+            this.appendToStringValue((char) this.unitAt(i));
+        }
+    }
+    
+    /**
+     * Copies the current slice of wordSoFar into spilledWord, and empties the
+     *  slice.
+     */
+    private void spillWordSlice()
     {
-        return Character.isWhitespace(this.curChar());
+        if (this.wordLength > 0 && this.isScanningBytes())
+        {
+            var charCount = this.decodeWordSlice();
+            
+            this.spilledWord.append(this.spilledWordChars, 0, charCount);
+            
+            this.wordStart = 0;
+            this.wordLength = 0;
+        }
+        else if (this.wordLength > 0)
+        {
+            this.spilledWord.append(
+                this.buffer, this.wordStart, this.wordLength);
+            
+            this.wordStart = 0;
+            this.wordLength = 0;
+        }
     }
     
     /**
-     * Returns whether curChar matches any chars specified in charsToMatch.
+     * Returns the text of the token we've parsed so far.
+     * 
+     * This creates a new string, so it should only be called when the text is
+     *  actually needed.
      */
-    public boolean curCharMatchesAny(char[] charsToMatch)
+    public String wordSoFar()
     {
-        var curChar = this.curChar();
-        var charFound = false;
+        var slice
+            = this.isScanningBytes()
+            ? new String(
+                this.byteBuffer,
+                this.wordStart,
+                this.wordLength,
+                StandardCharsets.UTF_8)
+            : new String(this.buffer, this.wordStart, this.wordLength);
         
-        for (var charToSearch : charsToMatch)
+        if (this.spilledWord.length() == 0)
         {
-            if (curChar == charToSearch)
+            return slice;
+        }
+        
+        return this.spilledWord + slice;
+    }
+    
+    /**
+     * Returns true if wordSoFar is blank and has no newlines, i.e. it
+     *  shouldn't be emitted as a token.
+     */
+    private boolean isWordSoFarSkippable()
+    {
+        for (int i = 0; i < this.spilledWord.length(); i++)
+        {
+            if (!LexerState.isSkippableChar(this.spilledWord.charAt(i)))
             {
-                charFound = true;
-                break;
+                return false;
             }
         }
         
-        return charFound;
+        var sliceEnd = this.wordStart + this.wordLength;
+        var position = this.wordStart;
+        
+        while (position < sliceEnd)
+        {
+            if (this.isScanningBytes())
+            {
+                var codePoint
+                    = Utf8.decode(this.byteBuffer, position, sliceEnd);
+                
+                if (!LexerState.isSkippableChar(codePoint))
+                {
+                    return false;
+                }
+                
+                position += Utf8.sequenceLength(this.byteBuffer[position]);
+            }
+            else
+            {
+                if (!LexerState.isSkippableChar(this.buffer[position]))
+                {
+                    return false;
+                }
+                
+                position++;
+            }
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Returns true if the char is white space other than a newline.
+     */
+    private static boolean isSkippableChar(int character)
+    {
+        return character != '\n' && Character.isWhitespace(character);
+    }
+    
+    /**
+     * Decodes the current slice of wordSoFar from byteBuffer into
+     *  spilledWordChars.
+     * 
+     * @return the number of chars that were decoded
+     */
+    private int decodeWordSlice()
+    {
+        this.ensureSpilledWordCharsCapacity(this.wordLength);
+        
+        return Utf8.decode(
+            this.byteBuffer,
+            this.wordStart,
+            this.wordLength,
+            this.spilledWordChars);
+    }
+    
+    private void ensureSpilledWordCharsCapacity(int capacity)
+    {
+        if (capacity > this.spilledWordChars.length)
+        {
+            this.spilledWordChars = new char[capacity * 2];
+        }
+    }
+    
+    /**
+     * Returns true if curChar is white space, false otherwise.
+     */
+    public boolean curCharIsWhitespace()
+    {
+        return this.curCharClass() == CharClass.WHITESPACE;
     }
     
     /**
@@ -182,7 +804,10 @@ public class LexerState
      */
     public void setWordSoFarToCurChar()
     {
-        this.wordSoFar("" + this.curChar());
+        this.resetWordSoFar();
+        
+        this.wordStart = this.position();
+        this.wordLength = 1;
     }
     
     /**
@@ -190,7 +815,9 @@ public class LexerState
      */
     public void resetWordSoFar()
     {
-        this.wordSoFar("");
+        this.wordStart = 0;
+        this.wordLength = 0;
+        this.spilledWord.setLength(0);
     }
     
     /**
@@ -200,17 +827,135 @@ public class LexerState
      */
     public void appendTokenIfNotWhitespace()
     {
-        var wordSoFar = this.wordSoFar();
+        if (this.isWordSoFarSkippable())
+        {
+            return;
+        }
         
-        if (wordSoFar.contains("\n") || !wordSoFar.isBlank())
+        this.appendWordSoFar(
+            OperatorTrie.NO_NODE, this.bufferOffset() + this.position());
+    }
+    
+    /**
+     * Appends the operator that wordSoFar is (if it is one) to lexedTokens,
+     *  with the kind of its node rather than classifying its text, then
+     *  resets wordSoFar.
+     */
+    public void appendPendingOperator()
+    {
+        var operatorNode = this.operatorNode();
+        
+        if (operatorNode == OperatorTrie.NO_NODE)
         {
-            var token = new Token();
-            token.filePath(this.filePath());
-            token.lineNum(this.lineNum());
-            token.columnNum(this.column());
-            token.text(wordSoFar);
+            return;
+        }
+        
+        // The operator may be ended by a char outside of the BMP, which is
+        //  reported at its second char, the same as when lexing bytes.
+        var offset = this.bufferOffset() + this.position();
+        
+        if (!this.isScanningBytes()
+            && Character.isHighSurrogate(this.curChar()))
+        {
+            offset++;
+        }
+        
+        this.appendWordSoFar(operatorNode, offset);
+        
+        this.resetWordSoFar();
+        this.operatorNode(OperatorTrie.NO_NODE);
+    }
+    
+    /**
+     * Appends wordSoFar to lexedTokens at the specified offset, classifying
+     *  it unless it's the operator at operatorNode.
+     */
+    private void appendWordSoFar(int operatorNode, int offset)
+    {
+        char[] chars;
+        int start;
+        int length;
+        
+        if (this.spilledWord.length() == 0 && this.isScanningBytes())
+        {
+            length = this.decodeWordSlice();
+            chars = this.spilledWordChars;
+            start = 0;
+        }
+        else if (this.spilledWord.length() == 0)
+        {
+            chars = this.buffer;
+            start = this.wordStart;
+            length = this.wordLength;
+        }
+        else
+        {
+            this.spillWordSlice();
             
-            this.appendLexedToken(token);
+            length = this.spilledWord.length();
+            
+            this.ensureSpilledWordCharsCapacity(length);
+            this.spilledWord.getChars(0, length, this.spilledWordChars, 0);
+            
+            chars = this.spilledWordChars;
+            start = 0;
+        }
+        
+        var kind
+            = operatorNode == OperatorTrie.NO_NODE
+            ? TokenKind.classify(chars, start, length)
+            : TokenKind.operators().kind(operatorNode);
+        
+        this.lexedTokens.appendChars(
+            kind,
+            chars,
+            start,
+            length,
+            offset);
+        
+        this.attachLiteralValue(kind, chars, start, length);
+    }
+    
+    /**
+     * Evaluates the literal that was just appended to lexedTokens (if it is a
+     *  literal), and attaches its value to it.
+     */
+    private void attachLiteralValue(
+        int kind,
+        char[] chars,
+        int start,
+        int length)
+    {
+        switch (kind)
+        {
+            case TokenKind.INTEGER_LITERAL:
+                var integerValue
+                    = NumberLiterals.parseInteger(chars, start, length);
+                
+                if (integerValue != NumberLiterals.OUT_OF_RANGE)
+                {
+                    this.lexedTokens.attachLiteralValue(integerValue);
+                }
+                
+                break;
+                
+            case TokenKind.FLOAT_LITERAL:
+                var floatValue
+                    = NumberLiterals.parseFloat(chars, start, length);
+                
+                this.lexedTokens.attachLiteralValue(
+                    Double.doubleToRawLongBits(floatValue));
+                
+                break;
+                
+            case TokenKind.STRING_LITERAL:
+                this.lexedTokens.attachStringValue(
+                    this.stringValueChars, 0, this.stringValueLength);
+                
+                break;
+                
+            default:
+                break;
         }
     }
     
@@ -223,9 +968,6 @@ public class LexerState
      *  if you need to.
      * @param inString - true if the lexer is currently inside of a string
      *  literal.
-     * @param doCheckNextToken - true if, during lexing, we should check the
-     *  following token after this one. This is in-cas we have a multi-glyph
-     *  lexeme.
      * @param wasLastCharEscape - true if the last char was the "escape" char
      *  for a string (i.e., the equivalent of "\" in Java).
      * @param doResetWordSoFar - true if this function should reset the state's
@@ -233,12 +975,11 @@ public class LexerState
      */
     public void prepareForNextToken(
         boolean inString,
-        boolean doCheckNextToken,
         boolean wasLastCharEscape,
         boolean doResetWordSoFar)
     {
         this.isInString(inString);
-        this.doCheckNextToken(doCheckNextToken);
+        this.operatorNode(OperatorTrie.NO_NODE);
         this.wasLastCharEscape(wasLastCharEscape);
         
         if (doResetWordSoFar)
@@ -254,4 +995,46 @@ public class LexerState
     {
         this.lineNum(this.lineNum() + 1);
     }
+    
+    /**
+     * The part of a LexerState that carries over from one line to the next.
+     *  Two equal snapshots will lex the same input into the same tokens.
+     */
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    public static class Snapshot
+    {
+        /**
+         * The state at the very start of the input.
+         */
+        public static final Snapshot INITIAL
+            = new Snapshot(false, false, OperatorTrie.NO_NODE, "", "");
+        
+        @Getter
+        private final boolean isInString;
+        
+        @Getter
+        private final boolean wasLastCharEscape;
+        
+        /**
+         * The node of the operator that was in progress, or
+         *  OperatorTrie.NO_NODE if there was none.
+         */
+        @Getter
+        private final int operatorNode;
+        
+        /**
+         * The text of the token that was in progress, or "" if there was
+         *  none.
+         */
+        @Getter
+        private final String pendingWord;
+        
+        /**
+         * The value of the string literal that was in progress, or "" if
+         *  there was none.
+         */
+        @Getter
+        private final String pendingStringValue;
+    }
 }
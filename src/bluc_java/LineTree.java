@@ -0,0 +1,648 @@
+/*
+ * Copyright 2023 John Schneider.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bluc_java;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.function.Consumer;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * The lines of a file that's being edited, in order, for the incremental
+ *  lexer (@see IncrementalLexer).<br/><br/>
+ *
+ * <b>Remarks:</b><br/>&#9;
+ *      The lines are kept in a balanced binary tree (a treap, keyed by
+ *  position), rather than in an array. Each line also stores the number of
+ *  lines and tokens in its subtree, so a line's index and its first token's
+ *  index are both sums that are found on the way down to it. Replacing lines
+ *  and updating a re-lexed line then take O(log n) time, however many lines
+ *  come after them, instead of shifting every line and token start after the
+ *  edit.<br/><br/>&#9;
+ *      Each line also summarizes its brackets, as the number of opening
+ *  brackets less the number of closing brackets, and the lowest that count
+ *  gets at any point in the line. Combined over a subtree, these tell
+ *  whether the subtree closes a bracket that was opened before it, so the
+ *  line that closes a bracket (or opens one, looking backwards) is found by
+ *  walking down the tree, rather than by counting the brackets of every line
+ *  in between (@see LineTree.findClosingLine).
+ */
+class LineTree
+{
+    /**
+     * The random priorities that keep the tree balanced. The seed is fixed,
+     *  so that lexing the same edits always builds the same tree.
+     */
+    private final SplittableRandom priorities;
+
+    private Line root;
+
+    /**
+     * The two trees that the last call to split produced. They're fields
+     *  rather than a returned pair, so that splitting doesn't allocate.
+     */
+    private Line splitLeft;
+
+    private Line splitRight;
+
+    /**
+     * The number of brackets that are left open, as of the start of the line
+     *  that the last call to findClosingLine found (or the number left to
+     *  open, as of the end of the line that findOpeningLine found).
+     */
+    @Getter
+    private int searchDepth;
+
+    LineTree()
+    {
+        this.priorities = new SplittableRandom(0);
+    }
+
+    /**
+     * Returns the number of lines.
+     */
+    int size()
+    {
+        return LineTree.lineCount(this.root);
+    }
+
+    /**
+     * Returns the number of tokens in every line.
+     */
+    int tokenCount()
+    {
+        return LineTree.tokenCount(this.root);
+    }
+
+    /**
+     * Returns the line at lineIndex.
+     */
+    Line get(int lineIndex)
+    {
+        var node = this.root;
+
+        while (true)
+        {
+            var leftCount = LineTree.lineCount(node.left);
+
+            if (lineIndex < leftCount)
+            {
+                node = node.left;
+            }
+            else if (lineIndex == leftCount)
+            {
+                return node;
+            }
+            else
+            {
+                lineIndex -= leftCount + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of tokens in the lines before lineIndex, i.e. the
+     *  index of the line's first token among every line's tokens.
+     */
+    int tokenStart(int lineIndex)
+    {
+        var node = this.root;
+        var tokenStart = 0;
+
+        while (node != null)
+        {
+            var leftCount = LineTree.lineCount(node.left);
+
+            if (lineIndex <= leftCount)
+            {
+                node = node.left;
+            }
+            else
+            {
+                tokenStart
+                    += LineTree.tokenCount(node.left) + node.ownTokenCount();
+                lineIndex -= leftCount + 1;
+                node = node.right;
+            }
+        }
+
+        return tokenStart;
+    }
+
+    /**
+     * Returns the index of the line that has the token at tokenIndex, among
+     *  every line's tokens. The index must be less than tokenCount.
+     */
+    int lineIndexOfToken(int tokenIndex)
+    {
+        var node = this.root;
+        var lineIndex = 0;
+
+        while (true)
+        {
+            var leftTokens = LineTree.tokenCount(node.left);
+
+            if (tokenIndex < leftTokens)
+            {
+                node = node.left;
+                continue;
+            }
+
+            tokenIndex -= leftTokens;
+            lineIndex += LineTree.lineCount(node.left);
+
+            if (tokenIndex < node.ownTokenCount())
+            {
+                return lineIndex;
+            }
+
+            tokenIndex -= node.ownTokenCount();
+            lineIndex++;
+            node = node.right;
+        }
+    }
+
+    /**
+     * Returns the index of the first line, at or after startIndex, that
+     *  closes all of the specified number of brackets that are open at the
+     *  start of startIndex, or -1 if they're never all closed. The number of
+     *  those brackets that are still open at the start of the line that's
+     *  found is stored in searchDepth.<br/><br/>
+     *
+     * <b>Remarks:</b><br/>&#9;
+     *      Brackets are counted regardless of their kind, so the bracket
+     *  that the count drops to 0 at may be the wrong kind of bracket.
+     */
+    int findClosingLine(int startIndex, int openCount)
+    {
+        this.searchDepth = openCount;
+
+        return this.findClosingLine(this.root, 0, startIndex);
+    }
+
+    private int findClosingLine(Line node, int firstIndex, int startIndex)
+    {
+        if (node == null || firstIndex + node.lineCount <= startIndex)
+        {
+            return -1;
+        }
+
+        if (firstIndex >= startIndex
+            && this.searchDepth + node.minBracketDepth > 0)
+        {
+            this.searchDepth += node.bracketDepth;
+
+            return -1;
+        }
+
+        var found = this.findClosingLine(node.left, firstIndex, startIndex);
+
+        if (found != -1)
+        {
+            return found;
+        }
+
+        var index = firstIndex + LineTree.lineCount(node.left);
+
+        if (index >= startIndex)
+        {
+            if (this.searchDepth + node.ownMinBracketDepth <= 0)
+            {
+                return index;
+            }
+
+            this.searchDepth += node.ownBracketDepth;
+        }
+
+        return this.findClosingLine(node.right, index + 1, startIndex);
+    }
+
+    /**
+     * Returns the index of the last line before endIndex that opens all of
+     *  the specified number of brackets that are closed (but not opened)
+     *  before endIndex, or -1 if they're never all opened. The number of
+     *  those brackets that are still to be opened, as of the end of the line
+     *  that's found, is stored in searchDepth. Like findClosingLine, this
+     *  doesn't look at the brackets' kinds.
+     */
+    int findOpeningLine(int endIndex, int closeCount)
+    {
+        this.searchDepth = closeCount;
+
+        return this.findOpeningLine(this.root, 0, endIndex);
+    }
+
+    private int findOpeningLine(Line node, int firstIndex, int endIndex)
+    {
+        if (node == null || firstIndex >= endIndex)
+        {
+            return -1;
+        }
+
+        // The most that any suffix of the lines opens is their depth less the
+        //  lowest depth that they reach.
+        if (firstIndex + node.lineCount <= endIndex
+            && this.searchDepth > node.bracketDepth - node.minBracketDepth)
+        {
+            this.searchDepth -= node.bracketDepth;
+
+            return -1;
+        }
+
+        var index = firstIndex + LineTree.lineCount(node.left);
+        var found = this.findOpeningLine(node.right, index + 1, endIndex);
+
+        if (found != -1)
+        {
+            return found;
+        }
+
+        if (index < endIndex)
+        {
+            if (this.searchDepth
+                <= node.ownBracketDepth - node.ownMinBracketDepth)
+            {
+                return index;
+            }
+
+            this.searchDepth -= node.ownBracketDepth;
+        }
+
+        return this.findOpeningLine(node.left, firstIndex, endIndex);
+    }
+
+    /**
+     * Returns the index of the first line, at or after startIndex, that has
+     *  a bracket whose match isn't on the same line (@see
+     *  Line.hasUnmatchedBracket), or -1 if there isn't one.
+     */
+    int nextLineWithUnmatchedBracket(int startIndex)
+    {
+        return LineTree.nextLineWithUnmatchedBracket(
+            this.root, 0, startIndex);
+    }
+
+    private static int nextLineWithUnmatchedBracket(
+        Line node,
+        int firstIndex,
+        int startIndex)
+    {
+        if (node == null
+            || node.unmatchedLineCount == 0
+            || firstIndex + node.lineCount <= startIndex)
+        {
+            return -1;
+        }
+
+        var found
+            = LineTree.nextLineWithUnmatchedBracket(
+                node.left, firstIndex, startIndex);
+
+        if (found != -1)
+        {
+            return found;
+        }
+
+        var index = firstIndex + LineTree.lineCount(node.left);
+
+        if (index >= startIndex && node.hasUnmatchedBracket)
+        {
+            return index;
+        }
+
+        return LineTree.nextLineWithUnmatchedBracket(
+            node.right, index + 1, startIndex);
+    }
+
+    /**
+     * Performs the action on every line, in order.
+     */
+    void forEach(Consumer<Line> action)
+    {
+        LineTree.forEach(this.root, action);
+    }
+
+    private static void forEach(Line node, Consumer<Line> action)
+    {
+        if (node == null)
+        {
+            return;
+        }
+
+        LineTree.forEach(node.left, action);
+        action.accept(node);
+        LineTree.forEach(node.right, action);
+    }
+
+    /**
+     * Replaces `removedCount` lines, starting at the line at start, with the
+     *  specified lines. The new lines must not be in a tree already.
+     */
+    void replace(int start, int removedCount, List<Line> newLines)
+    {
+        this.split(this.root, start);
+        var before = this.splitLeft;
+
+        this.split(this.splitRight, removedCount);
+        var after = this.splitRight;
+
+        Line inserted = null;
+
+        for (var line : newLines)
+        {
+            line.left = null;
+            line.right = null;
+            line.priority = this.priorities.nextInt();
+            line.update();
+
+            inserted = LineTree.merge(inserted, line);
+        }
+
+        this.root = LineTree.merge(LineTree.merge(before, inserted), after);
+    }
+
+    /**
+     * Updates the line's bracket summary, and the counts of the subtrees
+     *  that have the line at lineIndex, after the line's tokens were
+     *  replaced.
+     */
+    void update(int lineIndex)
+    {
+        LineTree.update(this.root, lineIndex);
+    }
+
+    private static void update(Line node, int lineIndex)
+    {
+        var leftCount = LineTree.lineCount(node.left);
+
+        if (lineIndex < leftCount)
+        {
+            LineTree.update(node.left, lineIndex);
+        }
+        else if (lineIndex > leftCount)
+        {
+            LineTree.update(node.right, lineIndex - leftCount - 1);
+        }
+        else
+        {
+            node.summarizeBrackets();
+        }
+
+        node.update();
+    }
+
+    /**
+     * Splits the tree at node into its first `count` lines, which are stored
+     *  in splitLeft, and the rest, which are stored in splitRight.
+     */
+    private void split(Line node, int count)
+    {
+        if (node == null)
+        {
+            this.splitLeft = null;
+            this.splitRight = null;
+
+            return;
+        }
+
+        var leftCount = LineTree.lineCount(node.left);
+
+        if (count <= leftCount)
+        {
+            this.split(node.left, count);
+            node.left = this.splitRight;
+            node.update();
+            this.splitRight = node;
+        }
+        else
+        {
+            this.split(node.right, count - leftCount - 1);
+            node.right = this.splitLeft;
+            node.update();
+            this.splitLeft = node;
+        }
+    }
+
+    /**
+     * Joins two trees, with the lines of `left` before the lines of `right`,
+     *  and returns the joined tree.
+     */
+    private static Line merge(Line left, Line right)
+    {
+        if (left == null)
+        {
+            return right;
+        }
+
+        if (right == null)
+        {
+            return left;
+        }
+
+        if (left.priority > right.priority)
+        {
+            left.right = LineTree.merge(left.right, right);
+            left.update();
+
+            return left;
+        }
+
+        right.left = LineTree.merge(left, right.left);
+        right.update();
+
+        return right;
+    }
+
+    private static int lineCount(Line node)
+    {
+        return node == null ? 0 : node.lineCount;
+    }
+
+    private static int tokenCount(Line node)
+    {
+        return node == null ? 0 : node.tokenCount;
+    }
+
+    private static int bracketDepth(Line node)
+    {
+        return node == null ? 0 : node.bracketDepth;
+    }
+
+    private static int minBracketDepth(Line node)
+    {
+        return node == null ? 0 : node.minBracketDepth;
+    }
+
+    private static int unmatchedLineCount(Line node)
+    {
+        return node == null ? 0 : node.unmatchedLineCount;
+    }
+
+    /**
+     * A line of the file, along with the tokens that were emitted while
+     *  lexing it. Each line is also a node of the tree.
+     */
+    static class Line
+    {
+        @Getter
+        private final String text;
+
+        /**
+         * The lexer state at the start of this line.
+         */
+        @Getter
+        @Setter
+        private LexerState.Snapshot startState;
+
+        /**
+         * The tokens that were emitted while lexing this line, or null if it
+         *  hasn't been lexed yet. They have no source file, and their offsets
+         *  are relative to the start of the line, since the line moves
+         *  whenever lines before it are inserted or removed.<br/><br/>
+         *
+         * <b>Remarks:</b><br/>&#9;
+         *      The tree must be updated (@see LineTree.update) whenever
+         *  they're replaced.
+         */
+        @Getter
+        @Setter
+        private TokenBuffer tokens;
+
+        private Line left;
+
+        private Line right;
+
+        private int priority;
+
+        /**
+         * The number of lines in the subtree that this line is the root of.
+         */
+        private int lineCount;
+
+        /**
+         * The number of tokens in the subtree that this line is the root of.
+         */
+        private int tokenCount;
+
+        /**
+         * The number of opening brackets on this line, less the number of
+         *  closing brackets.
+         */
+        private int ownBracketDepth;
+
+        /**
+         * The lowest that ownBracketDepth gets at any point in this line,
+         *  which is 0 if no bracket is closed before it's opened.
+         */
+        private int ownMinBracketDepth;
+
+        /**
+         * Whether any bracket on this line isn't matched on the same line,
+         *  i.e. it's matched on another line, or it's unbalanced.
+         */
+        private boolean hasUnmatchedBracket;
+
+        /**
+         * The same as ownBracketDepth and ownMinBracketDepth, but for the
+         *  lines of the subtree that this line is the root of, in order.
+         */
+        private int bracketDepth;
+
+        private int minBracketDepth;
+
+        /**
+         * The number of lines in the subtree that this line is the root of
+         *  that have an unmatched bracket.
+         */
+        private int unmatchedLineCount;
+
+        Line(String text)
+        {
+            this.text = text;
+        }
+
+        private int ownTokenCount()
+        {
+            return this.tokens == null ? 0 : this.tokens.size();
+        }
+
+        /**
+         * Counts this line's brackets, after its tokens were lexed.
+         */
+        private void summarizeBrackets()
+        {
+            this.ownBracketDepth = 0;
+            this.ownMinBracketDepth = 0;
+            this.hasUnmatchedBracket = false;
+
+            for (int i = 0; i < this.ownTokenCount(); i++)
+            {
+                var kind = this.tokens.kind(i);
+
+                if (TokenKind.isIn(kind, TokenKind.OPENING_BRACKETS))
+                {
+                    this.ownBracketDepth++;
+                }
+                else if (TokenKind.isIn(kind, TokenKind.CLOSING_BRACKETS))
+                {
+                    this.ownBracketDepth--;
+                    this.ownMinBracketDepth
+                        = Math.min(
+                            this.ownMinBracketDepth, this.ownBracketDepth);
+                }
+                else
+                {
+                    continue;
+                }
+
+                if (this.tokens.matchingBracket(i) == TokenBuffer.NO_MATCH)
+                {
+                    this.hasUnmatchedBracket = true;
+                }
+            }
+        }
+
+        /**
+         * Recounts this subtree from its children's counts.
+         */
+        private void update()
+        {
+            this.lineCount
+                = 1 + LineTree.lineCount(this.left)
+                + LineTree.lineCount(this.right);
+            this.tokenCount
+                = this.ownTokenCount() + LineTree.tokenCount(this.left)
+                + LineTree.tokenCount(this.right);
+
+            var leftDepth = LineTree.bracketDepth(this.left);
+            var ownDepth = leftDepth + this.ownBracketDepth;
+
+            this.bracketDepth = ownDepth + LineTree.bracketDepth(this.right);
+            this.minBracketDepth
+                = Math.min(
+                    LineTree.minBracketDepth(this.left),
+                    Math.min(
+                        leftDepth + this.ownMinBracketDepth,
+                        ownDepth + LineTree.minBracketDepth(this.right)));
+            this.unmatchedLineCount
+                = (this.hasUnmatchedBracket ? 1 : 0)
+                + LineTree.unmatchedLineCount(this.left)
+                + LineTree.unmatchedLineCount(this.right);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2023 John Schneider.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bluc_java;
+
+/**
+ * Parses the values of number literals straight from a slice of chars, so
+ *  that the lexer can evaluate them without creating a string.
+ */
+public class NumberLiterals
+{
+    /**
+     * Returned by NumberLiterals.parseInteger for a literal that doesn't fit
+     *  in a long. Literals are never negative, so this can't be a real value.
+     */
+    public static final long OUT_OF_RANGE = -1;
+    
+    /**
+     * A double can hold every integer with this many digits exactly.
+     */
+    private static final int MAX_EXACT_DIGITS = 15;
+    
+    /**
+     * The powers of ten that a double can hold exactly, indexed by exponent.
+     */
+    private static final double[] EXACT_POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    
+    /**
+     * Parses an INTEGER_LITERAL, i.e. one or more decimal digits.
+     * 
+     * @param chars - the array that holds the literal
+     * @param start - the index (in chars) of the literal's first char
+     * @param length - the number of chars in the literal
+     * @return the literal's value, or OUT_OF_RANGE if it doesn't fit in a
+     *  long
+     */
+    public static long parseInteger(char[] chars, int start, int length)
+    {
+        var value = 0L;
+        
+        for (int i = start; i < start + length; i++)
+        {
+            var digit = chars[i] - '0';
+            
+            if (value > (Long.MAX_VALUE - digit) / 10)
+            {
+                return OUT_OF_RANGE;
+            }
+            
+            value = value * 10 + digit;
+        }
+        
+        return value;
+    }
+    
+    /**
+     * Parses a FLOAT_LITERAL, i.e. decimal digits with a '.' somewhere after
+     *  the first digit.<br/><br/>
+     * 
+     * <b>Remarks:</b><br/>&#9;
+     *      Literals with at most 15 significant digits (which is nearly all of
+     *  them) are parsed as an exact integer divided by an exact power of ten.
+     *  A single division rounds correctly, so this gives the same result as
+     *  Double.parseDouble without any of its overhead. Longer literals fall
+     *  back to Double.parseDouble.
+     * 
+     * @param chars - the array that holds the literal
+     * @param start - the index (in chars) of the literal's first char
+     * @param length - the number of chars in the literal
+     */
+    public static double parseFloat(char[] chars, int start, int length)
+    {
+        var mantissa = 0L;
+        var significantDigitCount = 0;
+        var fractionDigitCount = 0;
+        var isInFraction = false;
+        
+        for (int i = start; i < start + length; i++)
+        {
+            var character = chars[i];
+            
+            if (character == '.')
+            {
+                isInFraction = true;
+                
+                continue;
+            }
+            
+            if (isInFraction)
+            {
+                fractionDigitCount++;
+            }
+            
+            // Leading zeros don't change the mantissa.
+            if (significantDigitCount == 0 && character == '0')
+            {
+                continue;
+            }
+            
+            mantissa = mantissa * 10 + (character - '0');
+            significantDigitCount++;
+        }
+        
+        if (significantDigitCount > MAX_EXACT_DIGITS
+            || fractionDigitCount >= EXACT_POWERS_OF_TEN.length)
+        {
+            return Double.parseDouble(new String(chars, start, length));
+        }
+        
+        return mantissa / EXACT_POWERS_OF_TEN[fractionDigitCount];
+    }
+}
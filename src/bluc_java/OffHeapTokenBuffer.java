@@ -0,0 +1,274 @@
+/*
+ * Copyright 2023 John Schneider.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bluc_java;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A token buffer that keeps its token fields outside of the Java heap, in
+ *  blocks of direct memory.<br/><br/>
+ *
+ * <b>Remarks:</b><br/>&#9;
+ *      This is for inputs whose token arrays would be too large to keep on
+ *  the heap, or that would make the garbage collector copy them around. The
+ *  parser reads it through the same TokenSource accessors as any other token
+ *  buffer.<br/><br/>&#9;
+ *      The tokens are stored in fixed size blocks rather than one large
+ *  buffer, so growing the buffer never copies the tokens that are already
+ *  stored. Each block holds the kinds, symbols and offsets of BLOCK_SIZE
+ *  tokens, as three columns of ints.<br/><br/>&#9;
+ *      Direct memory is only freed by the garbage collector, so the blocks
+ *  are freed deterministically by handing them back to a shared pool when the
+ *  buffer is closed, for the next buffer to reuse. The pool keeps at most
+ *  MAX_POOLED_BLOCKS blocks; blocks past that are left to the garbage
+ *  collector.<br/><br/>&#9;
+ *      The side tables (literal values and explicit positions) and the
+ *  matching brackets stay on the heap, since only a small fraction of tokens
+ *  have an entry in them.
+ */
+public class OffHeapTokenBuffer extends TokenBuffer implements AutoCloseable
+{
+    private static final int BLOCK_BITS = 14;
+
+    /**
+     * The number of tokens in each block.
+     */
+    public static final int BLOCK_SIZE = 1 << BLOCK_BITS;
+
+    private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+
+    /**
+     * The byte offsets of each column in a block.
+     */
+    private static final int KINDS_START = 0;
+    private static final int SYMBOLS_START = BLOCK_SIZE * Integer.BYTES;
+    private static final int OFFSETS_START = 2 * BLOCK_SIZE * Integer.BYTES;
+
+    private static final int BLOCK_BYTES = 3 * BLOCK_SIZE * Integer.BYTES;
+
+    /**
+     * The maximum number of free blocks that the pool keeps, i.e. about 48MB
+     *  of direct memory.
+     */
+    private static final int MAX_POOLED_BLOCKS = 256;
+
+    private static final ConcurrentLinkedQueue<ByteBuffer> BLOCK_POOL
+        = new ConcurrentLinkedQueue<>();
+
+    private static final AtomicInteger POOLED_BLOCK_COUNT = new AtomicInteger();
+
+    private static final ByteBuffer[] NO_BLOCKS = new ByteBuffer[0];
+
+    /**
+     * The blocks that the tokens are stored in, or null once the buffer has
+     *  been closed.
+     */
+    private ByteBuffer[] blocks;
+
+    private int blockCount;
+
+    public OffHeapTokenBuffer()
+    {
+        this(null);
+    }
+
+    /**
+     * @param symbolTable - the table to intern token text into, or null to
+     *  give the buffer its own table (@see TokenBuffer.useSymbolTable)
+     */
+    public OffHeapTokenBuffer(SymbolTable symbolTable)
+    {
+        super(0, symbolTable);
+
+        this.blocks = NO_BLOCKS;
+    }
+
+    /**
+     * Returns the number of free blocks in the pool.
+     */
+    public static int pooledBlockCount()
+    {
+        return POOLED_BLOCK_COUNT.get();
+    }
+
+    /**
+     * Returns true if the buffer has been closed.
+     */
+    public boolean isClosed()
+    {
+        return this.blocks == null;
+    }
+
+    /**
+     * Removes every token from this buffer. The blocks are kept, so that
+     *  refilling the buffer doesn't have to allocate them again.
+     */
+    @Override
+    public void clear()
+    {
+        this.checkOpen();
+
+        super.clear();
+    }
+
+    /**
+     * Hands the buffer's blocks back to the pool. The buffer can't be used
+     *  afterwards. Closing a buffer that's already closed does nothing.
+     */
+    @Override
+    public void close()
+    {
+        if (this.blocks == null)
+        {
+            return;
+        }
+
+        for (int i = 0; i < this.blockCount; i++)
+        {
+            OffHeapTokenBuffer.releaseBlock(this.blocks[i]);
+        }
+
+        super.clear();
+
+        this.blocks = null;
+        this.blockCount = 0;
+    }
+
+    @Override
+    public int kind(int index)
+    {
+        return this.block(index).getInt(
+            KINDS_START + OffHeapTokenBuffer.byteIndex(index));
+    }
+
+    @Override
+    public int symbol(int index)
+    {
+        return this.block(index).getInt(
+            SYMBOLS_START + OffHeapTokenBuffer.byteIndex(index));
+    }
+
+    @Override
+    public int offset(int index)
+    {
+        return this.block(index).getInt(
+            OFFSETS_START + OffHeapTokenBuffer.byteIndex(index));
+    }
+
+    @Override
+    protected void ensureCapacity(int capacity)
+    {
+        this.checkOpen();
+
+        var neededBlockCount = (capacity + BLOCK_MASK) >>> BLOCK_BITS;
+
+        if (neededBlockCount <= this.blockCount)
+        {
+            return;
+        }
+
+        if (neededBlockCount > this.blocks.length)
+        {
+            this.blocks
+                = Arrays.copyOf(
+                    this.blocks,
+                    Math.max(neededBlockCount, this.blocks.length * 2));
+        }
+
+        while (this.blockCount < neededBlockCount)
+        {
+            this.blocks[this.blockCount] = OffHeapTokenBuffer.acquireBlock();
+            this.blockCount++;
+        }
+    }
+
+    @Override
+    protected void storeToken(int index, int kind, int symbol, int offset)
+    {
+        var block = this.block(index);
+        var byteIndex = OffHeapTokenBuffer.byteIndex(index);
+
+        block.putInt(KINDS_START + byteIndex, kind);
+        block.putInt(SYMBOLS_START + byteIndex, symbol);
+        block.putInt(OFFSETS_START + byteIndex, offset);
+    }
+
+    @Override
+    protected void moveTokensToStart(int from, int count)
+    {
+        for (int i = 0; i < count; i++)
+        {
+            this.storeToken(
+                i,
+                this.kind(from + i),
+                this.symbol(from + i),
+                this.offset(from + i));
+        }
+    }
+
+    private ByteBuffer block(int index)
+    {
+        this.checkOpen();
+
+        return this.blocks[index >>> BLOCK_BITS];
+    }
+
+    private static int byteIndex(int index)
+    {
+        return (index & BLOCK_MASK) * Integer.BYTES;
+    }
+
+    private void checkOpen()
+    {
+        if (this.blocks == null)
+        {
+            throw new IllegalStateException(
+                "The token buffer has already been closed.");
+        }
+    }
+
+    private static ByteBuffer acquireBlock()
+    {
+        var block = BLOCK_POOL.poll();
+
+        if (block == null)
+        {
+            return ByteBuffer
+                .allocateDirect(BLOCK_BYTES)
+                .order(ByteOrder.nativeOrder());
+        }
+
+        POOLED_BLOCK_COUNT.decrementAndGet();
+
+        return block;
+    }
+
+    private static void releaseBlock(ByteBuffer block)
+    {
+        if (POOLED_BLOCK_COUNT.incrementAndGet() <= MAX_POOLED_BLOCKS)
+        {
+            BLOCK_POOL.offer(block);
+        }
+        else
+        {
+            POOLED_BLOCK_COUNT.decrementAndGet();
+        }
+    }
+}
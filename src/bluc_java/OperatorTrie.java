@@ -0,0 +1,182 @@
+/*
+ * Copyright 2023 John Schneider.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bluc_java;
+
+import java.util.Arrays;
+
+/**
+ * A trie of the operators, for lexing the longest operator at the current
+ *  position one char at a time.<br/><br/>
+ *
+ * <b>Remarks:</b><br/>&#9;
+ *      Each node is an int, the root being OperatorTrie.ROOT. The lexer keeps
+ *  the node of the operator that it's in the middle of, and steps to the
+ *  child for each operator char that follows. When there's no child for the
+ *  next char, the operator ends, and its kind is the kind of its node.<br/><br/>&#9;
+ *      Every prefix of an operator must also be an operator (e.g. ">>=" needs
+ *  ">>" and ">"), so that every node is a complete operator. The lexer can
+ *  then always end an operator where it stops matching, without backing up
+ *  to a shorter operator.<br/><br/>&#9;
+ *      Operators are ASCII, so each node has a child slot for every ASCII
+ *  char.
+ */
+public class OperatorTrie
+{
+    /**
+     * The node that every operator starts from. It isn't an operator itself.
+     */
+    public static final int ROOT = 0;
+
+    /**
+     * The node of no operator, e.g. the child of a char that can't continue
+     *  the operator.
+     */
+    public static final int NO_NODE = -1;
+
+    private static final int ALPHABET_SIZE = 128;
+
+    /**
+     * The child of each node for each char, at node * ALPHABET_SIZE + char.
+     *  0 means no child, since the root is never a child.
+     */
+    private int[] children;
+
+    /**
+     * The TokenKind of the operator that ends at each node.
+     */
+    private int[] kinds;
+
+    /**
+     * True for each node that has at least one child.
+     */
+    private boolean[] hasChildren;
+
+    private int nodeCount;
+
+    public OperatorTrie()
+    {
+        this.children = new int[16 * ALPHABET_SIZE];
+        this.kinds = new int[16];
+        this.hasChildren = new boolean[16];
+        this.nodeCount = 1;
+    }
+
+    /**
+     * Adds an operator to the trie. Operators must be added after all of
+     *  their prefixes.
+     *
+     * @param text - the text of the operator
+     * @param kind - the TokenKind of the operator
+     */
+    public void add(String text, int kind)
+    {
+        var node = ROOT;
+
+        for (int i = 0; i < text.length() - 1; i++)
+        {
+            node = this.child(node, text.charAt(i));
+
+            if (node == NO_NODE)
+            {
+                throw new IllegalArgumentException(
+                    "The operator `" + text + "` was added before its "
+                    + "prefix `" + text.substring(0, i + 1) + "`.");
+            }
+        }
+
+        var lastChar = text.charAt(text.length() - 1);
+
+        if (this.child(node, lastChar) != NO_NODE)
+        {
+            throw new IllegalArgumentException(
+                "The operator `" + text + "` was added twice.");
+        }
+
+        var newNode = this.addNode(kind);
+
+        this.children[node * ALPHABET_SIZE + lastChar] = newNode;
+        this.hasChildren[node] = true;
+    }
+
+    /**
+     * Returns the child of node for the specified char, or NO_NODE if the
+     *  char can't continue the operator.
+     */
+    public int child(int node, char character)
+    {
+        if (character >= ALPHABET_SIZE)
+        {
+            return NO_NODE;
+        }
+
+        var child = this.children[node * ALPHABET_SIZE + character];
+
+        return child == 0 ? NO_NODE : child;
+    }
+
+    /**
+     * Returns the TokenKind of the operator that ends at node.
+     */
+    public int kind(int node)
+    {
+        return this.kinds[node];
+    }
+
+    /**
+     * Returns true if some operator continues past node, i.e. the operator
+     *  that ends at node may be the start of a longer one.
+     */
+    public boolean hasChildren(int node)
+    {
+        return this.hasChildren[node];
+    }
+
+    /**
+     * Returns the TokenKind of the operator whose text is the specified slice
+     *  of chars, or TokenKind.UNKNOWN if it isn't an operator.
+     */
+    public int kindOf(char[] chars, int start, int length)
+    {
+        var node = ROOT;
+
+        for (int i = start; i < start + length && node != NO_NODE; i++)
+        {
+            node = this.child(node, chars[i]);
+        }
+
+        return node == NO_NODE || node == ROOT
+            ? TokenKind.UNKNOWN
+            : this.kinds[node];
+    }
+
+    private int addNode(int kind)
+    {
+        var node = this.nodeCount;
+
+        if (node == this.kinds.length)
+        {
+            this.children
+                = Arrays.copyOf(this.children, 2 * node * ALPHABET_SIZE);
+            this.kinds = Arrays.copyOf(this.kinds, 2 * node);
+            this.hasChildren = Arrays.copyOf(this.hasChildren, 2 * node);
+        }
+
+        this.kinds[node] = kind;
+        this.nodeCount++;
+
+        return node;
+    }
+}
@@ -0,0 +1,424 @@
+/*
+ * Copyright 2023 John Schneider.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bluc_java;
+
+import bluc_java.Lexer.LexErrCode;
+import bluc_java.Lexer.LexResult;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import lombok.Getter;
+
+/**
+ * Lexes a large buffer by splitting it into chunks of lines, and lexing the
+ *  chunks in parallel.<br/><br/>
+ *
+ * <b>Remarks:</b><br/>&#9;
+ *      Each chunk is lexed speculatively, as though nothing carries over into
+ *  it from the previous chunk (no string or token in progress). Then the
+ *  chunks are joined in order, and any chunk whose actual start state turns
+ *  out to be different is re-lexed with the right state. The re-lex stops as
+ *  soon as its state matches the speculative lex at the start of a line,
+ *  which is usually within a line or two, e.g. when the previous chunk ended
+ *  with a word that's glued onto the chunk's first word.<br/><br/>&#9;
+ *      The tokens are exactly the same as the sequential lexer's.
+ */
+public class ParallelLexer
+{
+    /**
+     * The number of line starts at the start of each chunk that the
+     *  speculative state is saved for, i.e. how far a re-lex can go before it
+     *  has to give up on converging and re-lex the whole chunk.
+     */
+    private static final int MAX_CHECKPOINTS = 64;
+
+    /**
+     * The pool that chunks are lexed on.
+     */
+    @Getter
+    private final ForkJoinPool pool;
+
+    /**
+     * The approximate number of chars in each chunk. Chunks are extended to
+     *  the end of the line that they end on.
+     */
+    @Getter
+    private final int chunkSize;
+
+    /**
+     * The lexer that every chunk is lexed with, each with its own state.
+     */
+    @Getter
+    private final Lexer lexer;
+
+    public ParallelLexer(ForkJoinPool pool, int chunkSize)
+    {
+        this(pool, chunkSize, new Lexer());
+    }
+
+    public ParallelLexer(ForkJoinPool pool, int chunkSize, Lexer lexer)
+    {
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+        this.lexer = lexer;
+    }
+
+    /**
+     * Lexes the first `length` chars of the specified buffer. Lines may be
+     *  terminated by "\n", "\r\n" or "\r", the same as
+     *  Files.readAllLines.
+     *
+     * @param buffer - the buffer to lex
+     * @param length - the number of chars in buffer that are part of the
+     *  input
+     * @param filePath - the file path to report for the tokens
+     */
+    public LexResult lexBuffer(char[] buffer, int length, String filePath)
+    {
+        return this.lexBuffer(buffer, length, filePath, new TokenBuffer());
+    }
+
+    /**
+     * Lexes the first `length` chars of the specified buffer into tokens,
+     *  e.g. an OffHeapTokenBuffer (@see ParallelLexer.lexBuffer). The chunks
+     *  are lexed into their own (heap) buffers first, which are dropped once
+     *  they've been appended to tokens.
+     *
+     * @param tokens - the buffer to append the tokens to
+     */
+    public LexResult lexBuffer(
+        char[] buffer,
+        int length,
+        String filePath,
+        TokenBuffer tokens)
+    {
+        var sourceFile = SourceFile.fromChars(filePath, buffer, length);
+        var chunks
+            = this.splitIntoChunks(
+                buffer, length, sourceFile, tokens.symbolTable());
+        var chunkTasks = new ArrayList<ForkJoinTask<?>>(chunks.size());
+
+        for (var chunk : chunks)
+        {
+            chunkTasks.add(this.pool().submit(chunk::lexSpeculatively));
+        }
+
+        for (var chunkTask : chunkTasks)
+        {
+            chunkTask.join();
+        }
+
+        tokens.sourceFile(sourceFile);
+        tokens.append(Token.BLUC_SOF);
+
+        var startState = LexerState.Snapshot.INITIAL;
+
+        for (var chunk : chunks)
+        {
+            chunk.fixStartState(startState);
+
+            if (chunk.result().hasFailed())
+            {
+                return LexResult.failure(chunk.result().errCode());
+            }
+
+            chunk.appendTokensTo(tokens);
+
+            startState = chunk.endState();
+        }
+
+        tokens.append(Token.BLUC_EOF);
+
+        if (tokens.firstUnbalancedBracket() != TokenBuffer.NO_MATCH)
+        {
+            var errorState = new LexerState();
+            errorState.useBuffer(buffer, length);
+
+            return LexResult.failure(
+                Lexer.findUnbalancedBracket(tokens, errorState));
+        }
+
+        return LexResult.success(tokens);
+    }
+
+    /**
+     * Splits the buffer into chunks of about chunkSize chars. Every chunk
+     *  (other than the first) starts at the start of a line.
+     *
+     * @param symbolTable - the table that the chunks intern their tokens'
+     *  text into, i.e. the result buffer's, so that appending the chunks'
+     *  tokens to it doesn't have to intern them again
+     */
+    private ArrayList<Chunk> splitIntoChunks(
+        char[] buffer,
+        int length,
+        SourceFile sourceFile,
+        SymbolTable symbolTable)
+    {
+        var chunks = new ArrayList<Chunk>();
+        var chunkStart = 0;
+
+        while (chunkStart < length)
+        {
+            var chunkEnd = chunkStart + this.chunkSize();
+
+            if (chunkEnd >= length)
+            {
+                chunkEnd = length;
+            }
+            else
+            {
+                chunkEnd = ParallelLexer.nextLineStart(buffer, length, chunkEnd);
+            }
+
+            chunks.add(
+                new Chunk(
+                    this.lexer(),
+                    buffer,
+                    length,
+                    sourceFile,
+                    symbolTable,
+                    chunkStart,
+                    chunkEnd));
+
+            chunkStart = chunkEnd;
+        }
+
+        return chunks;
+    }
+
+    /**
+     * Returns the index of the start of the line after the line that
+     *  `position` is on, or length if it's on the last line.
+     */
+    private static int nextLineStart(char[] buffer, int length, int position)
+    {
+        while (position < length
+            && buffer[position] != '\n'
+            && buffer[position] != '\r')
+        {
+            position++;
+        }
+
+        if (position < length)
+        {
+            if (buffer[position] == '\r'
+                && position + 1 < length
+                && buffer[position + 1] == '\n')
+            {
+                position++;
+            }
+
+            position++;
+        }
+
+        return position;
+    }
+
+    /**
+     * A range of lines of the buffer, and the tokens lexed from it.
+     */
+    private static class Chunk
+    {
+        private final Lexer lexer;
+
+        private final char[] buffer;
+
+        private final int bufferLength;
+
+        private final SourceFile sourceFile;
+
+        private final SymbolTable symbolTable;
+
+        private final int start;
+
+        private final int end;
+
+        /**
+         * The tokens from lexing the chunk as though it started with
+         *  LexerState.Snapshot.INITIAL. Their offsets are offsets in the
+         *  whole buffer, so they can be appended to the result as-is.
+         */
+        private TokenBuffer speculativeTokens;
+
+        /**
+         * The tokens from re-lexing the start of the chunk with its actual
+         *  start state, or null if it didn't need to be re-lexed.
+         */
+        private TokenBuffer relexedTokens;
+
+        /**
+         * The index in speculativeTokens that relexedTokens continue from.
+         */
+        private int convergedTokenIndex;
+
+        private final int[] checkpointPositions;
+
+        private final int[] checkpointTokenCounts;
+
+        private final LexerState.Snapshot[] checkpointStates;
+
+        private int checkpointCount;
+
+        /**
+         * The state at the end of the chunk.
+         */
+        @Getter
+        private LexerState.Snapshot endState;
+
+        @Getter
+        private Result<LexErrCode> result;
+
+        public Chunk(
+            Lexer lexer,
+            char[] buffer,
+            int bufferLength,
+            SourceFile sourceFile,
+            SymbolTable symbolTable,
+            int start,
+            int end)
+        {
+            this.lexer = lexer;
+            this.buffer = buffer;
+            this.bufferLength = bufferLength;
+            this.sourceFile = sourceFile;
+            this.symbolTable = symbolTable;
+            this.start = start;
+            this.end = end;
+            this.checkpointPositions = new int[MAX_CHECKPOINTS];
+            this.checkpointTokenCounts = new int[MAX_CHECKPOINTS];
+            this.checkpointStates = new LexerState.Snapshot[MAX_CHECKPOINTS];
+        }
+
+        /**
+         * Lexes the chunk as though it started with
+         *  LexerState.Snapshot.INITIAL, saving the state at the start of its
+         *  first few lines.
+         */
+        public void lexSpeculatively()
+        {
+            var state = this.createState(LexerState.Snapshot.INITIAL);
+            var lineStart = this.start;
+
+            this.result = Result.success();
+
+            while (lineStart < this.end
+                && this.checkpointCount < MAX_CHECKPOINTS)
+            {
+                var lineEnd
+                    = ParallelLexer.nextLineStart(
+                        this.buffer, this.end, lineStart);
+
+                this.result = this.lexer.scanBuffer(state, lineStart, lineEnd);
+                lineStart = lineEnd;
+
+                if (this.result.hasFailed() || lineStart == this.end)
+                {
+                    break;
+                }
+
+                var checkpoint = this.checkpointCount;
+                this.checkpointPositions[checkpoint] = lineStart;
+                this.checkpointTokenCounts[checkpoint]
+                    = state.lexedTokens().size();
+                this.checkpointStates[checkpoint] = state.snapshot();
+                this.checkpointCount++;
+            }
+
+            if (lineStart < this.end && !this.result.hasFailed())
+            {
+                this.result
+                    = this.lexer.scanBuffer(state, lineStart, this.end);
+            }
+
+            this.speculativeTokens = state.lexedTokens();
+            this.endState = state.snapshot();
+        }
+
+        /**
+         * Re-lexes the start of the chunk if its actual start state isn't
+         *  the state that it was speculatively lexed with.
+         */
+        public void fixStartState(LexerState.Snapshot startState)
+        {
+            if (startState.equals(LexerState.Snapshot.INITIAL))
+            {
+                return;
+            }
+
+            var state = this.createState(startState);
+            var lineStart = this.start;
+
+            for (int i = 0; i < this.checkpointCount; i++)
+            {
+                var lineEnd = this.checkpointPositions[i];
+                var lineResult
+                    = this.lexer.scanBuffer(state, lineStart, lineEnd);
+                lineStart = lineEnd;
+
+                if (lineResult.hasFailed())
+                {
+                    this.result = lineResult;
+                    return;
+                }
+
+                if (state.snapshot().equals(this.checkpointStates[i]))
+                {
+                    // Everything from here on lexes the same as it did
+                    //  speculatively.
+                    this.relexedTokens = state.lexedTokens();
+                    this.convergedTokenIndex = this.checkpointTokenCounts[i];
+
+                    return;
+                }
+            }
+
+            this.result = this.lexer.scanBuffer(state, lineStart, this.end);
+            this.relexedTokens = state.lexedTokens();
+            this.convergedTokenIndex = this.speculativeTokens.size();
+            this.endState = state.snapshot();
+        }
+
+        /**
+         * Appends the chunk's tokens to tokens.
+         */
+        public void appendTokensTo(TokenBuffer tokens)
+        {
+            if (this.relexedTokens != null)
+            {
+                tokens.appendRange(
+                    this.relexedTokens, 0, this.relexedTokens.size(), 0);
+            }
+
+            tokens.appendRange(
+                this.speculativeTokens,
+                this.relexedTokens != null ? this.convergedTokenIndex : 0,
+                this.speculativeTokens.size(),
+                0);
+        }
+
+        private LexerState createState(LexerState.Snapshot startState)
+        {
+            var state = new LexerState(new TokenBuffer(this.symbolTable));
+
+            state.sourceFile(this.sourceFile);
+            state.useBuffer(this.buffer, this.bufferLength);
+            state.restore(startState);
+
+            return state;
+        }
+    }
+}
@@ -18,73 +18,137 @@
  */
 package bluc_java;
 
-import lombok.AccessLevel;
 import lombok.Getter;
-import lombok.Setter;
 import lombok.experimental.Accessors;
 
 /**
  * Represents a result after performing an operation that may fail.
  * 
- * Base class of all ResultType's.
+ * Base class of all ResultType's.<br/><br/>
+ * 
+ * <b>Remarks:</b><br/>&#9;
+ *      Results are immutable. Every successful Result is the same shared
+ *  instance (@see Result.success), so succeeding never allocates, and a new
+ *  Result is only created when an operation fails.<br/><br/>&#9;
+ *      Error codes are shared between every Result that has them, so any
+ *  details of a particular error are carried in its Diagnostic instead.
  */
 @Accessors(fluent = true)
 public class Result<ErrorType>
 {
+    private static final Result<?> SUCCESS = new Result<>(null, null, null);
+    
     /**
      * Whether or not the operation was successful.
      */
     @Getter
-    @Setter(AccessLevel.PRIVATE)
-    private boolean hasSucceeded;
+    private final boolean hasSucceeded;
     
     /**
      * The token that caused the error (if an error occurred). Null otherwise.
      */
     @Getter
-    @Setter(AccessLevel.PRIVATE)
-    private Token errToken;
+    private final Token errToken;
     
     /**
      * The error code of the error (if an error occurred). Null otherwise.
      */
     @Getter
-    private ErrorType errCode;
+    private final ErrorType errCode;
     
-    public Result()
+    /**
+     * The details of the error (if an error occurred and it has any). Null
+     *  otherwise.
+     */
+    @Getter
+    private final Diagnostic diagnostic;
+    
+    /**
+     * @param errToken - the token that the error occurred on, or null
+     * @param errCode - the error code, or null if the operation succeeded
+     */
+    protected Result(Token errToken, ErrorType errCode)
     {
-        this.hasSucceeded(true);
+        this(errToken, errCode, null);
     }
     
     /**
-     * @return "true" if the result has failed,
-     *  "false" otherwise.
+     * @param errToken - the token that the error occurred on, or null
+     * @param errCode - the error code, or null if the operation succeeded
+     * @param diagnostic - the details of the error, or null
      */
-    public boolean hasFailed()
+    protected Result(Token errToken, ErrorType errCode, Diagnostic diagnostic)
     {
-        return !this.hasSucceeded();
+        this.hasSucceeded = errCode == null;
+        this.errToken = errToken;
+        this.errCode = errCode;
+        this.diagnostic = diagnostic;
+    }
+    
+    /**
+     * Returns the shared result of an operation that succeeded.
+     */
+    @SuppressWarnings("unchecked")
+    public static <ErrorType> Result<ErrorType> success()
+    {
+        return (Result<ErrorType>) SUCCESS;
     }
     
     /**
-     * Set the error code for this result.
+     * Returns the result of an operation that failed.
      * 
-     * If this method is called, the success flag is also set to false.
+     * @param errCode - the error code of the error. Must not be null.
      */
-    public void errCode(ErrorType errCode)
+    public static <ErrorType> Result<ErrorType> failure(ErrorType errCode)
     {
-        this.hasSucceeded(false);
-        this.errCode = errCode;
+        return Result.failure(null, errCode);
     }
     
     /**
-     * Set both the error token and error code.
+     * Returns the result of an operation that failed on a token.
      * 
-     * @param errToken - The token that the error occurred on.
-     * @Param errCode - The error code to set.
+     * @param errToken - the token that the error occurred on
+     * @param errCode - the error code of the error. Must not be null.
      */
-    public void error(Token errToken, ErrorType errCode)
+    public static <ErrorType> Result<ErrorType> failure(
+        Token errToken,
+        ErrorType errCode)
     {
-        this.errToken(errToken);
-        this.errCode(errCode);
+        if (errCode == null)
+        {
+            throw new IllegalArgumentException(
+                "A failed result must have an error code.");
+        }
+        
+        return new Result<>(errToken, errCode, null);
+    }
+    
+    /**
+     * Returns the result of an operation that failed, along with the details
+     *  of its error. The error token is the diagnostic's token.
+     * 
+     * @param errCode - the error code of the error. Must not be null.
+     * @param diagnostic - the details of the error
+     */
+    public static <ErrorType> Result<ErrorType> failure(
+        ErrorType errCode,
+        Diagnostic diagnostic)
+    {
+        if (errCode == null)
+        {
+            throw new IllegalArgumentException(
+                "A failed result must have an error code.");
+        }
+        
+        return new Result<>(diagnostic.token(), errCode, diagnostic);
+    }
+    
+    /**
+     * @return "true" if the result has failed,
+     *  "false" otherwise.
+     */
+    public boolean hasFailed()
+    {
+        return !this.hasSucceeded();
     }
 }
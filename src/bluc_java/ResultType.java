@@ -19,15 +19,50 @@
 package bluc_java;
 
 import lombok.Getter;
-import lombok.Setter;
 
 /**
+ * A result that also carries the data that the operation produced.<br/><br/>
+ * 
+ * <b>Remarks:</b><br/>&#9;
+ *      Like Result, it's immutable. Each subclass gives its own success and
+ *  failure factories, so that callers get back the subclass type.
  *
  * @author john
  */
 public class ResultType<ErrorType, DataType> extends Result<ErrorType>
 {
+    /**
+     * The data that the operation produced, if any.
+     */
     @Getter
-    @Setter
-    private DataType data;
+    private final DataType data;
+    
+    /**
+     * @param errToken - the token that the error occurred on, or null
+     * @param errCode - the error code, or null if the operation succeeded
+     * @param data - the data that the operation produced, or null
+     */
+    protected ResultType(Token errToken, ErrorType errCode, DataType data)
+    {
+        super(errToken, errCode);
+        
+        this.data = data;
+    }
+    
+    /**
+     * @param errToken - the token that the error occurred on, or null
+     * @param errCode - the error code, or null if the operation succeeded
+     * @param diagnostic - the details of the error, or null
+     * @param data - the data that the operation produced, or null
+     */
+    protected ResultType(
+        Token errToken,
+        ErrorType errCode,
+        Diagnostic diagnostic,
+        DataType data)
+    {
+        super(errToken, errCode, diagnostic);
+        
+        this.data = data;
+    }
 }
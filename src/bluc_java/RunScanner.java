@@ -0,0 +1,190 @@
+/*
+ * Copyright 2023 John Schneider.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bluc_java;
+
+/**
+ * Finds the end of a run of chars that the lexer would lex one after another
+ *  in exactly the same way, e.g. the rest of an identifier, so that the lexer
+ *  can skip over the whole run at once instead of lexing it char by char.
+ *  <br/><br/>
+ *
+ * <b>Remarks:</b><br/>&#9;
+ *      This is the scalar version, which checks one char at a time. It's
+ *  used when the Vector API isn't available (@see VectorRunScanner), and for
+ *  the chars that are left over at the end of a vectorized run.
+ */
+public class RunScanner
+{
+    /**
+     * The module that VectorRunScanner needs. It's an incubator module, so
+     *  it's only loaded when it's asked for with `--add-modules`.
+     */
+    private static final String VECTOR_MODULE_NAME = "jdk.incubator.vector";
+    
+    /**
+     * Returns the fastest run scanner that's available in this JVM.
+     */
+    public static RunScanner fastest()
+    {
+        var isVectorModuleLoaded
+            = ModuleLayer
+            .boot()
+            .findModule(VECTOR_MODULE_NAME)
+            .isPresent();
+        
+        return isVectorModuleLoaded ? new VectorRunScanner() : new RunScanner();
+    }
+    
+    /**
+     * Returns the index of the first char from start (inclusive) to end
+     *  (exclusive) that isn't white space, or end if they all are. Line
+     *  terminators aren't white space.
+     * 
+     * @param buffer - the chars to scan
+     * @param start - the index of the first char to scan
+     * @param end - the index just past the last char to scan
+     */
+    public int skipWhitespace(char[] buffer, int start, int end)
+    {
+        var position = start;
+        
+        while (position < end
+            && CharClass.of(buffer[position]) == CharClass.WHITESPACE)
+        {
+            position++;
+        }
+        
+        return position;
+    }
+    
+    /**
+     * Returns the index of the first char from start (inclusive) to end
+     *  (exclusive) that can't be part of a word, or end if they all can.
+     * 
+     * @param buffer - the chars to scan
+     * @param start - the index of the first char to scan
+     * @param end - the index just past the last char to scan
+     */
+    public int skipWordChars(char[] buffer, int start, int end)
+    {
+        var position = start;
+        
+        while (position < end
+            && CharClass.of(buffer[position]) == CharClass.WORD)
+        {
+            position++;
+        }
+        
+        return position;
+    }
+    
+    /**
+     * Returns the index of the first char from start (inclusive) to end
+     *  (exclusive) that ends a plain run of a string literal's body, i.e. a
+     *  quote, an escape char or a line terminator. Returns end if there's no
+     *  such char.
+     * 
+     * @param buffer - the chars to scan
+     * @param start - the index of the first char to scan
+     * @param end - the index just past the last char to scan
+     */
+    public int skipStringChars(char[] buffer, int start, int end)
+    {
+        var position = start;
+        
+        while (position < end)
+        {
+            var character = buffer[position];
+            
+            if (character == '"'
+                || character == '\\'
+                || character == '\n'
+                || character == '\r')
+            {
+                break;
+            }
+            
+            position++;
+        }
+        
+        return position;
+    }
+    
+    /**
+     * The same as RunScanner.skipWhitespace, but for UTF-8 bytes. Only ASCII
+     *  white space is skipped.
+     */
+    public int skipWhitespace(byte[] buffer, int start, int end)
+    {
+        var position = start;
+        
+        while (position < end
+            && buffer[position] >= 0
+            && CharClass.of((char) buffer[position]) == CharClass.WHITESPACE)
+        {
+            position++;
+        }
+        
+        return position;
+    }
+    
+    /**
+     * The same as RunScanner.skipWordChars, but for UTF-8 bytes. Only ASCII
+     *  word chars are skipped, so that the run's length in bytes is also its
+     *  length in chars.
+     */
+    public int skipWordChars(byte[] buffer, int start, int end)
+    {
+        var position = start;
+        
+        while (position < end
+            && buffer[position] >= 0
+            && CharClass.of((char) buffer[position]) == CharClass.WORD)
+        {
+            position++;
+        }
+        
+        return position;
+    }
+    
+    /**
+     * The same as RunScanner.skipStringChars, but for UTF-8 bytes. Only ASCII
+     *  chars are skipped, so that the run's length in bytes is also its
+     *  length in chars.
+     */
+    public int skipStringChars(byte[] buffer, int start, int end)
+    {
+        var position = start;
+        
+        while (position < end)
+        {
+            var curByte = buffer[position];
+            
+            if (curByte < 0
+                || curByte == '"'
+                || curByte == '\\'
+                || curByte == '\n'
+                || curByte == '\r')
+            {
+                break;
+            }
+            
+            position++;
+        }
+        
+        return position;
+    }
+}
@@ -0,0 +1,287 @@
+/*
+ * Copyright 2023 John Schneider.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bluc_java;
+
+import java.util.Arrays;
+import lombok.Getter;
+
+/**
+ * A file that tokens were lexed from, along with the offset of the start of
+ *  each of its lines.<br/><br/>
+ *
+ * <b>Remarks:</b><br/>&#9;
+ *      Lexed tokens only store their offset in the file (@see TokenBuffer).
+ *  Their line and column are worked out from the offset when they're asked
+ *  for, with a binary search of the line starts.<br/><br/>&#9;
+ *      Offsets are indexes into the file's content: chars for a file that's
+ *  decoded into chars, and bytes for a file that's lexed as UTF-8. Columns
+ *  are always counted in chars, so a UTF-8 file keeps its bytes in order to
+ *  count them. A char file doesn't need its content.<br/><br/>&#9;
+ *      A file that's read one line at a time has its lines added with
+ *  SourceFile.appendLine as they're read, rather than all at once, and the
+ *  lines that no token refers to any more can be dropped with
+ *  SourceFile.discardLinesBefore, so that only the lines in between are kept.
+ */
+public class SourceFile
+{
+    private static final int INITIAL_LINE_CAPACITY = 16;
+
+    /**
+     * The path of the file, or null if it wasn't read from a file.
+     */
+    @Getter
+    private final String path;
+
+    /**
+     * The UTF-8 content of the file, or null if its offsets are char
+     *  offsets.
+     */
+    private final byte[] bytes;
+
+    /**
+     * The offset of the first char of each line that hasn't been discarded,
+     *  in increasing order.
+     */
+    private int[] lineStarts;
+
+    /**
+     * The number of lines in the file, so far, including discarded lines.
+     */
+    @Getter
+    private int lineCount;
+
+    /**
+     * The number of lines at the start of the file whose line starts have
+     *  been discarded, i.e. lineStarts[0] is the start of the line after them.
+     */
+    private int discardedLineCount;
+
+    /**
+     * The offset that the next line added with SourceFile.appendLine starts
+     *  at.
+     */
+    private int nextLineStart;
+
+    /**
+     * Creates a source file without any lines, for its lines to be added
+     *  with SourceFile.appendLine.
+     *
+     * @param path - the path of the file, or null if it wasn't read from a
+     *  file
+     */
+    public SourceFile(String path)
+    {
+        this(path, null);
+    }
+
+    private SourceFile(String path, byte[] bytes)
+    {
+        this.path = path;
+        this.bytes = bytes;
+        this.lineStarts = new int[INITIAL_LINE_CAPACITY];
+    }
+
+    /**
+     * Creates a source file for the first `length` chars of the specified
+     *  buffer. Lines are split the same way as the lexer splits them, i.e.
+     *  on "\n", "\r\n" or "\r".
+     *
+     * @param path - the path of the file, or null if it wasn't read from a
+     *  file
+     * @param chars - the content of the file
+     * @param length - the number of chars in chars that are part of the file
+     */
+    public static SourceFile fromChars(String path, char[] chars, int length)
+    {
+        var sourceFile = new SourceFile(path);
+        sourceFile.addLineStart(0);
+
+        for (int i = 0; i < length; i++)
+        {
+            var curChar = chars[i];
+
+            if (curChar == '\n' || curChar == '\r')
+            {
+                if (curChar == '\r' && i + 1 < length && chars[i + 1] == '\n')
+                {
+                    i++;
+                }
+
+                sourceFile.addLineStart(i + 1);
+            }
+        }
+
+        return sourceFile;
+    }
+
+    /**
+     * Creates a source file for the first `length` bytes of the specified
+     *  UTF-8 buffer. The buffer is kept (rather than copied), and must not be
+     *  modified afterwards.
+     *
+     * @param path - the path of the file, or null if it wasn't read from a
+     *  file
+     * @param bytes - the content of the file
+     * @param length - the number of bytes in bytes that are part of the file
+     */
+    public static SourceFile fromBytes(String path, byte[] bytes, int length)
+    {
+        var sourceFile = new SourceFile(path, bytes);
+        sourceFile.addLineStart(0);
+
+        for (int i = 0; i < length; i++)
+        {
+            var curByte = bytes[i];
+
+            if (curByte == '\n' || curByte == '\r')
+            {
+                if (curByte == '\r' && i + 1 < length && bytes[i + 1] == '\n')
+                {
+                    i++;
+                }
+
+                sourceFile.addLineStart(i + 1);
+            }
+        }
+
+        return sourceFile;
+    }
+
+    /**
+     * Adds a line of the specified length after the last line, as though it
+     *  were terminated by a single char. Only for a source file whose offsets
+     *  are char offsets.
+     *
+     * @param length - the number of chars in the line, not including its
+     *  line terminator
+     * @return the offset of the line's first char
+     */
+    public int appendLine(int length)
+    {
+        var lineStart = this.nextLineStart;
+
+        this.addLineStart(lineStart);
+        this.nextLineStart = lineStart + length + 1;
+
+        return lineStart;
+    }
+
+    /**
+     * Returns the offset of the first char of the specified line.
+     *
+     * @param lineNum - the line number, starting at 1
+     */
+    public int lineStart(int lineNum)
+    {
+        return this.lineStarts[lineNum - 1 - this.discardedLineCount];
+    }
+
+    /**
+     * Returns the line number (starting at 1) of the line that the specified
+     *  offset is on.
+     */
+    public int lineNumAt(int offset)
+    {
+        var index
+            = Arrays.binarySearch(
+                this.lineStarts, 0, this.keptLineCount(), offset);
+
+        // When the offset isn't a line start, the search returns the index of
+        //  the line after it (as -(index + 1)), which is its line's number.
+        return this.discardedLineCount
+            + (index >= 0 ? index + 1 : -(index + 1));
+    }
+
+    /**
+     * Discards the line starts of every line before the line that the
+     *  specified offset is on. Offsets before that line can't be looked up
+     *  afterwards, but line numbers still count the discarded lines.
+     *
+     * @param offset - the offset of the first char that may still be looked
+     *  up, e.g. the offset of the first token that's still in memory
+     */
+    public void discardLinesBefore(int offset)
+    {
+        var discardCount = this.lineNumAt(offset) - 1 - this.discardedLineCount;
+
+        if (discardCount <= 0)
+        {
+            return;
+        }
+
+        System.arraycopy(
+            this.lineStarts,
+            discardCount,
+            this.lineStarts,
+            0,
+            this.keptLineCount() - discardCount);
+
+        this.discardedLineCount += discardCount;
+    }
+
+    /**
+     * Returns the number of lines whose line starts haven't been discarded.
+     */
+    public int keptLineCount()
+    {
+        return this.lineCount - this.discardedLineCount;
+    }
+
+    /**
+     * Returns the column number (starting at 1) of the char at the specified
+     *  offset.<br/><br/>
+     *
+     * <b>Remarks:</b><br/>&#9;
+     *      A char outside of the BMP is two chars wide, and its column is the
+     *  column of its second char, the same as the lexer reports for a token
+     *  that ends on it.
+     */
+    public int columnAt(int offset)
+    {
+        var lineStart = this.lineStart(this.lineNumAt(offset));
+
+        if (this.bytes == null)
+        {
+            return offset - lineStart + 1;
+        }
+
+        var column = 0;
+
+        for (int i = lineStart; i <= offset; )
+        {
+            var sequenceLength = Utf8.sequenceLength(this.bytes[i]);
+
+            column += sequenceLength == 4 ? 2 : 1;
+            i += sequenceLength;
+        }
+
+        return column;
+    }
+
+    private void addLineStart(int lineStart)
+    {
+        var keptLineCount = this.keptLineCount();
+
+        if (keptLineCount == this.lineStarts.length)
+        {
+            this.lineStarts
+                = Arrays.copyOf(this.lineStarts, keptLineCount * 2);
+        }
+
+        this.lineStarts[keptLineCount] = lineStart;
+        this.lineCount++;
+    }
+}
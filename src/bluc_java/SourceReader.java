@@ -0,0 +1,121 @@
+/*
+ * Copyright 2023 John Schneider.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bluc_java;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads source files into a single buffer, for the lexer to scan.
+ */
+public class SourceReader
+{
+    /**
+     * Maps the file at the specified path into memory, and decodes it into a
+     *  single char buffer.<br/><br/>
+     *
+     * <b>Remarks:</b><br/>&#9;
+     *      The file is decoded straight from the mapped pages, so the only
+     *  copy of the source that lives on the heap is the returned buffer. The
+     *  returned buffer is backed by an array, and its limit is the number of
+     *  chars that were decoded.
+     *
+     * @param filePath - the file to read
+     * @throws IOException if the file can't be read, or isn't valid UTF-8
+     */
+    public CharBuffer readFile(String filePath) throws IOException
+    {
+        try (var channel
+                = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ))
+        {
+            var mappedFile
+                = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            // Same error handling as Files.readAllLines, so that invalid
+            //  files are still rejected instead of being silently "fixed".
+            var decoder
+                = StandardCharsets.UTF_8
+                .newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+
+            // UTF-8 never decodes to more chars than it has bytes, so this
+            //  buffer is always large enough.
+            var chars = CharBuffer.allocate(mappedFile.remaining());
+
+            var coderResult = decoder.decode(mappedFile, chars, true);
+
+            if (!coderResult.isUnderflow())
+            {
+                coderResult.throwException();
+            }
+
+            coderResult = decoder.flush(chars);
+
+            if (!coderResult.isUnderflow())
+            {
+                coderResult.throwException();
+            }
+
+            chars.flip();
+
+            return chars;
+        }
+    }
+    
+    /**
+     * Reads the raw UTF-8 bytes of the file at the specified path, without
+     *  decoding them. The bytes are validated by the lexer as it scans them,
+     *  instead (@see Lexer.scanBytes).
+     *
+     * @param filePath - the file to read
+     * @param reusableBuffer - the array to read the file into if it's large
+     *  enough, or null. A new array is allocated otherwise.
+     * @return the bytes of the file. The returned buffer is backed by an
+     *  array, and its limit is the number of bytes in the file.
+     * @throws IOException if the file can't be read
+     */
+    public ByteBuffer readBytes(String filePath, byte[] reusableBuffer)
+        throws IOException
+    {
+        try (var channel
+                = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ))
+        {
+            var fileSize = Math.toIntExact(channel.size());
+
+            var bytes
+                = reusableBuffer != null && reusableBuffer.length >= fileSize
+                ? reusableBuffer
+                : new byte[fileSize];
+
+            var buffer = ByteBuffer.wrap(bytes, 0, fileSize);
+
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0)
+            {
+            }
+
+            buffer.flip();
+
+            return buffer;
+        }
+    }
+}
@@ -0,0 +1,532 @@
+/*
+ * Copyright 2023 John Schneider.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bluc_java;
+
+import bluc_java.Lexer.LexErrCode;
+import bluc_java.parser.Parser;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import lombok.Getter;
+
+/**
+ * A token source that lexes its input one line at a time, only as far as the
+ *  parser has asked for, and frees tokens once the parser is done with them.
+ *  <br/><br/>
+ *
+ * <b>Remarks:</b><br/>&#9;
+ *      Only a window of tokens is kept in memory: the tokens that the parser
+ *  may still look back at, plus however far it has peeked ahead. This makes
+ *  it possible to compile input that's too large to hold as a token list,
+ *  e.g. generated code that's piped into stdin.<br/><br/>&#9;
+ *      The window has a fixed limit (@see StreamingTokenSource.readLimit),
+ *  rather than growing with whatever the parser asks for. Reading past it
+ *  ends the stream with a LOOKAHEAD_LIMIT error, so the memory that's used
+ *  doesn't depend on the input, e.g. on the size of its largest function.
+ *  Lines are lexed whole, so the window may also hold the rest of the line
+ *  that the furthest token read is on.<br/><br/>&#9;
+ *      The tokens are the same as what Lexer.lexFile would produce for the
+ *  same input, and so are the errors, which end the stream (@see
+ *  StreamingTokenSource.errCode).
+ */
+public class StreamingTokenSource implements TokenSource
+{
+    /**
+     * The number of tokens that may be discarded before the window is
+     *  actually compacted, so that the window isn't shifted on every advance.
+     */
+    private static final int DISCARD_BATCH_SIZE = 256;
+
+    /**
+     * The number of symbols per token in the window that the window's symbol
+     *  table may grow to before the symbols of discarded tokens are dropped.
+     */
+    private static final int MAX_SYMBOLS_PER_TOKEN = 2;
+
+    private final BufferedReader reader;
+
+    private final Lexer lexer;
+
+    private final LexerState state;
+
+    /**
+     * The lines that have been read so far. Only their starts are kept, not
+     *  their text.
+     */
+    private final SourceFile sourceFile;
+
+    /**
+     * The tokens that are currently in memory.
+     */
+    private final TokenBuffer window;
+
+    /**
+     * The index (in the whole token stream) of the first token in window.
+     */
+    private int windowStart;
+
+    /**
+     * The first index that the parser may still read, i.e. the last index
+     *  that it passed to discardBefore. Tokens are freed in batches, so
+     *  those before it may still be in window.
+     */
+    private int firstReadableIndex;
+
+    /**
+     * The most tokens, starting at firstReadableIndex, that may be read.
+     *  Lexing any further ahead fails the stream.
+     */
+    @Getter
+    private final int readLimit;
+
+    /**
+     * The next line to lex, or null if all the lines have been lexed. It's
+     *  read one line ahead, since the last line has to be lexed differently.
+     */
+    private String nextLine;
+
+    /**
+     * True once the EOF token has been added to the window.
+     */
+    private boolean isExhausted;
+
+    /**
+     * The lexer error that ended the stream, or null if there was none. This
+     *  includes unbalanced brackets, the same as Lexer.lexString.
+     */
+    @Getter
+    private LexErrCode errCode;
+
+    /**
+     * The line text and column of each bracket that's still open, innermost
+     *  last, so that a bracket that's never closed can still be reported
+     *  once the input runs out, after its token and line were freed.
+     */
+    private String[] openBracketLines;
+
+    private int[] openBracketColumns;
+
+    private int[] openBracketKinds;
+
+    private int openBracketCount;
+
+    /**
+     * Creates a source whose read limit is the parser's token window (@see
+     *  Parser.TOKEN_WINDOW_SIZE).
+     *
+     * @param reader - the input to lex
+     * @param filePath - the file path to report for the tokens
+     */
+    public StreamingTokenSource(Reader reader, String filePath)
+    {
+        this(reader, filePath, Parser.TOKEN_WINDOW_SIZE);
+    }
+
+    /**
+     * @param reader - the input to lex
+     * @param filePath - the file path to report for the tokens
+     * @param readLimit - the most tokens that may be read at once, from the
+     *  first token that may still be read (@see discardBefore)
+     */
+    public StreamingTokenSource(Reader reader, String filePath, int readLimit)
+    {
+        this.reader = new BufferedReader(reader);
+        this.readLimit = readLimit;
+        this.lexer = new Lexer();
+        this.state = this.lexer.state();
+        this.sourceFile = new SourceFile(filePath);
+        this.window = new TokenBuffer();
+        this.windowStart = 0;
+        this.isExhausted = false;
+        this.openBracketLines = new String[16];
+        this.openBracketColumns = new int[16];
+        this.openBracketKinds = new int[16];
+        this.openBracketCount = 0;
+
+        this.state.sourceFile(this.sourceFile);
+        this.state.lexedTokens(this.window);
+        this.window.sourceFile(this.sourceFile);
+        this.window.append(Token.BLUC_SOF);
+
+        this.nextLine = this.readLine();
+    }
+
+    /**
+     * Returns true if the stream was ended by a lexer error.
+     */
+    public boolean hasFailed()
+    {
+        return this.errCode() != null;
+    }
+
+    /**
+     * Returns the number of tokens that are currently in memory.
+     */
+    public int windowSize()
+    {
+        return this.window.size();
+    }
+
+    /**
+     * Returns the number of line starts that are currently in memory.
+     */
+    public int lineStartCount()
+    {
+        return this.sourceFile.keptLineCount();
+    }
+
+    /**
+     * Returns the number of distinct token texts that are currently in
+     *  memory.
+     */
+    public int symbolCount()
+    {
+        return this.window.symbolTable().size();
+    }
+
+    @Override
+    public int kind(int index)
+    {
+        return this.window.kind(this.windowIndex(index));
+    }
+
+    @Override
+    public int symbol(int index)
+    {
+        return this.window.symbol(this.windowIndex(index));
+    }
+
+    @Override
+    public int lineNum(int index)
+    {
+        return this.window.lineNum(this.windowIndex(index));
+    }
+
+    @Override
+    public int columnNum(int index)
+    {
+        return this.window.columnNum(this.windowIndex(index));
+    }
+
+    @Override
+    public String text(int index)
+    {
+        return this.window.text(this.windowIndex(index));
+    }
+
+    @Override
+    public boolean textEquals(int index, String textToMatch)
+    {
+        return this.window.textEquals(this.windowIndex(index), textToMatch);
+    }
+
+    @Override
+    public Token get(int index)
+    {
+        return this.window.get(this.windowIndex(index));
+    }
+
+    @Override
+    public boolean hasLiteralValue(int index)
+    {
+        return this.window.hasLiteralValue(this.windowIndex(index));
+    }
+
+    @Override
+    public long integerValue(int index)
+    {
+        return this.window.integerValue(this.windowIndex(index));
+    }
+
+    @Override
+    public double floatValue(int index)
+    {
+        return this.window.floatValue(this.windowIndex(index));
+    }
+
+    @Override
+    public String stringValue(int index)
+    {
+        return this.window.stringValue(this.windowIndex(index));
+    }
+
+    /**
+     * Returns the index of the bracket that matches the bracket at index. A
+     *  closing bracket's match is always known, even once the opening
+     *  bracket was freed. An opening bracket's match may not have been lexed
+     *  yet, so this lexes until it has been, which fails the stream if the
+     *  match is further ahead than the read limit. The parser doesn't need
+     *  this to read a block (@see Parser.parseBlock).
+     */
+    @Override
+    public int matchingBracket(int index)
+    {
+        var windowIndex = this.windowIndex(index);
+        var kind = this.window.kind(windowIndex);
+
+        if (TokenKind.isIn(kind, TokenKind.OPENING_BRACKETS))
+        {
+            while (!this.isExhausted
+                && this.window.matchingBracket(windowIndex)
+                    == TokenBuffer.NO_MATCH)
+            {
+                this.lexUpTo(this.windowStart + this.window.size());
+            }
+        }
+
+        // The window's bracket positions count the discarded tokens, so
+        //  they're already indexes in the whole token stream.
+        return this.window.matchingBracketPosition(windowIndex);
+    }
+
+    @Override
+    public int clampIndex(int index)
+    {
+        if (index < 0)
+        {
+            return 0;
+        }
+
+        this.lexUpTo(index);
+
+        return Math.min(index, this.windowStart + this.window.size() - 1);
+    }
+
+    @Override
+    public boolean hasTokenAfter(int index)
+    {
+        this.lexUpTo(index + 1);
+
+        return index + 1 < this.windowStart + this.window.size();
+    }
+
+    @Override
+    public void discardBefore(int index)
+    {
+        this.firstReadableIndex = Math.max(this.firstReadableIndex, index);
+
+        var discardCount = index - this.windowStart;
+
+        if (discardCount >= DISCARD_BATCH_SIZE)
+        {
+            this.window.discardFirst(discardCount);
+            this.windowStart = index;
+
+            // Only the lines of the tokens that are still in the window can
+            //  be looked up, so the starts of the lines before them can go.
+            //  The EOF token has no offset, but it's the last token, so there
+            //  are no lines after it to keep.
+            var firstOffset = this.window.offset(0);
+
+            this.sourceFile.discardLinesBefore(
+                firstOffset != TokenBuffer.NO_OFFSET
+                    ? firstOffset
+                    : Integer.MAX_VALUE);
+
+            // The symbol table still has the text of the discarded tokens, so
+            //  rebuild it once it's mostly text that the window doesn't use.
+            //  It then has at most one symbol per token, so this happens at
+            //  most once per window's worth of new text.
+            var symbolLimit
+                = MAX_SYMBOLS_PER_TOKEN * this.window.size()
+                + DISCARD_BATCH_SIZE;
+
+            if (this.window.symbolTable().size() > symbolLimit)
+            {
+                this.window.compactSymbolTable();
+            }
+        }
+    }
+
+    /**
+     * Returns false, since tokens are freed once the parser is past them.
+     */
+    @Override
+    public boolean keepsAllTokens()
+    {
+        return false;
+    }
+
+    /**
+     * Converts an index in the whole token stream into an index in window,
+     *  lexing up to the index first if needed.
+     */
+    private int windowIndex(int index)
+    {
+        if (index < this.windowStart)
+        {
+            throw new IndexOutOfBoundsException(
+                "Token " + index + " was already discarded, the first token "
+                + "still in memory is " + this.windowStart);
+        }
+
+        this.lexUpTo(index);
+
+        return index - this.windowStart;
+    }
+
+    /**
+     * Lexes lines until the token at index exists, or the input runs out. If
+     *  the token is past the read limit, the stream is ended with a
+     *  LOOKAHEAD_LIMIT error instead.
+     */
+    private void lexUpTo(int index)
+    {
+        while (!this.isExhausted
+            && index >= this.windowStart + this.window.size())
+        {
+            if (index - this.firstReadableIndex >= this.readLimit
+                && this.errCode == null)
+            {
+                this.errCode
+                    = new LexErrCode(
+                        LexErrCode.LOOKAHEAD_LIMIT,
+                        this.nextLine != null ? this.nextLine : "",
+                        1);
+                this.nextLine = null;
+            }
+
+            this.lexNextLine();
+        }
+    }
+
+    private void lexNextLine()
+    {
+        var line = this.nextLine;
+
+        if (line == null)
+        {
+            this.state.appendLexedToken(Token.BLUC_EOF);
+            this.isExhausted = true;
+
+            if (this.errCode == null && this.openBracketCount > 0)
+            {
+                this.errCode
+                    = new LexErrCode(
+                        LexErrCode.UNBALANCED_BRACKET,
+                        this.openBracketLines[0],
+                        this.openBracketColumns[0]);
+            }
+
+            return;
+        }
+
+        this.nextLine = this.readLine();
+
+        var chars = line.toCharArray();
+        this.state.useBuffer(chars, chars.length, this.nextLine == null);
+        this.state.bufferOffset(this.sourceFile.appendLine(chars.length));
+
+        var lineStart = this.window.size();
+        var result = this.lexer.scanBuffer(this.state);
+
+        // A lexer error is a critical error, we can't continue lexing.
+        if (result.hasFailed())
+        {
+            this.errCode = result.errCode();
+            this.nextLine = null;
+        }
+        else if (!this.matchBrackets(line, lineStart))
+        {
+            this.nextLine = null;
+        }
+
+        this.state.incrementLineNum();
+    }
+
+    /**
+     * Matches the brackets of the line that was just lexed, whose tokens
+     *  start at lineStart in the window.
+     *
+     * @return false if a closing bracket doesn't close the innermost open
+     *  bracket, in which case errCode is set to report it.
+     */
+    private boolean matchBrackets(String line, int lineStart)
+    {
+        for (int i = lineStart; i < this.window.size(); i++)
+        {
+            var kind = this.window.kind(i);
+
+            if (TokenKind.isIn(kind, TokenKind.OPENING_BRACKETS))
+            {
+                this.pushOpenBracket(line, this.window.columnNum(i), kind);
+            }
+            else if (TokenKind.isIn(kind, TokenKind.CLOSING_BRACKETS))
+            {
+                var innermost = this.openBracketCount - 1;
+
+                if (innermost < 0
+                    || this.openBracketKinds[innermost]
+                        != TokenKind.openingBracketOf(kind))
+                {
+                    this.errCode
+                        = new LexErrCode(
+                            LexErrCode.UNBALANCED_BRACKET,
+                            line,
+                            this.window.columnNum(i));
+
+                    return false;
+                }
+
+                // Drop the reference, so that the line's text can be freed.
+                this.openBracketLines[innermost] = null;
+                this.openBracketCount--;
+            }
+        }
+
+        return true;
+    }
+
+    private void pushOpenBracket(String line, int column, int kind)
+    {
+        if (this.openBracketCount == this.openBracketKinds.length)
+        {
+            var newCapacity = this.openBracketCount * 2;
+
+            this.openBracketLines
+                = Arrays.copyOf(this.openBracketLines, newCapacity);
+            this.openBracketColumns
+                = Arrays.copyOf(this.openBracketColumns, newCapacity);
+            this.openBracketKinds
+                = Arrays.copyOf(this.openBracketKinds, newCapacity);
+        }
+
+        this.openBracketLines[this.openBracketCount] = line;
+        this.openBracketColumns[this.openBracketCount] = column;
+        this.openBracketKinds[this.openBracketCount] = kind;
+        this.openBracketCount++;
+    }
+
+    /**
+     * Reads the next line of input. Lines are split the same way as
+     *  Files.readAllLines, so the tokens match Lexer.lexFile.
+     */
+    private String readLine()
+    {
+        try
+        {
+            return this.reader.readLine();
+        }
+        catch (IOException ex)
+        {
+            ex.printStackTrace();
+            System.exit(1);
+
+            return null;
+        }
+    }
+}
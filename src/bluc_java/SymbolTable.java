@@ -0,0 +1,398 @@
+/*
+ * Copyright 2023 John Schneider.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bluc_java;
+
+import java.util.Arrays;
+
+/**
+ * Interns token text, so that every distinct text is stored once and is
+ *  identified by an integer symbol id.<br/><br/>
+ *
+ * <b>Remarks:</b><br/>&#9;
+ *      Text is looked up straight from a slice of a char array, so a string
+ *  is only created the first time a text is seen.<br/><br/>&#9;
+ *      The table is safe to use from many threads at once. It's split into
+ *  stripes by hash, and each stripe is an open-addressing hash table. Lookups
+ *  of text that's already in the table don't take any locks; only inserting
+ *  new text locks, and only its own stripe.<br/><br/>&#9;
+ *      Symbols are never removed, so the table grows with the number of
+ *  distinct texts that have been lexed. A table is shared by the token
+ *  buffers of one compilation (@see CompileDriver) or one input, rather than
+ *  by the whole process, so it only lives as long as the tokens that use
+ *  it.
+ */
+public class SymbolTable
+{
+    /**
+     * The number of bits of a symbol id that select its stripe.
+     */
+    private static final int STRIPE_BITS = 6;
+
+    private static final int STRIPE_COUNT = 1 << STRIPE_BITS;
+
+    private static final int STRIPE_MASK = STRIPE_COUNT - 1;
+
+    private final Stripe[] stripes;
+
+    public SymbolTable()
+    {
+        this.stripes = new Stripe[STRIPE_COUNT];
+
+        for (int i = 0; i < STRIPE_COUNT; i++)
+        {
+            this.stripes[i] = new Stripe(i);
+        }
+    }
+
+    /**
+     * Returns the symbol id of the specified slice of chars, adding it to the
+     *  table if it's new.
+     *
+     * @param chars - the array that the text is in
+     * @param start - the index of the first char of the text
+     * @param length - the number of chars in the text
+     */
+    public int intern(char[] chars, int start, int length)
+    {
+        // The same hash as String.hashCode, so that strings can use their
+        //  cached hash.
+        var hash = 0;
+
+        for (int i = start; i < start + length; i++)
+        {
+            hash = 31 * hash + chars[i];
+        }
+
+        var stripe = this.stripes[SymbolTable.stripeIndex(hash)];
+        var id = stripe.find(chars, start, length, hash);
+
+        if (id < 0)
+        {
+            id = stripe.insert(chars, start, length, hash, null);
+        }
+
+        return id;
+    }
+
+    /**
+     * Returns the symbol id of the specified text, adding it to the table if
+     *  it's new.
+     */
+    public int intern(String text)
+    {
+        var hash = text.hashCode();
+        var stripe = this.stripes[SymbolTable.stripeIndex(hash)];
+        var id = stripe.find(text, hash);
+
+        if (id < 0)
+        {
+            id = stripe.insert(null, 0, text.length(), hash, text);
+        }
+
+        return id;
+    }
+
+    /**
+     * Returns the canonical string of the specified symbol. Every token with
+     *  this symbol shares this one string.
+     */
+    public String text(int symbol)
+    {
+        return this.stripes[symbol & STRIPE_MASK].text(symbol >>> STRIPE_BITS);
+    }
+
+    /**
+     * Removes every symbol from the table. The stripes keep their capacity,
+     *  so that refilling the table doesn't have to grow them again.<br/><br/>
+     *
+     * <b>Remarks:</b><br/>&#9;
+     *      The table must not be used by any other thread while it's being
+     *  cleared, and the symbol ids from before it was cleared are no longer
+     *  valid.
+     */
+    public void clear()
+    {
+        for (var stripe : this.stripes)
+        {
+            stripe.clear();
+        }
+    }
+
+    /**
+     * Returns the number of distinct texts in the table.
+     */
+    public int size()
+    {
+        var size = 0;
+
+        for (var stripe : this.stripes)
+        {
+            size += stripe.size();
+        }
+
+        return size;
+    }
+
+    private static int stripeIndex(int hash)
+    {
+        return SymbolTable.spread(hash) & STRIPE_MASK;
+    }
+
+    /**
+     * Returns the first slot to probe for the hash, in a table with
+     *  `slotMask + 1` slots. This doesn't use the bits that select the stripe,
+     *  since they're the same for every symbol in a stripe.
+     */
+    private static int firstSlot(int hash, int slotMask)
+    {
+        return (SymbolTable.spread(hash) >>> STRIPE_BITS) & slotMask;
+    }
+
+    private static int spread(int hash)
+    {
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * An entry of a stripe. All of its fields are final, so it's safe to
+     *  read an entry that another thread has just stored, without a lock.
+     */
+    private static class Symbol
+    {
+        private final String text;
+
+        private final int hash;
+
+        private final int id;
+
+        public Symbol(String text, int hash, int id)
+        {
+            this.text = text;
+            this.hash = hash;
+            this.id = id;
+        }
+
+        public boolean matches(char[] chars, int start, int length, int hash)
+        {
+            if (this.hash != hash || this.text.length() != length)
+            {
+                return false;
+            }
+
+            for (int i = 0; i < length; i++)
+            {
+                if (this.text.charAt(i) != chars[start + i])
+                {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+
+    /**
+     * One open-addressing (linear probing) hash table, covering the symbols
+     *  whose hash selects this stripe.
+     */
+    private static class Stripe
+    {
+        private static final int INITIAL_CAPACITY = 64;
+
+        private final int stripeIndex;
+
+        /**
+         * The hash table. Replaced (rather than modified in place) when it
+         *  grows, so that lock free readers always see a consistent table.
+         */
+        private volatile Symbol[] slots;
+
+        /**
+         * The text of each symbol in this stripe, by local id.
+         */
+        private volatile String[] texts;
+
+        private int size;
+
+        public Stripe(int stripeIndex)
+        {
+            this.stripeIndex = stripeIndex;
+            this.slots = new Symbol[INITIAL_CAPACITY];
+            this.texts = new String[INITIAL_CAPACITY];
+        }
+
+        /**
+         * Returns the id of the text, or -1 if it's not in the table (or was
+         *  only just added by another thread).
+         */
+        public int find(char[] chars, int start, int length, int hash)
+        {
+            var slots = this.slots;
+            var mask = slots.length - 1;
+
+            for (int slot = SymbolTable.firstSlot(hash, mask);
+                ;
+                slot = (slot + 1) & mask)
+            {
+                var symbol = slots[slot];
+
+                if (symbol == null)
+                {
+                    return -1;
+                }
+
+                if (symbol.matches(chars, start, length, hash))
+                {
+                    return symbol.id;
+                }
+            }
+        }
+
+        public int find(String text, int hash)
+        {
+            var slots = this.slots;
+            var mask = slots.length - 1;
+
+            for (int slot = SymbolTable.firstSlot(hash, mask);
+                ;
+                slot = (slot + 1) & mask)
+            {
+                var symbol = slots[slot];
+
+                if (symbol == null)
+                {
+                    return -1;
+                }
+
+                if (symbol.hash == hash && symbol.text.equals(text))
+                {
+                    return symbol.id;
+                }
+            }
+        }
+
+        /**
+         * Adds the text to the table, unless another thread added it first,
+         *  and returns its id.
+         *
+         * @param text - the text as a string, or null to create it from chars
+         */
+        public synchronized int insert(
+            char[] chars,
+            int start,
+            int length,
+            int hash,
+            String text)
+        {
+            var existingId
+                = text == null
+                ? this.find(chars, start, length, hash)
+                : this.find(text, hash);
+
+            if (existingId >= 0)
+            {
+                return existingId;
+            }
+
+            if (text == null)
+            {
+                text = new String(chars, start, length);
+            }
+
+            // Keep the table at most half full, so probes stay short.
+            if ((this.size + 1) * 2 > this.slots.length)
+            {
+                this.grow();
+            }
+
+            var localId = this.size;
+            var id = (localId << STRIPE_BITS) | this.stripeIndex;
+
+            if (localId == this.texts.length)
+            {
+                this.texts = Arrays.copyOf(this.texts, localId * 2);
+            }
+
+            this.texts[localId] = text;
+            this.storeSymbol(this.slots, new Symbol(text, hash, id));
+            this.size++;
+
+            return id;
+        }
+
+        public String text(int localId)
+        {
+            var texts = this.texts;
+
+            if (localId < texts.length && texts[localId] != null)
+            {
+                return texts[localId];
+            }
+
+            // The symbol was only just added by another thread, and this
+            //  thread can't see it yet without synchronizing.
+            synchronized (this)
+            {
+                return this.texts[localId];
+            }
+        }
+
+        public synchronized int size()
+        {
+            return this.size;
+        }
+
+        public synchronized void clear()
+        {
+            if (this.size == 0)
+            {
+                return;
+            }
+
+            Arrays.fill(this.slots, null);
+            Arrays.fill(this.texts, 0, this.size, null);
+            this.size = 0;
+        }
+
+        private void grow()
+        {
+            var grownSlots = new Symbol[this.slots.length * 2];
+
+            for (var symbol : this.slots)
+            {
+                if (symbol != null)
+                {
+                    this.storeSymbol(grownSlots, symbol);
+                }
+            }
+
+            this.slots = grownSlots;
+        }
+
+        private void storeSymbol(Symbol[] slots, Symbol symbol)
+        {
+            var mask = slots.length - 1;
+            var slot = SymbolTable.firstSlot(symbol.hash, mask);
+
+            while (slots[slot] != null)
+            {
+                slot = (slot + 1) & mask;
+            }
+
+            slots[slot] = symbol;
+        }
+    }
+}
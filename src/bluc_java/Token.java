@@ -30,10 +30,10 @@ import lombok.Setter;
 public class Token implements IDeepCopyable<Token>
 {
     public static final Token BLUC_SOF =
-        new Token(null, -1, -1, "__BLUC_SOF__");
+        new Token(null, -1, -1, "__BLUC_SOF__", TokenKind.SOF);
     
     public static final Token BLUC_EOF =
-        new Token(null, -1, -1, "__BLUC_EOF__");
+        new Token(null, -1, -1, "__BLUC_EOF__", TokenKind.EOF);
     
     @Getter
     @Setter
@@ -50,6 +50,21 @@ public class Token implements IDeepCopyable<Token>
     @Getter
     @Setter
     private String text;
+    
+    /**
+     * The TokenKind of this token.
+     */
+    @Getter
+    @Setter
+    private int kind;
+    
+    /**
+     * Creates a token, and classifies its kind from its text.
+     */
+    public Token(String filePath, int lineNum, int columnNum, String text)
+    {
+        this(filePath, lineNum, columnNum, text, TokenKind.classify(text));
+    }
 
     /**
      * Returns true if this.text .equals any string in
@@ -77,7 +92,25 @@ public class Token implements IDeepCopyable<Token>
      */
     public boolean matches(String textToMatch)
     {
-        return this.matchesAny(new String[]{textToMatch});
+        return this.text().equals(textToMatch);
+    }
+    
+    /**
+     * Returns true if this token is of the specified TokenKind.
+     */
+    public boolean is(int kind)
+    {
+        return this.kind() == kind;
+    }
+    
+    /**
+     * Returns true if this token's kind is in the specified set of kinds.
+     * 
+     * @see TokenKind.mask
+     */
+    public boolean isAny(long kindMask)
+    {
+        return TokenKind.isIn(this.kind(), kindMask);
     }
     
     /**
@@ -93,7 +126,11 @@ public class Token implements IDeepCopyable<Token>
         //  right now.
         var deepCopy
             = new Token(
-                this.filePath(), this.lineNum(), this.columnNum(), this.text());
+                this.filePath(),
+                this.lineNum(),
+                this.columnNum(),
+                this.text(),
+                this.kind());
         
         return deepCopy;
     }
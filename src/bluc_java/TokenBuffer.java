@@ -0,0 +1,1083 @@
+/*
+ * Copyright 2023 John Schneider.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bluc_java;
+
+import bluc_java.Lexer.LexErrCode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Stores lexed tokens as parallel arrays of primitives (one array per token
+ *  field), instead of as a list of Token objects.<br/><br/>
+ * 
+ * <b>Remarks:</b><br/>&#9;
+ *      A token's text is stored as a symbol id in a SymbolTable, so every
+ *  token with the same text shares one string, and tokens can be compared by
+ *  id instead of char by char. Token objects are only created when they're
+ *  asked for, and their text is the shared string.<br/><br/>&#9;
+ *      A lexed token's position is stored as its offset in sourceFile, and
+ *  its line and column are only worked out when they're asked for. Tokens
+ *  that weren't lexed from sourceFile (e.g. tokens that were built by hand)
+ *  keep their line and column in a side table instead.<br/><br/>&#9;
+ *      The values of literals are evaluated by the lexer, and kept in a side
+ *  table keyed by token index, so that later stages can read them without
+ *  parsing the text again. Only literal tokens have an entry.<br/><br/>&#9;
+ *      The matching bracket of every "(", "{" and "[" (and of every closing
+ *  bracket) is found as the tokens are appended, with a stack of the
+ *  brackets that are still open, so that the parser can skip over a group
+ *  of tokens in one step (@see TokenBuffer.matchingBracket). Closing
+ *  brackets that don't match the innermost open bracket are recorded, and
+ *  so are brackets that are never closed (@see
+ *  TokenBuffer.firstUnbalancedBracket).<br/><br/>&#9;
+ *      The token fields are only read and written through kind, symbol,
+ *  offset and the protected storage methods, so a subclass can keep them
+ *  somewhere other than the heap arrays (@see OffHeapTokenBuffer).
+ */
+public class TokenBuffer implements TokenSource
+{
+    private static final int INITIAL_CAPACITY = 64;
+    
+    private static final long BRACKETS
+        = TokenKind.OPENING_BRACKETS | TokenKind.CLOSING_BRACKETS;
+    
+    private static final long LITERAL_KINDS
+        = TokenKind.mask(
+            TokenKind.INTEGER_LITERAL,
+            TokenKind.FLOAT_LITERAL,
+            TokenKind.STRING_LITERAL);
+    
+    /**
+     * The offset of a token that wasn't lexed from sourceFile.
+     */
+    public static final int NO_OFFSET = -1;
+    
+    /**
+     * The matching bracket of a token that isn't a bracket, or of a bracket
+     *  that isn't matched.
+     */
+    public static final int NO_MATCH = -1;
+    
+    /**
+     * The file that the tokens were lexed from, which their offsets are
+     *  offsets into.
+     */
+    @Getter
+    @Setter
+    private SourceFile sourceFile;
+    
+    /**
+     * The table that token text is interned into. It's ownSymbolTable, unless
+     *  a table was passed in to share with other buffers.
+     */
+    @Getter
+    private SymbolTable symbolTable;
+    
+    /**
+     * The table that belongs to this buffer alone, so that it can be cleared
+     *  along with the buffer, or null if the buffer has only used shared
+     *  tables.
+     */
+    private SymbolTable ownSymbolTable;
+    
+    private int[] kinds;
+    private int[] symbols;
+    private int[] offsets;
+    
+    /**
+     * The value of each literal token. An integer literal's value is stored
+     *  as is, a float literal's as its raw long bits, and a string literal's
+     *  as the symbol id of its value.
+     */
+    private final SideTable literalValues;
+    
+    /**
+     * The line and column of each token whose offset is NO_OFFSET, packed
+     *  into a long by TokenBuffer.packPosition.
+     */
+    private final SideTable explicitPositions;
+    
+    /**
+     * The position of the matching bracket of each bracket token, or
+     *  NO_MATCH if it has none. Entries of other tokens are left unset, and
+     *  the array only grows as far as the last bracket.<br/><br/>
+     * 
+     * <b>Remarks:</b><br/>&#9;
+     *      Bracket positions count the tokens that discardFirst has dropped
+     *  (@see TokenBuffer.discardedCount), so they don't change when tokens
+     *  are discarded, and a closing bracket keeps its match after its
+     *  opening bracket was dropped.
+     */
+    private int[] matchingBrackets;
+    
+    /**
+     * The positions of the opening brackets that haven't been closed yet,
+     *  innermost last.
+     */
+    private int[] openBrackets;
+    
+    /**
+     * The TokenKind of each bracket in openBrackets.
+     */
+    private int[] openBracketKinds;
+    
+    private int openBracketCount;
+    
+    /**
+     * The position of the first closing bracket that didn't match the
+     *  innermost open bracket, or NO_MATCH if there hasn't been one.
+     */
+    private int firstStrayBracket;
+    
+    /**
+     * The number of tokens that discardFirst has dropped from the front of
+     *  this buffer since it was last cleared. A token's position is its
+     *  index plus this count.
+     */
+    @Getter
+    private int discardedCount;
+    
+    /**
+     * The number of tokens in this buffer.
+     */
+    @Getter
+    private int size;
+    
+    public TokenBuffer()
+    {
+        this(INITIAL_CAPACITY);
+    }
+    
+    /**
+     * @param initialCapacity - the number of tokens to make room for up
+     *  front
+     */
+    public TokenBuffer(int initialCapacity)
+    {
+        this(initialCapacity, null);
+    }
+    
+    /**
+     * @param symbolTable - the table to intern token text into, so that
+     *  buffers that share it can compare their tokens' symbols
+     */
+    public TokenBuffer(SymbolTable symbolTable)
+    {
+        this(INITIAL_CAPACITY, symbolTable);
+    }
+    
+    /**
+     * @param initialCapacity - the number of tokens to make room for up
+     *  front
+     * @param symbolTable - the table to intern token text into, so that
+     *  buffers that share it can compare their tokens' symbols, or null to
+     *  give the buffer its own table
+     */
+    public TokenBuffer(int initialCapacity, SymbolTable symbolTable)
+    {
+        this.useSymbolTable(symbolTable);
+        this.kinds = new int[initialCapacity];
+        this.symbols = new int[initialCapacity];
+        this.offsets = new int[initialCapacity];
+        this.literalValues = new SideTable();
+        this.explicitPositions = new SideTable();
+        this.matchingBrackets = new int[0];
+        this.openBrackets = new int[16];
+        this.openBracketKinds = new int[16];
+        this.firstStrayBracket = NO_MATCH;
+    }
+    
+    /**
+     * Creates a token buffer from a list of tokens, e.g. tokens that were
+     *  built by hand rather than by the lexer.
+     */
+    public static TokenBuffer fromTokens(List<Token> tokens)
+    {
+        var buffer = new TokenBuffer();
+        
+        for (var token : tokens)
+        {
+            buffer.append(token);
+        }
+        
+        return buffer;
+    }
+    
+    /**
+     * Appends a token whose text is a slice of a char array. No string is
+     *  created unless this is the first time the text has been seen.
+     * 
+     * @param kind - the TokenKind of the token
+     * @param chars - the array that the token's text is in
+     * @param textStart - the index (in chars) of the token's first char
+     * @param textLength - the number of chars in the token
+     * @param offset - the offset of the token in sourceFile
+     */
+    public void appendChars(
+        int kind,
+        char[] chars,
+        int textStart,
+        int textLength,
+        int offset)
+    {
+        this.appendSymbol(
+            kind,
+            this.symbolTable.intern(chars, textStart, textLength),
+            offset);
+    }
+    
+    /**
+     * Appends a token with the specified text, at a line and column that
+     *  aren't in sourceFile.
+     * 
+     * @param kind - the TokenKind of the token
+     * @param text - the text of the token
+     * @param lineNum - the line number of the token
+     * @param columnNum - the column number of the token
+     */
+    public void appendText(
+        int kind,
+        String text,
+        int lineNum,
+        int columnNum)
+    {
+        this.appendSymbol(kind, this.symbolTable.intern(text), NO_OFFSET);
+        this.explicitPositions.add(
+            this.size - 1, TokenBuffer.packPosition(lineNum, columnNum));
+    }
+    
+    /**
+     * Appends a token whose text has already been interned.
+     * 
+     * @param kind - the TokenKind of the token
+     * @param symbol - the symbol id of the token's text, in symbolTable
+     * @param offset - the offset of the token in sourceFile, or NO_OFFSET if
+     *  its position is added to explicitPositions afterwards
+     */
+    public void appendSymbol(int kind, int symbol, int offset)
+    {
+        var index = this.reserveToken();
+        
+        this.storeToken(index, kind, symbol, offset);
+        
+        if (TokenKind.isIn(kind, BRACKETS))
+        {
+            this.matchBracket(index, kind);
+        }
+    }
+    
+    /**
+     * Sets the value of the last token that was appended, which must be a
+     *  literal.
+     * 
+     * @param value - the value, encoded the same way as literalValues
+     */
+    public void attachLiteralValue(long value)
+    {
+        this.literalValues.add(this.size - 1, value);
+    }
+    
+    /**
+     * Sets the value of the last token that was appended, which must be a
+     *  string literal, to the specified slice of chars.
+     */
+    public void attachStringValue(char[] chars, int start, int length)
+    {
+        this.attachLiteralValue(
+            this.symbolTable.intern(chars, start, length));
+    }
+    
+    /**
+     * Appends a copy of the specified token.
+     */
+    public void append(Token token)
+    {
+        if (this.sourceFile == null && token.filePath() != null)
+        {
+            this.sourceFile = new SourceFile(token.filePath());
+        }
+        
+        this.appendText(
+            token.kind(), token.text(), token.lineNum(), token.columnNum());
+    }
+    
+    /**
+     * Appends a copy of a token from another buffer, moving it by
+     *  offsetDelta.
+     * 
+     * @param tokens - the buffer to copy the token from
+     * @param index - the index of the token in tokens
+     * @param offsetDelta - the offset in sourceFile that offset 0 of
+     *  tokens.sourceFile is at, e.g. the start of the line that tokens were
+     *  lexed from
+     */
+    public void appendCopy(TokenBuffer tokens, int index, int offsetDelta)
+    {
+        var symbol
+            = tokens.symbolTable == this.symbolTable
+            ? tokens.symbol(index)
+            : this.symbolTable.intern(tokens.text(index));
+        var kind = tokens.kind(index);
+        var offset = tokens.offset(index);
+        
+        if (offset != NO_OFFSET)
+        {
+            this.appendSymbol(kind, symbol, offset + offsetDelta);
+        }
+        else
+        {
+            this.appendSymbol(kind, symbol, NO_OFFSET);
+            this.explicitPositions.add(
+                this.size - 1, tokens.explicitPosition(index));
+        }
+        
+        var literalSlot = tokens.findLiteralSlot(index);
+        
+        if (literalSlot >= 0)
+        {
+            var value = tokens.literalValues.value(literalSlot);
+            
+            if (kind == TokenKind.STRING_LITERAL
+                && tokens.symbolTable != this.symbolTable)
+            {
+                value = this.symbolTable.intern(
+                    tokens.symbolTable.text((int) value));
+            }
+            
+            this.attachLiteralValue(value);
+        }
+    }
+    
+    /**
+     * Appends copies of the tokens from index `from` (inclusive) to `to`
+     *  (exclusive) of another buffer, moving them by offsetDelta
+     *  (@see TokenBuffer.appendCopy).
+     */
+    public void appendRange(
+        TokenBuffer tokens,
+        int from,
+        int to,
+        int offsetDelta)
+    {
+        for (int i = from; i < to; i++)
+        {
+            this.appendCopy(tokens, i, offsetDelta);
+        }
+    }
+    
+    /**
+     * Removes every token from this buffer, and forgets its source file. The
+     *  arrays are kept at their current capacity, so that refilling the
+     *  buffer doesn't have to grow them again.<br/><br/>
+     * 
+     * <b>Remarks:</b><br/>&#9;
+     *      If the buffer has its own symbol table, the table is cleared too
+     *  (in place, so it also keeps its capacity), so that a buffer that's
+     *  reused for many inputs doesn't keep the text of every input it has
+     *  held. A shared table is left as it is.
+     */
+    public void clear()
+    {
+        if (this.symbolTable == this.ownSymbolTable)
+        {
+            this.symbolTable.clear();
+        }
+        
+        this.sourceFile = null;
+        this.size = 0;
+        this.literalValues.clear();
+        this.explicitPositions.clear();
+        this.openBracketCount = 0;
+        this.firstStrayBracket = NO_MATCH;
+        this.discardedCount = 0;
+    }
+    
+    /**
+     * Interns token text into the specified table from now on, e.g. the
+     *  table of a compilation, which every file's buffer shares so that text
+     *  that's in many files is only stored once. The buffer must be empty,
+     *  since the symbol ids of its tokens would refer to the old table.
+     * 
+     * @param symbolTable - the table to share, or null to go back to the
+     *  buffer's own table, e.g. so that a pooled buffer doesn't keep a
+     *  finished compilation's table alive
+     */
+    public void useSymbolTable(SymbolTable symbolTable)
+    {
+        if (symbolTable == null)
+        {
+            if (this.ownSymbolTable == null)
+            {
+                this.ownSymbolTable = new SymbolTable();
+            }
+            
+            symbolTable = this.ownSymbolTable;
+        }
+        
+        this.symbolTable = symbolTable;
+    }
+    
+    /**
+     * Removes the first `count` tokens from this buffer, so that the token at
+     *  index `count` becomes the first token.
+     */
+    public void discardFirst(int count)
+    {
+        var keptCount = this.size - count;
+        
+        this.moveTokensToStart(count, keptCount);
+        
+        this.literalValues.discardFirst(count);
+        this.explicitPositions.discardFirst(count);
+        this.discardFirstBrackets(count);
+        
+        this.size = keptCount;
+    }
+    
+    /**
+     * Moves the text of every token in this buffer into a new table of the
+     *  buffer's own, so that the symbols of discarded tokens are dropped. The
+     *  tokens' symbol ids change, but their text doesn't.<br/><br/>
+     * 
+     * <b>Remarks:</b><br/>&#9;
+     *      Symbols are never removed from a table, so a buffer that has
+     *  tokens discarded from its front (@see TokenBuffer.discardFirst) would
+     *  otherwise keep the text of every token it has ever held.
+     */
+    public void compactSymbolTable()
+    {
+        var newTable = new SymbolTable();
+        
+        this.moveToSymbolTable(newTable);
+        this.ownSymbolTable = newTable;
+    }
+    
+    /**
+     * Moves the text of every token in this buffer into the specified table,
+     *  and interns into it from now on (@see TokenBuffer.useSymbolTable).
+     *  The tokens' symbol ids change, but their text doesn't.<br/><br/>
+     * 
+     * <b>Remarks:</b><br/>&#9;
+     *      This lets the buffers that share a table move to a new one
+     *  together, e.g. to drop the text of lines that were edited away (@see
+     *  IncrementalLexer).
+     * 
+     * @param newTable - the table to move the tokens' text into
+     */
+    public void moveToSymbolTable(SymbolTable newTable)
+    {
+        var oldTable = this.symbolTable;
+        
+        for (int i = 0; i < this.size; i++)
+        {
+            this.storeToken(
+                i,
+                this.kind(i),
+                newTable.intern(oldTable.text(this.symbol(i))),
+                this.offset(i));
+        }
+        
+        for (int slot = 0; slot < this.literalValues.count(); slot++)
+        {
+            var tokenIndex = this.literalValues.tokenIndex(slot);
+            
+            if (this.kind(tokenIndex) == TokenKind.STRING_LITERAL)
+            {
+                var value = (int) this.literalValues.value(slot);
+                
+                this.literalValues.value(
+                    slot, newTable.intern(oldTable.text(value)));
+            }
+        }
+        
+        this.symbolTable = newTable;
+    }
+    
+    /**
+     * Returns the index of the bracket that matches the bracket at index,
+     *  e.g. the index of the ")" that closes a "(". This is a single array
+     *  read, since the brackets were matched as they were appended.
+     * 
+     * @return the index of the matching bracket, or NO_MATCH if the token
+     *  isn't a bracket, or its bracket isn't matched (or was discarded)
+     */
+    @Override
+    public int matchingBracket(int index)
+    {
+        return this.indexOf(this.matchingBracketPosition(index));
+    }
+    
+    /**
+     * Returns the position of the bracket that matches the bracket at index,
+     *  i.e. its index counting the tokens that were discarded (@see
+     *  TokenBuffer.discardedCount). Unlike matchingBracket, this still finds
+     *  the match of a closing bracket whose opening bracket was discarded.
+     * 
+     * @return the position of the matching bracket, or NO_MATCH if the
+     *  token isn't a bracket, or its bracket isn't matched
+     */
+    public int matchingBracketPosition(int index)
+    {
+        if (!TokenKind.isIn(this.kind(index), BRACKETS))
+        {
+            return NO_MATCH;
+        }
+        
+        return this.matchingBrackets[index];
+    }
+    
+    /**
+     * Converts a bracket position into an index in this buffer, or NO_MATCH
+     *  if the bracket was discarded.
+     */
+    private int indexOf(int position)
+    {
+        return position < this.discardedCount
+            ? NO_MATCH
+            : position - this.discardedCount;
+    }
+    
+    /**
+     * Returns the index of the first bracket that isn't balanced. That's the
+     *  first closing bracket that didn't close the innermost open bracket,
+     *  since it's where the brackets went wrong, or else the first opening
+     *  bracket that hasn't been closed (yet).
+     * 
+     * @return the index of the bracket, or NO_MATCH if every bracket so far
+     *  is balanced
+     */
+    public int firstUnbalancedBracket()
+    {
+        var strayIndex = this.indexOf(this.firstStrayBracket);
+        
+        if (strayIndex != NO_MATCH)
+        {
+            return strayIndex;
+        }
+        
+        for (int i = 0; i < this.openBracketCount; i++)
+        {
+            var openIndex = this.indexOf(this.openBrackets[i]);
+            
+            if (openIndex != NO_MATCH)
+            {
+                return openIndex;
+            }
+        }
+        
+        return NO_MATCH;
+    }
+    
+    @Override
+    public int clampIndex(int index)
+    {
+        if (index < 0)
+        {
+            return 0;
+        }
+        
+        return Math.min(index, this.size - 1);
+    }
+    
+    @Override
+    public boolean hasTokenAfter(int index)
+    {
+        return index + 1 < this.size;
+    }
+    
+    /**
+     * Does nothing, since all of the tokens are already in memory.
+     */
+    @Override
+    public void discardBefore(int index)
+    {
+    }
+    
+    @Override
+    public boolean keepsAllTokens()
+    {
+        return true;
+    }
+    
+    /**
+     * Returns null, since a buffer is only parsed once all of its input has
+     *  been lexed successfully.
+     */
+    @Override
+    public LexErrCode errCode()
+    {
+        return null;
+    }
+    
+    /**
+     * Returns the TokenKind of the token at index.
+     */
+    @Override
+    public int kind(int index)
+    {
+        return this.kinds[index];
+    }
+    
+    /**
+     * Returns the symbol id (in symbolTable) of the text of the token at
+     *  index. Two tokens have the same text if and only if they have the same
+     *  symbol.
+     */
+    @Override
+    public int symbol(int index)
+    {
+        return this.symbols[index];
+    }
+    
+    /**
+     * Returns the offset in sourceFile of the token at index, or NO_OFFSET if
+     *  it wasn't lexed from sourceFile.
+     */
+    public int offset(int index)
+    {
+        return this.offsets[index];
+    }
+    
+    /**
+     * Returns the line number of the token at index. For a lexed token, this
+     *  is a binary search of sourceFile's lines.
+     */
+    @Override
+    public int lineNum(int index)
+    {
+        var offset = this.offset(index);
+        
+        if (offset == NO_OFFSET)
+        {
+            return (int) (this.explicitPosition(index) >> 32);
+        }
+        
+        return this.sourceFile.lineNumAt(offset);
+    }
+    
+    /**
+     * Returns the column number of the token at index.
+     */
+    @Override
+    public int columnNum(int index)
+    {
+        var offset = this.offset(index);
+        
+        if (offset == NO_OFFSET)
+        {
+            return (int) this.explicitPosition(index);
+        }
+        
+        return this.sourceFile.columnAt(offset);
+    }
+    
+    @Override
+    public boolean hasLiteralValue(int index)
+    {
+        return this.findLiteralSlot(index) >= 0;
+    }
+    
+    @Override
+    public long integerValue(int index)
+    {
+        return this.literalValues.value(this.literalSlot(index));
+    }
+    
+    @Override
+    public double floatValue(int index)
+    {
+        return Double.longBitsToDouble(
+            this.literalValues.value(this.literalSlot(index)));
+    }
+    
+    @Override
+    public String stringValue(int index)
+    {
+        return this.symbolTable.text(
+            (int) this.literalValues.value(this.literalSlot(index)));
+    }
+    
+    private long explicitPosition(int index)
+    {
+        return this.explicitPositions.value(
+            this.explicitPositions.find(index));
+    }
+    
+    private static long packPosition(int lineNum, int columnNum)
+    {
+        return ((long) lineNum << 32) | (columnNum & 0xFFFFFFFFL);
+    }
+    
+    /**
+     * Returns the slot in literalValues of the value of the token at index,
+     *  or -1 if it has none.
+     */
+    private int findLiteralSlot(int index)
+    {
+        if (!TokenKind.isIn(this.kind(index), LITERAL_KINDS))
+        {
+            return -1;
+        }
+        
+        return this.literalValues.find(index);
+    }
+    
+    private int literalSlot(int index)
+    {
+        var slot = this.findLiteralSlot(index);
+        
+        if (slot < 0)
+        {
+            throw new IllegalArgumentException(
+                "Token " + index + " (`" + this.text(index) + "`) doesn't "
+                + "have a literal value.");
+        }
+        
+        return slot;
+    }
+    
+    /**
+     * Returns the number of chars in the text of the token at index.
+     */
+    public int textLength(int index)
+    {
+        return this.text(index).length();
+    }
+    
+    /**
+     * Returns the char at charIndex of the text of the token at index.
+     */
+    public char textCharAt(int index, int charIndex)
+    {
+        return this.text(index).charAt(charIndex);
+    }
+    
+    /**
+     * Returns the path of the file that the tokens were lexed from, or null if
+     *  there is none.
+     */
+    public String filePath()
+    {
+        return this.sourceFile == null ? null : this.sourceFile.path();
+    }
+    
+    /**
+     * Returns the text of the token at index. This is the shared string from
+     *  symbolTable, so no string is created.
+     */
+    @Override
+    public String text(int index)
+    {
+        return this.symbolTable.text(this.symbol(index));
+    }
+    
+    /**
+     * Returns true if the text of the token at index .equals textToMatch.
+     */
+    @Override
+    public boolean textEquals(int index, String textToMatch)
+    {
+        return this.text(index).equals(textToMatch);
+    }
+    
+    /**
+     * Returns the token at index as a Token object.
+     * 
+     * This creates a new Token (except for the SOF and EOF tokens), so it's
+     *  for debug printing and error reporting. Hot paths (e.g. the parser)
+     *  use the other accessors instead.
+     */
+    @Override
+    public Token get(int index)
+    {
+        var kind = this.kind(index);
+        
+        switch (kind)
+        {
+            case TokenKind.SOF:
+                return Token.BLUC_SOF;
+            
+            case TokenKind.EOF:
+                return Token.BLUC_EOF;
+            
+            default:
+                return new Token(
+                    this.filePath(),
+                    this.lineNum(index),
+                    this.columnNum(index),
+                    this.text(index),
+                    kind);
+        }
+    }
+    
+    /**
+     * Returns all the tokens in this buffer as a list of Token objects.
+     */
+    public ArrayList<Token> toTokenList()
+    {
+        var tokens = new ArrayList<Token>(this.size);
+        
+        for (int i = 0; i < this.size; i++)
+        {
+            tokens.add(this.get(i));
+        }
+        
+        return tokens;
+    }
+    
+    /**
+     * Matches the bracket that was just appended at index against the
+     *  innermost open bracket.
+     */
+    private void matchBracket(int index, int kind)
+    {
+        if (index >= this.matchingBrackets.length)
+        {
+            this.matchingBrackets
+                = Arrays.copyOf(
+                    this.matchingBrackets,
+                    Math.max(index + 1, this.matchingBrackets.length * 2));
+        }
+        
+        var position = index + this.discardedCount;
+        
+        if (TokenKind.isIn(kind, TokenKind.OPENING_BRACKETS))
+        {
+            this.pushOpenBracket(position, kind);
+            this.matchingBrackets[index] = NO_MATCH;
+            
+            return;
+        }
+        
+        var innermost = this.openBracketCount - 1;
+        
+        if (innermost < 0
+            || this.openBracketKinds[innermost]
+                != TokenKind.openingBracketOf(kind))
+        {
+            // Leave the open brackets as they are, so that one stray closing
+            //  bracket doesn't unbalance every bracket after it.
+            this.matchingBrackets[index] = NO_MATCH;
+            
+            if (this.firstStrayBracket == NO_MATCH)
+            {
+                this.firstStrayBracket = position;
+            }
+            
+            return;
+        }
+        
+        var openPosition = this.openBrackets[innermost];
+        var openIndex = this.indexOf(openPosition);
+        this.openBracketCount--;
+        
+        this.matchingBrackets[index] = openPosition;
+        
+        if (openIndex != NO_MATCH)
+        {
+            this.matchingBrackets[openIndex] = position;
+        }
+    }
+    
+    private void pushOpenBracket(int position, int kind)
+    {
+        if (this.openBracketCount == this.openBrackets.length)
+        {
+            var newCapacity = this.openBracketCount * 2;
+            
+            this.openBrackets = Arrays.copyOf(this.openBrackets, newCapacity);
+            this.openBracketKinds
+                = Arrays.copyOf(this.openBracketKinds, newCapacity);
+        }
+        
+        this.openBrackets[this.openBracketCount] = position;
+        this.openBracketKinds[this.openBracketCount] = kind;
+        this.openBracketCount++;
+    }
+    
+    /**
+     * Moves the bracket entries of the kept tokens to the front, for
+     *  TokenBuffer.discardFirst. The positions themselves stay the same,
+     *  since they count the discarded tokens.
+     */
+    private void discardFirstBrackets(int count)
+    {
+        var keptEntryCount
+            = Math.min(this.matchingBrackets.length, this.size) - count;
+        
+        if (keptEntryCount > 0)
+        {
+            System.arraycopy(
+                this.matchingBrackets, count, this.matchingBrackets, 0,
+                keptEntryCount);
+        }
+        
+        this.discardedCount += count;
+    }
+    
+    /**
+     * Makes room for one more token, and returns its index.
+     */
+    private int reserveToken()
+    {
+        var index = this.size;
+        
+        this.ensureCapacity(index + 1);
+        this.size++;
+        
+        return index;
+    }
+    
+    /**
+     * Makes sure that there's room for at least `capacity` tokens, keeping
+     *  the tokens that are already stored.
+     */
+    protected void ensureCapacity(int capacity)
+    {
+        if (capacity > this.kinds.length)
+        {
+            var newCapacity = Math.max(capacity, this.kinds.length * 2);
+            
+            this.kinds = Arrays.copyOf(this.kinds, newCapacity);
+            this.symbols = Arrays.copyOf(this.symbols, newCapacity);
+            this.offsets = Arrays.copyOf(this.offsets, newCapacity);
+        }
+    }
+    
+    /**
+     * Stores the fields of the token at index, which has already been
+     *  reserved.
+     */
+    protected void storeToken(int index, int kind, int symbol, int offset)
+    {
+        this.kinds[index] = kind;
+        this.symbols[index] = symbol;
+        this.offsets[index] = offset;
+    }
+    
+    /**
+     * Moves `count` tokens, starting at index `from`, to the start of the
+     *  storage.
+     */
+    protected void moveTokensToStart(int from, int count)
+    {
+        System.arraycopy(this.kinds, from, this.kinds, 0, count);
+        System.arraycopy(this.symbols, from, this.symbols, 0, count);
+        System.arraycopy(this.offsets, from, this.offsets, 0, count);
+    }
+    
+    /**
+     * A long value for some of the tokens, keyed by token index. Tokens must
+     *  be added in increasing index order, which they are since they're only
+     *  added for the last token appended.
+     */
+    private static class SideTable
+    {
+        private int[] tokenIndexes;
+        
+        private long[] values;
+        
+        private int count;
+        
+        public SideTable()
+        {
+            this.tokenIndexes = new int[0];
+            this.values = new long[0];
+        }
+        
+        public void add(int tokenIndex, long value)
+        {
+            if (this.count == this.values.length)
+            {
+                var newCapacity = Math.max(16, this.count * 2);
+                
+                this.tokenIndexes
+                    = Arrays.copyOf(this.tokenIndexes, newCapacity);
+                this.values = Arrays.copyOf(this.values, newCapacity);
+            }
+            
+            this.tokenIndexes[this.count] = tokenIndex;
+            this.values[this.count] = value;
+            this.count++;
+        }
+        
+        /**
+         * Returns the slot of the token's value, or -1 if it has none.
+         */
+        public int find(int tokenIndex)
+        {
+            var slot
+                = Arrays.binarySearch(
+                    this.tokenIndexes, 0, this.count, tokenIndex);
+            
+            return Math.max(-1, slot);
+        }
+        
+        public long value(int slot)
+        {
+            return this.values[slot];
+        }
+        
+        public void value(int slot, long value)
+        {
+            this.values[slot] = value;
+        }
+        
+        public int tokenIndex(int slot)
+        {
+            return this.tokenIndexes[slot];
+        }
+        
+        public int count()
+        {
+            return this.count;
+        }
+        
+        public void clear()
+        {
+            this.count = 0;
+        }
+        
+        /**
+         * Drops the values of the first `tokenCount` tokens, and shifts the
+         *  rest down to match.
+         */
+        public void discardFirst(int tokenCount)
+        {
+            var firstKept
+                = Arrays.binarySearch(
+                    this.tokenIndexes, 0, this.count, tokenCount);
+            
+            if (firstKept < 0)
+            {
+                firstKept = -(firstKept + 1);
+            }
+            
+            var keptCount = this.count - firstKept;
+            
+            for (int i = 0; i < keptCount; i++)
+            {
+                this.tokenIndexes[i]
+                    = this.tokenIndexes[firstKept + i] - tokenCount;
+                this.values[i] = this.values[firstKept + i];
+            }
+            
+            this.count = keptCount;
+        }
+    }
+}
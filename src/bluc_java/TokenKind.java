@@ -0,0 +1,370 @@
+/*
+ * Copyright 2023 John Schneider.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bluc_java;
+
+/**
+ * The kinds of tokens that the lexer emits. Kinds are plain ints, so that
+ *  they can be stored in a TokenBuffer without boxing, and so that the parser
+ *  can match tokens with an int compare instead of a string compare.<br/><br/>
+ *
+ * <b>Remarks:</b><br/>&#9;
+ *      There are less than 64 kinds, so any set of kinds fits in a long. Use
+ *  TokenKind.mask to build a set once (e.g. as a static final field), and
+ *  TokenKind.isIn to test a kind against it.
+ */
+public class TokenKind
+{
+    /**
+     * A token that doesn't match any other kind, e.g. an unsupported
+     *  combination of operator chars.
+     */
+    public static final int UNKNOWN = 0;
+
+    /**
+     * The "start of file" token, i.e. Token.BLUC_SOF.
+     */
+    public static final int SOF = 1;
+
+    /**
+     * The "end of file" token, i.e. Token.BLUC_EOF.
+     */
+    public static final int EOF = 2;
+
+    // Identifiers and literals
+    public static final int IDENTIFIER      = 3;
+    public static final int INTEGER_LITERAL = 4;
+    public static final int FLOAT_LITERAL   = 5;
+    public static final int STRING_LITERAL  = 6;
+
+    // Punctuation. Each closing bracket is declared right after its opening
+    //  bracket (@see TokenKind.openingBracketOf).
+    public static final int LEFT_PAREN      = 7;
+    public static final int RIGHT_PAREN     = 8;
+    public static final int LEFT_BRACE      = 9;
+    public static final int RIGHT_BRACE     = 10;
+    public static final int LEFT_BRACKET    = 11;
+    public static final int RIGHT_BRACKET   = 12;
+    public static final int COMMA           = 13;
+
+    // Single char operators
+    public static final int PLUS            = 14;
+    public static final int MINUS           = 15;
+    public static final int STAR            = 16;
+    public static final int SLASH           = 17;
+    public static final int PERCENT         = 18;
+    public static final int EQUAL           = 19;
+    public static final int BANG            = 20;
+    public static final int LESS            = 21;
+    public static final int GREATER         = 22;
+    public static final int PIPE            = 23;
+    public static final int AMPERSAND       = 24;
+    public static final int CARET           = 25;
+
+    // Two char operators
+    public static final int EQUAL_EQUAL         = 26;
+    public static final int BANG_EQUAL          = 27;
+    public static final int LESS_EQUAL          = 28;
+    public static final int GREATER_EQUAL       = 29;
+    public static final int PLUS_EQUAL          = 30;
+    public static final int MINUS_EQUAL         = 31;
+    public static final int STAR_EQUAL          = 32;
+    public static final int SLASH_EQUAL         = 33;
+    public static final int PERCENT_EQUAL       = 34;
+    public static final int PIPE_EQUAL          = 35;
+    public static final int AMPERSAND_EQUAL     = 36;
+    public static final int CARET_EQUAL         = 37;
+    public static final int PLUS_PLUS           = 38;
+    public static final int MINUS_MINUS         = 39;
+    public static final int PIPE_PIPE           = 40;
+    public static final int AMPERSAND_AMPERSAND = 41;
+    public static final int LESS_LESS           = 42;
+    public static final int GREATER_GREATER     = 43;
+    public static final int ARROW               = 44;
+
+    // Keywords. Only the words that the grammar already gives a meaning are
+    //  reserved, so that every other word stays usable as an identifier.
+    public static final int FN              = 45;
+
+    // Three char operators
+    public static final int LESS_LESS_EQUAL       = 46;
+    public static final int GREATER_GREATER_EQUAL = 47;
+
+    /**
+     * The number of token kinds.
+     */
+    public static final int COUNT = 48;
+
+    /**
+     * The kinds of the opening brackets, i.e. "(", "{" and "[".
+     */
+    public static final long OPENING_BRACKETS
+        = TokenKind.mask(LEFT_PAREN, LEFT_BRACE, LEFT_BRACKET);
+
+    /**
+     * The kinds of the closing brackets, i.e. ")", "}" and "]".
+     */
+    public static final long CLOSING_BRACKETS
+        = TokenKind.mask(RIGHT_PAREN, RIGHT_BRACE, RIGHT_BRACKET);
+
+    /**
+     * The text of each keyword, and the kind it's lexed as.
+     */
+    private static final String[] KEYWORD_TEXTS = {
+        "fn"
+    };
+
+    private static final int[] KEYWORD_KINDS = {
+        FN
+    };
+
+    private static final KeywordHash KEYWORDS
+        = new KeywordHash(KEYWORD_TEXTS, KEYWORD_KINDS);
+
+    /**
+     * The kind of each punctuation char, indexed by the char.
+     */
+    private static final int[] SINGLE_CHAR_KINDS = new int[128];
+
+    /**
+     * Every operator, for the lexer to match the longest operator with.
+     */
+    private static final OperatorTrie OPERATORS = new OperatorTrie();
+
+    /**
+     * Debug names for each kind, indexed by kind.
+     */
+    private static final String[] NAMES = new String[COUNT];
+
+    static
+    {
+        TokenKind.declareSingle('(', LEFT_PAREN, "LEFT_PAREN");
+        TokenKind.declareSingle(')', RIGHT_PAREN, "RIGHT_PAREN");
+        TokenKind.declareSingle('{', LEFT_BRACE, "LEFT_BRACE");
+        TokenKind.declareSingle('}', RIGHT_BRACE, "RIGHT_BRACE");
+        TokenKind.declareSingle('[', LEFT_BRACKET, "LEFT_BRACKET");
+        TokenKind.declareSingle(']', RIGHT_BRACKET, "RIGHT_BRACKET");
+        TokenKind.declareSingle(',', COMMA, "COMMA");
+
+        TokenKind.declareOperator("+", PLUS, "PLUS");
+        TokenKind.declareOperator("-", MINUS, "MINUS");
+        TokenKind.declareOperator("*", STAR, "STAR");
+        TokenKind.declareOperator("/", SLASH, "SLASH");
+        TokenKind.declareOperator("%", PERCENT, "PERCENT");
+        TokenKind.declareOperator("=", EQUAL, "EQUAL");
+        TokenKind.declareOperator("!", BANG, "BANG");
+        TokenKind.declareOperator("<", LESS, "LESS");
+        TokenKind.declareOperator(">", GREATER, "GREATER");
+        TokenKind.declareOperator("|", PIPE, "PIPE");
+        TokenKind.declareOperator("&", AMPERSAND, "AMPERSAND");
+        TokenKind.declareOperator("^", CARET, "CARET");
+
+        TokenKind.declareOperator("==", EQUAL_EQUAL, "EQUAL_EQUAL");
+        TokenKind.declareOperator("!=", BANG_EQUAL, "BANG_EQUAL");
+        TokenKind.declareOperator("<=", LESS_EQUAL, "LESS_EQUAL");
+        TokenKind.declareOperator(">=", GREATER_EQUAL, "GREATER_EQUAL");
+        TokenKind.declareOperator("+=", PLUS_EQUAL, "PLUS_EQUAL");
+        TokenKind.declareOperator("-=", MINUS_EQUAL, "MINUS_EQUAL");
+        TokenKind.declareOperator("*=", STAR_EQUAL, "STAR_EQUAL");
+        TokenKind.declareOperator("/=", SLASH_EQUAL, "SLASH_EQUAL");
+        TokenKind.declareOperator("%=", PERCENT_EQUAL, "PERCENT_EQUAL");
+        TokenKind.declareOperator("|=", PIPE_EQUAL, "PIPE_EQUAL");
+        TokenKind.declareOperator("&=", AMPERSAND_EQUAL, "AMPERSAND_EQUAL");
+        TokenKind.declareOperator("^=", CARET_EQUAL, "CARET_EQUAL");
+        TokenKind.declareOperator("++", PLUS_PLUS, "PLUS_PLUS");
+        TokenKind.declareOperator("--", MINUS_MINUS, "MINUS_MINUS");
+        TokenKind.declareOperator("||", PIPE_PIPE, "PIPE_PIPE");
+        TokenKind.declareOperator(
+            "&&", AMPERSAND_AMPERSAND, "AMPERSAND_AMPERSAND");
+        TokenKind.declareOperator("<<", LESS_LESS, "LESS_LESS");
+        TokenKind.declareOperator(">>", GREATER_GREATER, "GREATER_GREATER");
+        TokenKind.declareOperator("->", ARROW, "ARROW");
+
+        TokenKind.declareOperator("<<=", LESS_LESS_EQUAL, "LESS_LESS_EQUAL");
+        TokenKind.declareOperator(
+            ">>=", GREATER_GREATER_EQUAL, "GREATER_GREATER_EQUAL");
+
+        NAMES[UNKNOWN] = "UNKNOWN";
+        NAMES[SOF] = "SOF";
+        NAMES[EOF] = "EOF";
+        NAMES[IDENTIFIER] = "IDENTIFIER";
+        NAMES[INTEGER_LITERAL] = "INTEGER_LITERAL";
+        NAMES[FLOAT_LITERAL] = "FLOAT_LITERAL";
+        NAMES[STRING_LITERAL] = "STRING_LITERAL";
+
+        for (int i = 0; i < KEYWORD_TEXTS.length; i++)
+        {
+            NAMES[KEYWORD_KINDS[i]] = KEYWORD_TEXTS[i].toUpperCase();
+        }
+    }
+
+    private static void declareSingle(char character, int kind, String name)
+    {
+        SINGLE_CHAR_KINDS[character] = kind;
+        NAMES[kind] = name;
+    }
+
+    /**
+     * Declares an operator. Operators must be declared after all of their
+     *  prefixes (@see OperatorTrie).
+     */
+    private static void declareOperator(String text, int kind, String name)
+    {
+        OPERATORS.add(text, kind);
+        NAMES[kind] = name;
+    }
+
+    /**
+     * Returns the trie of every operator.
+     */
+    public static OperatorTrie operators()
+    {
+        return OPERATORS;
+    }
+
+    /**
+     * Returns the debug name of the specified kind.
+     */
+    public static String name(int kind)
+    {
+        return NAMES[kind];
+    }
+
+    /**
+     * Creates a set of kinds, for use with TokenKind.isIn.
+     *
+     * This allocates an array for the arguments, so store the result rather
+     *  than calling this on hot paths.
+     */
+    public static long mask(int... kinds)
+    {
+        var mask = 0L;
+
+        for (var kind : kinds)
+        {
+            mask |= 1L << kind;
+        }
+
+        return mask;
+    }
+
+    /**
+     * Returns true if kind is in the set of kinds created by TokenKind.mask.
+     */
+    public static boolean isIn(int kind, long mask)
+    {
+        return (mask & (1L << kind)) != 0;
+    }
+
+    /**
+     * Returns the kind of the opening bracket that the specified closing
+     *  bracket closes, e.g. LEFT_PAREN for RIGHT_PAREN.
+     */
+    public static int openingBracketOf(int closingKind)
+    {
+        return closingKind - 1;
+    }
+
+    /**
+     * Classifies the token with the specified text.
+     */
+    public static int classify(String text)
+    {
+        return TokenKind.classify(text.toCharArray(), 0, text.length());
+    }
+
+    /**
+     * Classifies the token whose text is the specified slice of chars.
+     *
+     * @param chars - the array that holds the token's text
+     * @param start - the index (in chars) of the token's first char
+     * @param length - the number of chars in the token
+     */
+    public static int classify(char[] chars, int start, int length)
+    {
+        if (length == 0)
+        {
+            return UNKNOWN;
+        }
+
+        var first = chars[start];
+
+        if (first == '"')
+        {
+            return STRING_LITERAL;
+        }
+
+        if (first < 128 && SINGLE_CHAR_KINDS[first] != UNKNOWN)
+        {
+            return length == 1 ? SINGLE_CHAR_KINDS[first] : UNKNOWN;
+        }
+
+        if (OPERATORS.child(OperatorTrie.ROOT, first) != OperatorTrie.NO_NODE)
+        {
+            return OPERATORS.kindOf(chars, start, length);
+        }
+
+        if (first >= '0' && first <= '9')
+        {
+            return TokenKind.classifyNumber(chars, start, length);
+        }
+
+        return TokenKind.classifyWord(chars, start, length);
+    }
+
+    /**
+     * Classifies an integer ("123") or float ("45.67") literal.
+     */
+    private static int classifyNumber(char[] chars, int start, int length)
+    {
+        var end = start + length;
+        var dotIndex = -1;
+
+        for (int i = start; i < end; i++)
+        {
+            var character = chars[i];
+
+            if (character == '.' && dotIndex == -1)
+            {
+                dotIndex = i;
+            }
+            else if (character < '0' || character > '9')
+            {
+                return UNKNOWN;
+            }
+        }
+
+        if (dotIndex == -1)
+        {
+            return INTEGER_LITERAL;
+        }
+
+        // There must be at least one digit after the '.'.
+        return dotIndex == end - 1 ? UNKNOWN : FLOAT_LITERAL;
+    }
+
+    /**
+     * Classifies an identifier or keyword, with one lookup in the keyword
+     *  hash (@see KeywordHash).
+     */
+    private static int classifyWord(char[] chars, int start, int length)
+    {
+        var keywordKind = KEYWORDS.kindOf(chars, start, length);
+
+        return keywordKind == KeywordHash.NOT_A_KEYWORD
+            ? IDENTIFIER
+            : keywordKind;
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2023 John Schneider.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bluc_java;
+
+import bluc_java.Lexer.LexErrCode;
+
+/**
+ * A sequence of lexed tokens that the parser reads by index. The first token
+ *  is always the SOF token, and the last is always the EOF token.<br/><br/>
+ * 
+ * <b>Remarks:</b><br/>&#9;
+ *      A source may lex its tokens on demand, so an index must have been
+ *  returned by TokenSource.clampIndex (or be before such an index) before any
+ *  of its fields are read.
+ */
+public interface TokenSource
+{
+    /**
+     * Returns the TokenKind of the token at index.
+     */
+    int kind(int index);
+    
+    /**
+     * Returns the symbol id (@see SymbolTable) of the text of the token at
+     *  index.
+     */
+    int symbol(int index);
+    
+    /**
+     * Returns the line number of the token at index.
+     */
+    int lineNum(int index);
+    
+    /**
+     * Returns the column number of the token at index.
+     */
+    int columnNum(int index);
+    
+    /**
+     * Returns the text of the token at index.
+     */
+    String text(int index);
+    
+    /**
+     * Returns true if the text of the token at index .equals textToMatch.
+     */
+    boolean textEquals(int index, String textToMatch);
+    
+    /**
+     * Returns the token at index as a Token object. This may create a new
+     *  Token, so it's for debug printing and error reporting rather than for
+     *  parsing, which reads the other accessors.
+     */
+    Token get(int index);
+    
+    /**
+     * Returns true if the token at index is a literal whose value was
+     *  evaluated by the lexer. Integer literals that don't fit in a long have
+     *  no value.
+     */
+    boolean hasLiteralValue(int index);
+    
+    /**
+     * Returns the value of the INTEGER_LITERAL at index.
+     */
+    long integerValue(int index);
+    
+    /**
+     * Returns the value of the FLOAT_LITERAL at index.
+     */
+    double floatValue(int index);
+    
+    /**
+     * Returns the value of the STRING_LITERAL at index, i.e. its text without
+     *  the quotes and with its escapes replaced by the chars they stand for.
+     */
+    String stringValue(int index);
+    
+    /**
+     * Returns the index of the bracket that matches the bracket at index,
+     *  e.g. the index of the "}" that closes a "{".
+     * 
+     * @return the index of the matching bracket, or TokenBuffer.NO_MATCH if
+     *  the token isn't a bracket or its bracket isn't matched
+     */
+    int matchingBracket(int index);
+
+    /**
+     * Clamps the index so that it's not less than 0 (the SOF token) or greater
+     *  than the index of the EOF token.
+     */
+    int clampIndex(int index);
+    
+    /**
+     * Returns true if there's a token after the token at index.
+     */
+    boolean hasTokenAfter(int index);
+    
+    /**
+     * Tells the source that tokens before index will never be read again, so
+     *  that it may free them.
+     */
+    void discardBefore(int index);
+    
+    /**
+     * Returns true if the source keeps every token in memory, i.e.
+     *  discardBefore never frees anything, so tokens that the parser has
+     *  moved past can still be read later (@see Parser.doParseBodiesLazily).
+     */
+    boolean keepsAllTokens();
+    
+    /**
+     * Returns the lexer error that the source has run into, or null if it
+     *  hasn't run into one. A source that lexes its tokens as they're read
+     *  can only find an error (e.g. an unbalanced bracket) part way through
+     *  the parse, so the parser checks this once it's done.
+     */
+    LexErrCode errCode();
+}
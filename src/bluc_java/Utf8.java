@@ -0,0 +1,165 @@
+/*
+ * Copyright 2023 John Schneider.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bluc_java;
+
+/**
+ * Decodes UTF-8 one char at a time, for lexing straight from a file's bytes.
+ *  <br/><br/>
+ *
+ * <b>Remarks:</b><br/>&#9;
+ *      Only well-formed UTF-8 is accepted, the same as the JDK's decoder:
+ *  overlong encodings, surrogates, code points past U+10FFFF and truncated
+ *  sequences are all malformed.
+ */
+public class Utf8
+{
+    /**
+     * Returned by Utf8.decode for a malformed byte sequence.
+     */
+    public static final int MALFORMED = -1;
+    
+    /**
+     * Decodes the char that starts at the specified position.
+     * 
+     * @param bytes - the bytes to decode
+     * @param position - the index of the first byte of the char
+     * @param end - the index just past the last byte that may be read
+     * @return the char's code point, or MALFORMED if the bytes aren't a
+     *  well-formed UTF-8 sequence
+     */
+    public static int decode(byte[] bytes, int position, int end)
+    {
+        var lead = bytes[position] & 0xFF;
+        
+        if (lead < 0x80)
+        {
+            return lead;
+        }
+        
+        // 0x80-0xBF are continuation bytes, and 0xC0-0xC1 could only start
+        //  an overlong encoding of ASCII.
+        if (lead < 0xC2 || lead > 0xF4)
+        {
+            return MALFORMED;
+        }
+        
+        var length = Utf8.sequenceLength(bytes[position]);
+        
+        if (position + length > end)
+        {
+            return MALFORMED;
+        }
+        
+        // The range of the second byte is narrower for some lead bytes, to
+        //  rule out overlong encodings, surrogates and code points past
+        //  U+10FFFF.
+        var second = bytes[position + 1] & 0xFF;
+        var secondMin
+            = lead == 0xE0 ? 0xA0
+            : lead == 0xF0 ? 0x90
+            : 0x80;
+        var secondMax
+            = lead == 0xED ? 0x9F
+            : lead == 0xF4 ? 0x8F
+            : 0xBF;
+        
+        if (second < secondMin || second > secondMax)
+        {
+            return MALFORMED;
+        }
+        
+        var codePoint = lead & (0xFF >>> (length + 1));
+        
+        for (int i = 1; i < length; i++)
+        {
+            var continuation = bytes[position + i] & 0xFF;
+            
+            if ((continuation & 0xC0) != 0x80)
+            {
+                return MALFORMED;
+            }
+            
+            codePoint = (codePoint << 6) | (continuation & 0x3F);
+        }
+        
+        return codePoint;
+    }
+    
+    /**
+     * Returns the number of bytes in the UTF-8 sequence that starts with the
+     *  specified lead byte, or 1 if it's not a valid lead byte.
+     */
+    public static int sequenceLength(byte lead)
+    {
+        var unsignedLead = lead & 0xFF;
+        
+        if (unsignedLead < 0xC0)
+        {
+            return 1;
+        }
+        
+        if (unsignedLead < 0xE0)
+        {
+            return 2;
+        }
+        
+        if (unsignedLead < 0xF0)
+        {
+            return 3;
+        }
+        
+        return 4;
+    }
+    
+    /**
+     * Decodes well-formed UTF-8 into chars. ASCII bytes are copied straight
+     *  across, only other chars are actually decoded.
+     * 
+     * @param bytes - the bytes to decode
+     * @param start - the index of the first byte to decode
+     * @param length - the number of bytes to decode
+     * @param chars - where to write the chars. This must have room for at
+     *  least `length` chars, which is the most that `length` bytes can
+     *  decode to.
+     * @return the number of chars that were written
+     */
+    public static int decode(byte[] bytes, int start, int length, char[] chars)
+    {
+        var end = start + length;
+        var charCount = 0;
+        var position = start;
+        
+        while (position < end)
+        {
+            var curByte = bytes[position];
+            
+            if (curByte >= 0)
+            {
+                chars[charCount++] = (char) curByte;
+                position++;
+                
+                continue;
+            }
+            
+            var codePoint = Utf8.decode(bytes, position, end);
+            
+            charCount += Character.toChars(codePoint, chars, charCount);
+            position += Utf8.sequenceLength(curByte);
+        }
+        
+        return charCount;
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2023 John Schneider.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bluc_java;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.Vector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * A run scanner that checks a whole vector of chars at a time with the
+ *  Vector API, e.g. 16 chars (32 bytes) at a time with AVX2.<br/><br/>
+ *
+ * <b>Remarks:</b><br/>&#9;
+ *      Each vector only recognizes the common chars of a run, e.g. only
+ *  spaces and tabs for white space, or only ASCII letters, digits, '_' and
+ *  '.' for words. The rest of the run, starting at the first vector that
+ *  has any other char, is scanned by the scalar RunScanner, so the result is
+ *  always the same as the scalar version's.<br/><br/>&#9;
+ *      This class can only be loaded if the jdk.incubator.vector module is,
+ *  so it should only be created through RunScanner.fastest.
+ */
+public class VectorRunScanner extends RunScanner
+{
+    private static final VectorSpecies<Short> SPECIES
+        = ShortVector.SPECIES_PREFERRED;
+    
+    private static final VectorSpecies<Byte> BYTE_SPECIES
+        = ByteVector.SPECIES_PREFERRED;
+    
+    @Override
+    public int skipWhitespace(char[] buffer, int start, int end)
+    {
+        var position = start;
+        var vectorEnd = end - SPECIES.length();
+        
+        while (position <= vectorEnd)
+        {
+            var chars = ShortVector.fromCharArray(SPECIES, buffer, position);
+            var isWhitespace
+                = chars.eq((short) ' ').or(chars.eq((short) '\t'));
+            
+            if (!isWhitespace.allTrue())
+            {
+                return position + isWhitespace.not().firstTrue();
+            }
+            
+            position += SPECIES.length();
+        }
+        
+        return super.skipWhitespace(buffer, position, end);
+    }
+    
+    @Override
+    public int skipWordChars(char[] buffer, int start, int end)
+    {
+        var position = start;
+        var vectorEnd = end - SPECIES.length();
+        
+        while (position <= vectorEnd)
+        {
+            var chars = ShortVector.fromCharArray(SPECIES, buffer, position);
+            var isWordChar = VectorRunScanner.isCommonWordChar(chars);
+            
+            if (!isWordChar.allTrue())
+            {
+                // The first char that isn't a common word char may still be
+                //  an uncommon one, so let the scalar version decide.
+                position += isWordChar.not().firstTrue();
+                
+                return super.skipWordChars(buffer, position, end);
+            }
+            
+            position += SPECIES.length();
+        }
+        
+        return super.skipWordChars(buffer, position, end);
+    }
+    
+    @Override
+    public int skipStringChars(char[] buffer, int start, int end)
+    {
+        var position = start;
+        var vectorEnd = end - SPECIES.length();
+        
+        while (position <= vectorEnd)
+        {
+            var chars = ShortVector.fromCharArray(SPECIES, buffer, position);
+            var isRunEnd
+                = chars.eq((short) '"')
+                .or(chars.eq((short) '\\'))
+                .or(chars.eq((short) '\n'))
+                .or(chars.eq((short) '\r'));
+            
+            if (isRunEnd.anyTrue())
+            {
+                return position + isRunEnd.firstTrue();
+            }
+            
+            position += SPECIES.length();
+        }
+        
+        return super.skipStringChars(buffer, position, end);
+    }
+    
+    @Override
+    public int skipWhitespace(byte[] buffer, int start, int end)
+    {
+        var position = start;
+        var vectorEnd = end - BYTE_SPECIES.length();
+        
+        while (position <= vectorEnd)
+        {
+            var bytes = ByteVector.fromArray(BYTE_SPECIES, buffer, position);
+            var isWhitespace
+                = bytes.eq((byte) ' ').or(bytes.eq((byte) '\t'));
+            
+            if (!isWhitespace.allTrue())
+            {
+                return position + isWhitespace.not().firstTrue();
+            }
+            
+            position += BYTE_SPECIES.length();
+        }
+        
+        return super.skipWhitespace(buffer, position, end);
+    }
+    
+    @Override
+    public int skipWordChars(byte[] buffer, int start, int end)
+    {
+        var position = start;
+        var vectorEnd = end - BYTE_SPECIES.length();
+        
+        while (position <= vectorEnd)
+        {
+            var bytes = ByteVector.fromArray(BYTE_SPECIES, buffer, position);
+            var isWordChar = VectorRunScanner.isCommonWordChar(bytes);
+            
+            if (!isWordChar.allTrue())
+            {
+                position += isWordChar.not().firstTrue();
+                
+                return super.skipWordChars(buffer, position, end);
+            }
+            
+            position += BYTE_SPECIES.length();
+        }
+        
+        return super.skipWordChars(buffer, position, end);
+    }
+    
+    @Override
+    public int skipStringChars(byte[] buffer, int start, int end)
+    {
+        var position = start;
+        var vectorEnd = end - BYTE_SPECIES.length();
+        
+        while (position <= vectorEnd)
+        {
+            var bytes = ByteVector.fromArray(BYTE_SPECIES, buffer, position);
+            
+            // Bytes of non-ASCII chars are negative.
+            var isRunEnd
+                = bytes.lt((byte) 0)
+                .or(bytes.eq((byte) '"'))
+                .or(bytes.eq((byte) '\\'))
+                .or(bytes.eq((byte) '\n'))
+                .or(bytes.eq((byte) '\r'));
+            
+            if (isRunEnd.anyTrue())
+            {
+                return position + isRunEnd.firstTrue();
+            }
+            
+            position += BYTE_SPECIES.length();
+        }
+        
+        return super.skipStringChars(buffer, position, end);
+    }
+    
+    /**
+     * Returns which of the chars (or bytes) are ASCII letters, digits, '_' or
+     *  '.'.
+     */
+    private static <E> VectorMask<E> isCommonWordChar(Vector<E> chars)
+    {
+        // Setting the 0x20 bit maps 'A'-'Z' onto 'a'-'z', and doesn't map
+        //  any other char onto them. Chars from 0x8000 up (or bytes from 0x80
+        //  up) are negative, so they fail the lower bounds.
+        var lowerCase = chars.lanewise(VectorOperators.OR, 0x20);
+        var isLetter
+            = lowerCase
+            .compare(VectorOperators.GE, 'a')
+            .and(lowerCase.compare(VectorOperators.LE, 'z'));
+        
+        var isDigit
+            = chars
+            .compare(VectorOperators.GE, '0')
+            .and(chars.compare(VectorOperators.LE, '9'));
+        
+        return isLetter
+            .or(isDigit)
+            .or(chars.compare(VectorOperators.EQ, '_'))
+            .or(chars.compare(VectorOperators.EQ, '.'));
+    }
+}
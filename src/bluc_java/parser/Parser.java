@@ -15,12 +15,17 @@
  */
 package bluc_java.parser;
 
+import bluc_java.Diagnostic;
 import bluc_java.LogFormatter;
 import bluc_java.Result;
 import bluc_java.ResultType;
 import bluc_java.Token;
+import bluc_java.TokenBuffer;
+import bluc_java.TokenKind;
+import bluc_java.TokenSource;
 import bluc_java.Utils;
 import bluc_java.parser.statements.Stmt;
+import java.io.PrintStream;
 import java.util.ArrayList;
 import lombok.AccessLevel;
 import lombok.Getter;
@@ -33,11 +38,32 @@ import lombok.Setter;
 public class Parser
 {
     /**
-     * The token list retrieved from the lexer.
+     * The number of tokens before the current token that are kept readable,
+     *  e.g. for peek(-1). Older tokens may be freed by the token source.
+     */
+    public static final int MAX_LOOKBEHIND = 16;
+    
+    /**
+     * The furthest that the parser peeks ahead of the current token, e.g.
+     *  for peek(1).
+     */
+    public static final int MAX_LOOKAHEAD = 16;
+    
+    /**
+     * The number of tokens that the parser may read without moving: its
+     *  lookbehind, the current token and its lookahead. A token source that
+     *  frees tokens only ever has to lex this far ahead of the first token
+     *  that the parser hasn't discarded (@see StreamingTokenSource).
+     */
+    public static final int TOKEN_WINDOW_SIZE
+        = MAX_LOOKBEHIND + 1 + MAX_LOOKAHEAD;
+    
+    /**
+     * The tokens retrieved from the lexer.
      */
     @Getter
     @Setter
-    private ArrayList<Token> lexedTokens;
+    private TokenSource lexedTokens;
     
     /**
      * The index (in lexedTokens) of the current token.
@@ -46,12 +72,6 @@ public class Parser
     @Setter(AccessLevel.PRIVATE)
     private int currentTokenIndex;
     
-    /**
-     * The current token that the parser is processing.
-     */
-    @Getter
-    private Token currentToken;
-    
     /**
      * The abstract syntax tree.
      */
@@ -70,7 +90,8 @@ public class Parser
     /**
      * "True" if the .parse function was already called and has completed.
      * 
-     * Parser objects are single-use so that we don't have to deep copy the AST.
+     * A parser can only parse once until it's reset, so that we don't have to
+     *  deep copy the AST.
      */
     @Getter(AccessLevel.PRIVATE)
     @Setter(AccessLevel.PRIVATE)
@@ -83,19 +104,117 @@ public class Parser
     @Setter(AccessLevel.PRIVATE)
     private StmtSubparser stmtParser;
     
+    /**
+     * Where debug output is printed to.
+     */
+    @Getter
+    @Setter
+    private PrintStream out;
     
-    public Parser(ArrayList<Token> lexedTokens)
+    /**
+     * Where errors are printed to.
+     */
+    @Getter
+    @Setter
+    private PrintStream err;
+    
+    /**
+     * True if function bodies should only be parsed when they're first asked
+     *  for (@see FnStmt.body), rather than while the file is parsed. Parsing
+     *  then only has to skip over each body, which is a single step since the
+     *  lexer has already matched its braces.<br/><br/>
+     * 
+     * <b>Remarks:</b><br/>&#9;
+     *      This only applies to token sources that keep all of their tokens
+     *  (@see TokenSource.keepsAllTokens). Other sources free a body's tokens
+     *  once the parser is past them, so their bodies are always parsed
+     *  straight away.
+     */
+    @Getter
+    @Setter
+    private boolean doParseBodiesLazily;
+    
+    /**
+     * The result of the last statement that failed in the current parse, or
+     *  null if none have failed. This includes failures inside of bodies
+     *  that were parsed along with their functions (@see
+     *  Parser.recordBodyFailure).
+     */
+    @Getter(AccessLevel.PRIVATE)
+    @Setter(AccessLevel.PRIVATE)
+    private Result<ParseResultErrCode> lastStmtFailure;
+    
+    
+    public Parser(TokenSource lexedTokens)
     {
         this.lexedTokens        = lexedTokens;
         this.ast                = new ArrayList<>();
         this.currentTokenIndex  = 0;
-        this.currentToken       = this.lexedTokens.get(0);
         this.stmtParser         = new StmtSubparser(this);
+        this.out                = System.out;
+        this.err                = System.err;
+    }
+    
+    public Parser(ArrayList<Token> lexedTokens)
+    {
+        this(TokenBuffer.fromTokens(lexedTokens));
+    }
+    
+    /**
+     * Resets the parser so that it can parse another token source, the same
+     *  as a new parser would. The AST list is cleared rather than replaced,
+     *  so it stays at the capacity that the largest file so far needed.
+     *  <br/><br/>
+     * 
+     * <b>Remarks:</b><br/>&#9;
+     *      The AST returned by the last parse is the list that's cleared, so
+     *  it must not be used after the reset.
+     * 
+     * @param lexedTokens - the tokens to parse next
+     */
+    public void reset(TokenSource lexedTokens)
+    {
+        this.lexedTokens(lexedTokens);
+        this.ast().clear();
+        this.currentTokenIndex(0);
+        this.isMultilineStmt(false);
+        this.parserAlreadyRan(false);
+        this.lastStmtFailure(null);
+    }
+    
+    /**
+     * Resets the parser without giving it another token source, so that an
+     *  idle parser (e.g. one that's pooled) doesn't keep the last parse's
+     *  tokens, AST and output streams alive. The AST list keeps its capacity,
+     *  the same as with Parser.reset(TokenSource).<br/><br/>
+     * 
+     * <b>Remarks:</b><br/>&#9;
+     *      The parser must be reset with a token source before it parses
+     *  again.
+     */
+    public void reset()
+    {
+        this.reset(null);
+        this.out(System.out);
+        this.err(System.err);
     }
     
     public String getCurrentTokenText()
     {
-        return this.currentToken().text();
+        return this.currentTokenText();
+    }
+    
+    /**
+     * Returns the current token that the parser is processing.
+     * 
+     * This creates a new Token object, so it's only for error reporting and
+     *  debug printing. Parsing itself reads the current token through
+     *  currentTokenKind, currentTokenText, currentLineNum and
+     *  currentColumnNum, which don't allocate.
+     */
+    public Token currentToken()
+    {
+        return this.lexedTokens().get(this.currentTokenIndex());
     }
     
     /**
@@ -107,28 +226,25 @@ public class Parser
      * If the token specified is before the first token or after the last token,
      *  then a SOF or EOF token is returned, respectively.
      * 
+     * This creates a new Token object, so it's only for error reporting and
+     *  debug printing. Parsing itself peeks through peekKind, peekText,
+     *  peekLineNum and peekColumnNum, which don't allocate.
+     * 
      * @return The token, BLUC_SOF if curTokenIndex + offset is less than
      *  0, or BLUC_EOF if curTokenIndex + offset is greater than or equal
      *  to lexedTokens.size().
      */
     public Token peek(int offset)
     {
-        var lexedTokens = this.lexedTokens();
-        
-        // The index of the last element in lexedTokens.
-        var lexedTokensLastIndex = lexedTokens.size() - 1;
-        var peekedTokenIndex = this.currentTokenIndex() + offset;
-        
-        if (peekedTokenIndex < 0)
-        {
-            peekedTokenIndex = 0;
-        }
-        else if (peekedTokenIndex >= lexedTokensLastIndex)
-        {
-            peekedTokenIndex = lexedTokensLastIndex;
-        }
-        
-        return lexedTokens.get(peekedTokenIndex);
+        return this.lexedTokens().get(this.peekIndex(offset));
+    }
+    
+    /**
+     * Returns the index of the token that peek(offset) would return.
+     */
+    private int peekIndex(int offset)
+    {
+        return this.wrapTokenIndex(this.currentTokenIndex() + offset);
     }
     
     /**
@@ -136,7 +252,7 @@ public class Parser
      */
     public boolean nextTokenMatches(String textToMatch)
     {
-        return this.nextTokenMatches(new String[]{textToMatch});
+        return this.peekMatches(1, textToMatch);
     }
     
     /**
@@ -152,7 +268,7 @@ public class Parser
      */
     public boolean peekMatches(int offset, String textToMatch)
     {
-        return this.peekMatches(offset, new String[]{textToMatch});
+        return this.tokenAtMatches(this.peekIndex(offset), textToMatch);
     }
     
     /**
@@ -160,8 +276,7 @@ public class Parser
      */
     public boolean peekMatches(int offset, String[] textsToMatch)
     {
-        var tokenToCheck = this.peek(offset);
-        return tokenToCheck.matchesAny(textsToMatch);
+        return this.tokenAtMatchesAny(this.peekIndex(offset), textsToMatch);
     }
     
     /**
@@ -169,7 +284,7 @@ public class Parser
      */
     public boolean currentTokenMatches(String[] textsToMatch)
     {
-        return this.currentToken().matchesAny(textsToMatch);
+        return this.tokenAtMatchesAny(this.currentTokenIndex(), textsToMatch);
     }
     
     /**
@@ -177,7 +292,128 @@ public class Parser
      */
     public boolean currentTokenMatches(String textToMatch)
     {
-        return this.currentToken().matches(textToMatch);
+        return this.tokenAtMatches(this.currentTokenIndex(), textToMatch);
+    }
+    
+    /**
+     * Returns the TokenKind of the current token.
+     */
+    public int currentTokenKind()
+    {
+        return this.lexedTokens().kind(this.currentTokenIndex());
+    }
+    
+    /**
+     * Returns the TokenKind of peek(offset).
+     */
+    public int peekKind(int offset)
+    {
+        return this.lexedTokens().kind(this.peekIndex(offset));
+    }
+    
+    /**
+     * Returns true if the current token is of the specified TokenKind.
+     */
+    public boolean currentTokenIs(int kind)
+    {
+        return this.currentTokenKind() == kind;
+    }
+    
+    /**
+     * Returns true if the current token's kind is in the specified set of
+     *  kinds.
+     * 
+     * @see TokenKind.mask
+     */
+    public boolean currentTokenIsAny(long kindMask)
+    {
+        return TokenKind.isIn(this.currentTokenKind(), kindMask);
+    }
+    
+    /**
+     * Returns true if peek(1) is of the specified TokenKind.
+     */
+    public boolean nextTokenIs(int kind)
+    {
+        return this.peekIs(1, kind);
+    }
+    
+    /**
+     * Returns true if the kind of peek(1) is in the specified set of kinds.
+     * 
+     * @see TokenKind.mask
+     */
+    public boolean nextTokenIsAny(long kindMask)
+    {
+        return this.peekIsAny(1, kindMask);
+    }
+    
+    /**
+     * Returns the text of peek(offset).
+     */
+    public String peekText(int offset)
+    {
+        return this.lexedTokens().text(this.peekIndex(offset));
+    }
+    
+    /**
+     * Returns the line number of peek(offset).
+     */
+    public int peekLineNum(int offset)
+    {
+        return this.lexedTokens().lineNum(this.peekIndex(offset));
+    }
+    
+    /**
+     * Returns the column number of peek(offset).
+     */
+    public int peekColumnNum(int offset)
+    {
+        return this.lexedTokens().columnNum(this.peekIndex(offset));
+    }
+    
+    /**
+     * Returns true if peek(offset) is of the specified TokenKind.
+     */
+    public boolean peekIs(int offset, int kind)
+    {
+        return this.peekKind(offset) == kind;
+    }
+    
+    /**
+     * Returns true if the kind of peek(offset) is in the specified set of
+     *  kinds.
+     * 
+     * @see TokenKind.mask
+     */
+    public boolean peekIsAny(int offset, long kindMask)
+    {
+        return TokenKind.isIn(this.peekKind(offset), kindMask);
+    }
+    
+    /**
+     * Returns true if the text of the token at index .equals textToMatch.
+     */
+    private boolean tokenAtMatches(int index, String textToMatch)
+    {
+        return this.lexedTokens().textEquals(index, textToMatch);
+    }
+    
+    /**
+     * Returns true if the text of the token at index .equals any string in
+     *  textsToMatch.
+     */
+    private boolean tokenAtMatchesAny(int index, String[] textsToMatch)
+    {
+        for (var textToMatch : textsToMatch)
+        {
+            if (this.tokenAtMatches(index, textToMatch))
+            {
+                return true;
+            }
+        }
+        
+        return false;
     }
     
     /**
@@ -185,7 +421,7 @@ public class Parser
      */
     public int currentLineNum()
     {
-        return this.currentToken().lineNum();
+        return this.lexedTokens().lineNum(this.currentTokenIndex());
     }
     
     /**
@@ -193,7 +429,7 @@ public class Parser
      */
     public int currentColumnNum()
     {
-        return this.currentToken().columnNum();
+        return this.lexedTokens().columnNum(this.currentTokenIndex());
     }
     
     /**
@@ -201,7 +437,7 @@ public class Parser
      */
     public String currentTokenText()
     {
-        return this.currentToken().text();
+        return this.lexedTokens().text(this.currentTokenIndex());
     }
     
     /**
@@ -210,15 +446,14 @@ public class Parser
      */
     public void setCurrentToken(int index)
     {
-        var lexedTokens = this.lexedTokens();
-        var startLineNum = this.currentToken().lineNum();
+        var startLineNum = this.currentLineNum();
         
         index = this.wrapTokenIndex(index);
         
         this.currentTokenIndex(index);
-        this.currentToken = lexedTokens.get(index);
+        this.lexedTokens().discardBefore(index - MAX_LOOKBEHIND);
         
-        if (this.currentToken.lineNum() != startLineNum)
+        if (this.currentLineNum() != startLineNum)
         {
             // Reset our multi-line statement flag as we're on a
             //  different line now
@@ -227,38 +462,42 @@ public class Parser
     }
     
     /**
-     * Clamps the index so that it's not less than 0 or greater than
-     *  lexedTokens.size() - 1.
+     * Clamps the index so that it's not less than 0 or greater than the index
+     *  of the last token.
      */
     private int wrapTokenIndex(int index)
     {
-        var lexedTokens = this.lexedTokens();
-        var endIndex = lexedTokens.size() - 1;
-        
-        if (index < 0)
-        {
-            index = 0;
-        }
-        else if (index > endIndex)
-        {
-            index = endIndex;
-        }
-        
-        return index;
+        return this.lexedTokens().clampIndex(index);
     }
     
     /**
      * Returns the token at lexedTokens.get(index).
+     * 
+     * This creates a new Token object, so it's only for error reporting and
+     *  debug printing. Use getTokenKindAt or getTokenTextAt to read a token
+     *  without allocating.
      */
     public Token getTokenAt(int index)
     {
-        var lexedTokens = this.lexedTokens();
-        
-        index = this.wrapTokenIndex(index);
-        
-        var token = lexedTokens.get(index);
-        
-        return token;
+        return this.lexedTokens().get(this.wrapTokenIndex(index));
+    }
+    
+    /**
+     * Returns the TokenKind of the token at index, clamped the same way as
+     *  getTokenAt.
+     */
+    public int getTokenKindAt(int index)
+    {
+        return this.lexedTokens().kind(this.wrapTokenIndex(index));
+    }
+    
+    /**
+     * Returns the text of the token at index, clamped the same way as
+     *  getTokenAt.
+     */
+    public String getTokenTextAt(int index)
+    {
+        return this.lexedTokens().text(this.wrapTokenIndex(index));
     }
     
     /**
@@ -282,22 +521,62 @@ public class Parser
      */
     public Result<NextTokenErrCode> nextToken(int tokensToAdvance)
     {
-        var result
-            = new Result<NextTokenErrCode>();
+        if (!this.tryAdvance(tokensToAdvance))
+        {
+            return Result.failure(
+                this.currentToken(),
+                NextTokenErrCode.AT_EOF);
+        }
         
+        return Result.success();
+    }
+    
+    /**
+     * Advances the parser to the next token, unless the next token is the
+     *  end of file token.<br/><br/>
+     * 
+     * <b>Remarks:</b><br/>&#9;
+     *      Unlike nextToken, this doesn't create a Result when it fails, so
+     *  advancing never allocates anything. Prefer it on hot paths, where the
+     *  only possible error (reaching the end of the file) can be checked with
+     *  the returned flag.
+     * 
+     * @return "true" if the parser advanced, "false" if it's already on the
+     *  last token before the end of file token.
+     */
+    public boolean tryAdvance()
+    {
+        var newTokenIndex = this.currentTokenIndex + 1;
+        
+        // The new token is the last (EOF) token, or past it.
+        if (!this.lexedTokens().hasTokenAfter(newTokenIndex))
+        {
+            return false;
+        }
+        
+        this.setCurrentToken(newTokenIndex);
+        
+        return true;
+    }
+    
+    /**
+     * Advances the parser `tokensToAdvance` tokens ahead, stopping before the
+     *  end of file token (@see Parser.tryAdvance).
+     * 
+     * @return "true" if the parser advanced all of the tokens, "false" if it
+     *  stopped early.
+     */
+    public boolean tryAdvance(int tokensToAdvance)
+    {
         for (int i = 0; i < tokensToAdvance; i++)
         {
-            var advanceResult
-                = this.advanceParser();
-
-            if (advanceResult.hasFailed())
+            if (!this.tryAdvance())
             {
-                result = Parser.castToNextTokenError(advanceResult);
-                break;
+                return false;
             }
         }
         
-        return result;
+        return true;
     }
     
     /**
@@ -312,24 +591,49 @@ public class Parser
      */
     public Result<AdvanceParserErrCode> advanceParser()
     {
-        var result = new Result<AdvanceParserErrCode>();
-        
-        var newTokenIndex = this.currentTokenIndex + 1;
+        if (!this.tryAdvance())
+        {
+            return Result.failure(
+                this.currentToken(),
+                AdvanceParserErrCode.AT_EOF);
+        }
         
-        var eofTokenIndex = this.lexedTokens.size() - 1;
-        if (newTokenIndex >= eofTokenIndex)
+        return Result.success();
+    }
+    
+    /**
+     * Skips from the current token, which must be an opening bracket, to the
+     *  bracket that closes it, without visiting any of the tokens in between.
+     *  The brackets were already matched by the lexer, so this takes the same
+     *  time however many tokens are skipped.
+     * 
+     * @return the result of skipping, and an error code if the current token
+     *  isn't an opening bracket, or it's never closed.
+     */
+    public Result<SkipBracketsErrCode> skipToMatchingBracket()
+    {
+        if (!this.currentTokenIsAny(TokenKind.OPENING_BRACKETS))
         {
-            result.error(this.currentToken(),
-                        AdvanceParserErrCode.AT_EOF);
+            return Result.failure(
+                this.currentToken(),
+                SkipBracketsErrCode.NOT_ON_AN_OPENING_BRACKET);
         }
-        else
+        
+        var matchIndex
+            = this.lexedTokens().matchingBracket(this.currentTokenIndex());
+        
+        if (matchIndex == TokenBuffer.NO_MATCH)
         {
-            this.setCurrentToken(newTokenIndex);
+            return Result.failure(
+                this.currentToken(),
+                SkipBracketsErrCode.UNMATCHED_BRACKET);
         }
         
-        return result;
+        this.setCurrentToken(matchIndex);
+        
+        return Result.success();
     }
-    
+
     /**
      * Returns "true" if the next token is the end of file token,
      * "false" otherwise.
@@ -348,7 +652,7 @@ public class Parser
      */    
     public boolean atEOF(int offset)
     {
-        return this.peek(offset) == Token.BLUC_EOF;
+        return this.peekIs(offset, TokenKind.EOF);
     }
     
     /**
@@ -362,10 +666,10 @@ public class Parser
             return true;
         }
         
-        var peekedToken         = this.peek(1);
+        var peekedLineNumber    = this.lexedTokens().lineNum(this.peekIndex(1));
         var currentLineNumber   = this.currentLineNum();
         
-        return peekedToken.lineNum() != currentLineNumber;
+        return peekedLineNumber != currentLineNumber;
     }
     
     /**
@@ -379,24 +683,22 @@ public class Parser
             return true;
         }
         
-        var peekedToken         = this.peek(-1);
+        var peekedLineNumber    = this.lexedTokens().lineNum(this.peekIndex(-1));
         var currentLineNumber   = this.currentLineNum();
         
-        return peekedToken.lineNum() != currentLineNumber;
+        return peekedLineNumber != currentLineNumber;
     }
     
     /**
      * Takes the error code of a Result<AdvanceParserErrCode> and converts it to
      *  a Result<NextTokenErrCode>.
      * 
-     * @return The converted Result.
+     * @return The converted Result. An error code that can't be converted
+     *  becomes FATAL_UNKNOWN_ERROR, with a diagnostic that names it.
      */
     public static Result<NextTokenErrCode> castToNextTokenError(
         Result<AdvanceParserErrCode> advanceResult)
     {
-        var result
-                = new Result<NextTokenErrCode>();
-
         if (advanceResult.hasFailed())
         {
             var advanceErrCode 
@@ -407,11 +709,25 @@ public class Parser
                 = NextTokenErrCode
                 .castToNextTokenError(advanceErrCode);
 
-            result.error(advanceResult.errToken(),
+            if (asNextTokenErrCode == NextTokenErrCode.FATAL_UNKNOWN_ERROR)
+            {
+                // This should never happen, so embed the function name in
+                //  the error message.
+                var errorMessage = LogFormatter.formatCompilerError(
+                    Utils.getCurrentMethodName(),
+                    "Unknown AdvancedParserError type `"
+                    + advanceErrCode.name() + "`");
+
+                return Result.failure(
+                    asNextTokenErrCode,
+                    new Diagnostic(advanceResult.errToken(), errorMessage));
+            }
+
+            return Result.failure(advanceResult.errToken(),
                         asNextTokenErrCode);
         }
 
-        return result;
+        return Result.success();
     }
     
     /**
@@ -425,58 +741,249 @@ public class Parser
      */
     public ParseResult parse()
     {
-        var result = new ParseResult();
-        
         if (this.parserAlreadyRan())
         {
-            result.errCode(ParseResultErrCode.PARSER_ALREADY_RAN);
-            
-            return result;
+            return ParseResult.failure(ParseResultErrCode.PARSER_ALREADY_RAN);
         }
         
         // Advance off the "start of file" token
-        this.nextToken();
+        this.tryAdvance();
         
         while (!this.atEOF())
         {
-            var stmtResult = this.stmtParser().tryParseStmt();
+            var stmtResult = this.parseStmt();
             
-            if (stmtResult.hasSucceeded())
-            {
-                this.ast.addAll(stmtResult.data());
-            }
-            else
+            if (stmtResult.hasFailed())
             {
-                // Log the error, but keep parsing to try and catch any
-                //  additional errors. We don't currently expect this to fail
-                //  during normal operation, so log it as a fatal error.
-                
-                var fatalMessage
-                    = LogFormatter.formatCompilerError(
-                        Utils.getCurrentMethodName(),
-                        stmtResult.errCode().formattedMessage());
-                
-                System.err.println(fatalMessage);
-                
-                result.error(
-                    this.currentToken(), 
-                    ParseResultErrCode.FATAL_UNKNOWN_ERROR);
+                this.lastStmtFailure(stmtResult);
             }
             
-            this.nextToken();
+            this.tryAdvance();
         }
         
+        this.checkForLexError();
+        
         var debugMessage
             = LogFormatter.formatDebug(
                 Utils.getCurrentMethodName(),
                 "ast ==\n" + this.ast);
         
-        System.out.println(debugMessage);
+        this.out().println(debugMessage);
+        
+        this.parserAlreadyRan(true);
+        
+        return ParseResult.of(this.lastStmtFailure(), this.ast);
+    }
+    
+    /**
+     * Parses the statements between the braces of a block, e.g. a function
+     *  body that was skipped over while its file was parsed. This counts as
+     *  this parser's parse, so the parser must be new (or reset).
+     * 
+     * @param openBraceIndex - the index of the block's "{"
+     * @param closeBraceIndex - the index of the block's "}"
+     * @return the result of parsing. If the parse succeeded, the block's
+     *  statements are returned in the result.
+     */
+    public ParseResult parseBody(int openBraceIndex, int closeBraceIndex)
+    {
+        if (this.parserAlreadyRan())
+        {
+            return ParseResult.failure(ParseResultErrCode.PARSER_ALREADY_RAN);
+        }
+        
+        // The index is set directly, since setCurrentToken would read the
+        //  current token first, which a streaming source may have freed.
+        this.currentTokenIndex(openBraceIndex + 1);
+        
+        while (this.currentTokenIndex() < closeBraceIndex)
+        {
+            var stmtResult = this.parseStmt();
+            
+            if (stmtResult.hasFailed())
+            {
+                this.lastStmtFailure(stmtResult);
+            }
+            
+            this.tryAdvance();
+        }
+        
+        this.parserAlreadyRan(true);
+        
+        return ParseResult.of(this.lastStmtFailure(), this.ast);
+    }
+    
+    /**
+     * Makes the current parse fail if the token source ran into a lexer
+     *  error while it was being read (@see TokenSource.errCode). The source
+     *  stops at the error, so the parse has already reached its end.
+     */
+    private void checkForLexError()
+    {
+        var lexErrCode = this.lexedTokens().errCode();
+        
+        if (lexErrCode == null)
+        {
+            return;
+        }
+        
+        var errorMessage = lexErrCode.errorMessage();
+        
+        this.err().println(errorMessage);
+        this.lastStmtFailure(
+            Result.failure(
+                ParseResultErrCode.LEX_FAILED,
+                new Diagnostic(null, errorMessage)));
+    }
+    
+    /**
+     * Makes the current parse fail if the body of a function, which was
+     *  parsed along with the function, failed. The body's parser has already
+     *  logged each of its errors, so they aren't logged again.<br/><br/>
+     * 
+     * <b>Remarks:</b><br/>&#9;
+     *      The function itself still succeeds, the same as when its body is
+     *  deferred, since most body errors are placeholders until more kinds
+     *  of statements can be parsed.
+     * 
+     * @param bodyResult - the result of parsing the body
+     */
+    void recordBodyFailure(ParseResult bodyResult)
+    {
+        if (bodyResult.hasFailed())
+        {
+            this.lastStmtFailure(bodyResult);
+        }
+    }
+    
+    /**
+     * Parses the statements of the block whose "{" is the current token,
+     *  reading each token as it's reached, and leaves the parser on the
+     *  block's "}". This counts as this parser's parse, so the parser must be
+     *  new (or reset).<br/><br/>
+     * 
+     * <b>Remarks:</b><br/>&#9;
+     *      Unlike parseBody, this doesn't need to know where the block ends
+     *  before it starts, so a source that frees tokens (@see
+     *  StreamingTokenSource) never has to hold the whole block in memory.
+     *  If the input runs out first, the parser is left on the last token
+     *  before the end of file (@see Parser.isOnBlockEnd).
+     * 
+     * @return the result of parsing. If the parse succeeded, the block's
+     *  statements are returned in the result.
+     */
+    public ParseResult parseBlock()
+    {
+        if (this.parserAlreadyRan())
+        {
+            return ParseResult.failure(ParseResultErrCode.PARSER_ALREADY_RAN);
+        }
+        
+        var openBraceIndex = this.currentTokenIndex();
         
+        while (this.tryAdvance() && !this.isOnBlockEnd(openBraceIndex))
+        {
+            var stmtResult = this.parseStmt();
+            
+            if (stmtResult.hasFailed())
+            {
+                this.lastStmtFailure(stmtResult);
+            }
+        }
+        
+        this.parserAlreadyRan(true);
+        
+        return ParseResult.of(this.lastStmtFailure(), this.ast);
+    }
+    
+    /**
+     * Returns true if the current token is the "}" that closes the block
+     *  whose "{" is at openBraceIndex. A closing bracket's match is already
+     *  known once it has been lexed, so this doesn't read ahead.
+     */
+    public boolean isOnBlockEnd(int openBraceIndex)
+    {
+        return this.currentTokenIs(TokenKind.RIGHT_BRACE)
+            && this.lexedTokens().matchingBracket(this.currentTokenIndex())
+                == openBraceIndex;
+    }
+    
+    /**
+     * Moves the parser straight to index without reading any tokens, e.g.
+     *  to the end of a block that another parser read (@see
+     *  Parser.parseBlock), whose earlier tokens may already have been freed.
+     */
+    void resumeAt(int index)
+    {
+        this.currentTokenIndex(index);
+        this.isMultilineStmt(false);
+        this.lexedTokens().discardBefore(index - MAX_LOOKBEHIND);
+    }
+    
+    /**
+     * Returns true if function bodies are skipped over and parsed later,
+     *  i.e. if doParseBodiesLazily is set and the token source keeps the
+     *  bodies' tokens until then.
+     */
+    public boolean isDeferringBodies()
+    {
+        return this.doParseBodiesLazily()
+            && this.lexedTokens().keepsAllTokens();
+    }
+    
+    /**
+     * Creates a new parser of the same tokens, with the same settings, for
+     *  parsing a block of them, either later (@see Parser.parseBody) or
+     *  straight away (@see Parser.parseBlock).
+     * 
+     * @param openBraceIndex - the index of the block's "{"
+     */
+    public Parser createBodyParser(int openBraceIndex)
+    {
+        var bodyParser = new Parser(this.lexedTokens());
         
-        result.data(this.ast);
+        bodyParser.out(this.out());
+        bodyParser.err(this.err());
+        bodyParser.doParseBodiesLazily(this.doParseBodiesLazily());
+        bodyParser.currentTokenIndex(openBraceIndex);
         
-        return result;
+        return bodyParser;
+    }
+    
+    /**
+     * Parses the statement that starts at the current token, adding it to
+     *  the AST, or logging its error.
+     * 
+     * @return the shared success result, or a fatal error on the token that
+     *  the statement failed on.
+     */
+    private Result<ParseResultErrCode> parseStmt()
+    {
+        var stmtResult = this.stmtParser().tryParseStmt();
+        
+        if (stmtResult.hasSucceeded())
+        {
+            this.ast.addAll(stmtResult.data());
+            
+            return Result.success();
+        }
+        else
+        {
+            // Log the error, but keep parsing to try and catch any
+            //  additional errors. We don't currently expect this to fail
+            //  during normal operation, so log it as a fatal error.
+            
+            var fatalMessage
+                = LogFormatter.formatCompilerError(
+                    Utils.getCurrentMethodName(),
+                    stmtResult.errCode().formattedMessage());
+            
+            this.err().println(fatalMessage);
+            
+            return Result.failure(
+                ParseResultErrCode.FATAL_UNKNOWN_ERROR,
+                new Diagnostic(this.currentToken(), fatalMessage));
+        }
     }
     
     /**
@@ -486,17 +993,66 @@ public class Parser
     public static class ParseResult
             extends ResultType<ParseResultErrCode, ArrayList<Stmt>>
     {
-
+        private ParseResult(
+            Token errToken,
+            ParseResultErrCode errCode,
+            ArrayList<Stmt> data)
+        {
+            super(errToken, errCode, data);
+        }
+        
+        private ParseResult(
+            Token errToken,
+            ParseResultErrCode errCode,
+            Diagnostic diagnostic,
+            ArrayList<Stmt> data)
+        {
+            super(errToken, errCode, diagnostic, data);
+        }
+        
+        public static ParseResult success(ArrayList<Stmt> ast)
+        {
+            return new ParseResult(null, null, ast);
+        }
+        
+        public static ParseResult failure(ParseResultErrCode errCode)
+        {
+            return new ParseResult(null, errCode, null);
+        }
+        
+        /**
+         * Returns the result of a parse that produced the specified AST,
+         *  which failed if stmtFailure is a failed statement's result.
+         * 
+         * @param stmtFailure - the result of the last statement that failed,
+         *  or null if every statement succeeded
+         * @param ast - the statements that were parsed
+         */
+        public static ParseResult of(
+            Result<ParseResultErrCode> stmtFailure,
+            ArrayList<Stmt> ast)
+        {
+            if (stmtFailure == null)
+            {
+                return ParseResult.success(ast);
+            }
+            
+            return new ParseResult(
+                stmtFailure.errToken(),
+                stmtFailure.errCode(),
+                stmtFailure.diagnostic(),
+                ast);
+        }
     }
     
     public enum ParseResultErrCode
     {
         /**
          * Indicates that the .parse function was already called and has
-         *   completed.
+         *   completed, and the parser hasn't been reset since.
          * 
-         * Parser objects are single-use so that we don't have to deep copy the
-         *   AST.
+         * A parser can only parse once until it's reset, so that we don't have
+         *   to deep copy the AST.
          */
         PARSER_ALREADY_RAN,
         
@@ -505,6 +1061,13 @@ public class Parser
          *  unknown ResultType failure code.
          */
         FATAL_UNKNOWN_ERROR,
+        
+        /**
+         * Indicates that the token source couldn't lex all of its input,
+         *  e.g. a source that lexes as it's parsed found an unbalanced
+         *  bracket (@see TokenSource.errCode).
+         */
+        LEX_FAILED,
     }
     
     public enum NextTokenErrCode
@@ -527,37 +1090,26 @@ public class Parser
          */
         FATAL_UNKNOWN_ERROR;
         
-        @Getter
-        @Setter
-        private String errorMessage;
-        
+        /**
+         * Returns the NextTokenErrCode that matches error, or
+         *  FATAL_UNKNOWN_ERROR if there isn't one.<br/><br/>
+         * 
+         * <b>Remarks:</b><br/>&#9;
+         *      The constants are shared by every parser, on every thread, so
+         *  nothing about the particular error is stored in them. Use
+         *  Parser.castToNextTokenError to also get a diagnostic for it.
+         */
         public static NextTokenErrCode castToNextTokenError(
             AdvanceParserErrCode error)
         {
-            NextTokenErrCode castedError;
-            
             switch (error)
             {
                 case AT_EOF:
-                    castedError =  NextTokenErrCode.AT_EOF;
-                    break;
+                    return NextTokenErrCode.AT_EOF;
                     
                 default:
-                    // This should never happen, so embed the function name in
-                    //  the error message.
-                    var errorMessage = LogFormatter.formatCompilerError(
-                        Utils.getCurrentMethodName(),
-                                
-                        "Unknown AdvancedParserError type `" + error.name()
-                        + "`");
-                    
-                    castedError = NextTokenErrCode.FATAL_UNKNOWN_ERROR;
-                    castedError.errorMessage(errorMessage);
-                    
-                    break;
+                    return NextTokenErrCode.FATAL_UNKNOWN_ERROR;
             }
-            
-            return castedError;
         }
     }
     
@@ -565,4 +1117,18 @@ public class Parser
     {
         AT_EOF;
     }
+    
+    public enum SkipBracketsErrCode
+    {
+        /**
+         * Indicates that the current token isn't "(", "{" or "[".
+         */
+        NOT_ON_AN_OPENING_BRACKET,
+        
+        /**
+         * Indicates that the current token is an opening bracket, but no
+         *  closing bracket closes it.
+         */
+        UNMATCHED_BRACKET;
+    }
 }
@@ -19,6 +19,9 @@
 package bluc_java.parser;
 
 import bluc_java.ResultType;
+import bluc_java.TokenBuffer;
+import bluc_java.TokenKind;
+import bluc_java.parser.statements.FnStmt;
 import bluc_java.parser.statements.Stmt;
 import java.util.ArrayList;
 import lombok.AccessLevel;
@@ -38,25 +41,183 @@ public class StmtSubparser
     private Parser parser;
     
     /**
-     * Tries to parse the current statement that the parser is on.
+     * Tries to parse the current statement that the parser is on. If it
+     *  succeeds, the parser is left on the statement's last token.
      */
     public StmtParseResult tryParseStmt()
     {
-        var result = new StmtParseResult();
+        if (this.parser().currentTokenIs(TokenKind.FN))
+        {
+            return this.tryParseFn();
+        }
         
-        result.errCode(StmtResultErrCode.FUNCTION_NOT_IMPLEMENTED_YET);
+        return StmtParseResult.failure(
+            StmtResultErrCode.FUNCTION_NOT_IMPLEMENTED_YET);
+    }
+    
+    /**
+     * Tries to parse a function declaration, i.e.
+     *  `fn name [ "(" [ param { "," param } ] ")" ] "{" body "}"`. The
+     *  parameter list is optional, so `fn test` followed by a body on the
+     *  next line (as in test.bluc) declares a function without parameters.
+     *  If the parser is deferring bodies (@see Parser.isDeferringBodies),
+     *  the body is skipped over in one step, otherwise it's parsed here.
+     */
+    private StmtParseResult tryParseFn()
+    {
+        var parser = this.parser();
+        
+        // The parser can't advance past the last token before EOF, so each
+        //  advance is checked, otherwise a truncated declaration would be
+        //  read from the same token forever.
+        if (!parser.tryAdvance()
+            || !parser.currentTokenIs(TokenKind.IDENTIFIER))
+        {
+            return StmtParseResult.failure(StmtResultErrCode.EXPECTED_FN_NAME);
+        }
+        
+        var name = parser.currentTokenText();
+        var params = new ArrayList<String>();
+        
+        if (!parser.tryAdvance())
+        {
+            return StmtParseResult.failure(StmtResultErrCode.EXPECTED_FN_BODY);
+        }
+        
+        if (parser.currentTokenIs(TokenKind.LEFT_PAREN)
+            && (!this.tryParseFnParams(params) || !parser.tryAdvance()))
+        {
+            return StmtParseResult.failure(
+                StmtResultErrCode.EXPECTED_FN_PARAMS);
+        }
         
-        return result;
+        if (!parser.currentTokenIs(TokenKind.LEFT_BRACE))
+        {
+            return StmtParseResult.failure(StmtResultErrCode.EXPECTED_FN_BODY);
+        }
+        
+        var bodyStart = parser.currentTokenIndex();
+        FnStmt fnStmt;
+        
+        if (parser.isDeferringBodies())
+        {
+            var bodyEnd = parser.lexedTokens().matchingBracket(bodyStart);
+            
+            if (bodyEnd == TokenBuffer.NO_MATCH)
+            {
+                return StmtParseResult.failure(
+                    StmtResultErrCode.EXPECTED_FN_BODY);
+            }
+            
+            fnStmt
+                = new FnStmt(
+                    name,
+                    params,
+                    bodyStart,
+                    bodyEnd,
+                    parser.createBodyParser(bodyStart));
+            
+            parser.skipToMatchingBracket();
+        }
+        else
+        {
+            // The body is parsed as its tokens are read, rather than after
+            //  finding its "}", so a streaming source can free the body's
+            //  tokens as it goes. This parser then carries on from the "}"
+            //  without reading the tokens that were freed.
+            var bodyParser = parser.createBodyParser(bodyStart);
+            var body = bodyParser.parseBlock();
+            var bodyEnd = bodyParser.currentTokenIndex();
+            var isBodyClosed = bodyParser.isOnBlockEnd(bodyStart);
+            
+            parser.resumeAt(bodyEnd);
+            
+            if (!isBodyClosed)
+            {
+                return StmtParseResult.failure(
+                    StmtResultErrCode.EXPECTED_FN_BODY);
+            }
+            
+            parser.recordBodyFailure(body);
+            fnStmt = new FnStmt(name, params, bodyStart, bodyEnd, body);
+        }
+        
+        var stmts = new ArrayList<Stmt>();
+        stmts.add(fnStmt);
+        
+        return StmtParseResult.success(stmts);
     }
     
+    /**
+     * Tries to parse a function's parameter list, starting on its "(", into
+     *  `params`. The names must be separated by single commas, so `(a b)`,
+     *  `(,)` and `(a,)` are all rejected. If it succeeds, the parser is left
+     *  on the list's ")".
+     */
+    private boolean tryParseFnParams(ArrayList<String> params)
+    {
+        var parser = this.parser();
+        
+        if (!parser.tryAdvance())
+        {
+            return false;
+        }
+        
+        if (parser.currentTokenIs(TokenKind.RIGHT_PAREN))
+        {
+            return true;
+        }
+        
+        while (true)
+        {
+            if (!parser.currentTokenIs(TokenKind.IDENTIFIER))
+            {
+                return false;
+            }
+            
+            params.add(parser.currentTokenText());
+            
+            if (!parser.tryAdvance())
+            {
+                return false;
+            }
+            
+            if (parser.currentTokenIs(TokenKind.RIGHT_PAREN))
+            {
+                return true;
+            }
+            
+            if (!parser.currentTokenIs(TokenKind.COMMA)
+                || !parser.tryAdvance())
+            {
+                return false;
+            }
+        }
+    }
+
     /**
      * Class for restoring the result of the tryParseStmt function. Shorthand
      *  for ResultType<StmtResultErrCode, ArrayList<Stmt>>.
      */
-    public class StmtParseResult
+    public static class StmtParseResult
             extends ResultType<StmtResultErrCode, ArrayList<Stmt>>
     {
+        private StmtParseResult(
+            StmtResultErrCode errCode,
+            ArrayList<Stmt> data)
+        {
+            super(null, errCode, data);
+        }
         
+        public static StmtParseResult success(ArrayList<Stmt> stmts)
+        {
+            return new StmtParseResult(null, stmts);
+        }
+        
+        public static StmtParseResult failure(StmtResultErrCode errCode)
+        {
+            return new StmtParseResult(errCode, null);
+        }
     }
     
     /**
@@ -71,10 +232,33 @@ public class StmtSubparser
          *  "tryParseStmt" function is implemented.
          */
         FUNCTION_NOT_IMPLEMENTED_YET(
-            "Function `StmtParseResult.tryParseStmt` not yet implemented.");
+            "Function `StmtParseResult.tryParseStmt` not yet implemented."),
+        
+        /**
+         * A function's name is missing after "fn".
+         */
+        EXPECTED_FN_NAME(
+            "Expected the name of the function after `fn`."),
         
+        /**
+         * A function's parameter list is missing, or isn't a list of names
+         *  separated by commas.
+         */
+        EXPECTED_FN_PARAMS(
+            "Expected the function's parameters, e.g. `(a, b)`."),
+        
+        /**
+         * A function's body is missing, or its "{" is never closed.
+         */
+        EXPECTED_FN_BODY(
+            "Expected the function's body, e.g. `{ ... }`.");
+        
+        /**
+         * The message to report for the error. It's the same for every
+         *  error with this code, since the constants are shared by every
+         *  parser.
+         */
         @Getter
-        @Setter(AccessLevel.PRIVATE)
-        public String formattedMessage;
+        private final String formattedMessage;
     }
 }
@@ -18,6 +18,7 @@
  */
 package bluc_java.parser.expressions;
 
+import bluc_java.TokenKind;
 import bluc_java.parser.Parser;
 import bluc_java.parser.expressions.Expr.Binary;
 
@@ -46,7 +47,7 @@ public class EqualityParser extends ExprSubParser
         var parser = this.parser();
         Binary result = null;
         
-        if (parser.currentTokenMatches("=="))
+        if (parser.currentTokenIs(TokenKind.EQUAL_EQUAL))
         {
             
         }
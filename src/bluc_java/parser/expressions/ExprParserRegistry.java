@@ -17,22 +17,25 @@ package bluc_java.parser.expressions;
 
 import bluc_java.parser.Parser;
 import java.util.ArrayList;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Container for storing an instance of each expression sub-parser. Used
- *  for instantiating one of each type of sub-parser.
+ *  for instantiating one of each type of sub-parser.<br/><br/>
+ * 
+ * <b>Remarks:</b><br/>&#9;
+ *      The registry is shared by every parser, and sub-parsers register
+ *  themselves when they're constructed, which may happen on many threads at
+ *  once. The list is copied on every write, so that reading it (e.g. in
+ *  createSubParsers) never takes a lock or sees a half-added sub-parser.
  */
 public class ExprParserRegistry
 {
     /**
      * All registered sub-parsers.
      */
-    private static ArrayList<ExprSubParser> allSubParsers;
-    
-    static
-    {
-        ExprParserRegistry.allSubParsers = new ArrayList<>();
-    }
+    private static final CopyOnWriteArrayList<ExprSubParser> allSubParsers
+        = new CopyOnWriteArrayList<>();
     
     /**
      * Creates an ArrayList with new sub-parsers for all sub-parser types.
@@ -59,11 +62,8 @@ public class ExprParserRegistry
     public static void registerTypeIfNotRegisteredAlready(
         ExprSubParser subParser)
     {
-        var allSubParsers = ExprParserRegistry.allSubParsers;
-        
-        if (!allSubParsers.contains(subParser))
-        {
-            allSubParsers.add(subParser);
-        }
+        // Checking and adding in one step, so that two threads can't both
+        //  add the same sub-parser.
+        ExprParserRegistry.allSubParsers.addIfAbsent(subParser);
     }
 }
@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package bluc_java.parser.statements;
+
+import bluc_java.parser.Parser;
+import bluc_java.parser.Parser.ParseResult;
+import java.util.ArrayList;
+import lombok.Getter;
+
+/**
+ * A function declaration, i.e. `fn name(params) { body }`, or
+ *  `fn name { body }` for a function without parameters.<br/><br/>
+ * 
+ * <b>Remarks:</b><br/>&#9;
+ *      The body is kept as the range of tokens between its braces, and is
+ *  only parsed the first time it's asked for (@see FnStmt.body). The result
+ *  is then cached. Queries that only need the function's name and
+ *  parameters (e.g. an outline of the file) never pay for parsing its
+ *  body.<br/><br/>&#9;
+ *      The body is parsed from the token source that the function was parsed
+ *  from, so that source must not be reset or cleared while the body may
+ *  still be asked for. A source that frees tokens once the parser is past
+ *  them (e.g. a StreamingTokenSource) can't be parsed from later, so bodies
+ *  from it are always parsed along with the function.
+ */
+public class FnStmt extends Stmt
+{
+    /**
+     * The function's name. It's the token's interned text, so storing it
+     *  doesn't create a Token or copy the text.
+     */
+    @Getter
+    private final String name;
+    
+    /**
+     * The names of the function's parameters, in order.
+     */
+    @Getter
+    private final ArrayList<String> params;
+    
+    /**
+     * The index (in the token source) of the body's "{".
+     */
+    @Getter
+    private final int bodyStart;
+    
+    /**
+     * The index (in the token source) of the body's "}".
+     */
+    @Getter
+    private final int bodyEnd;
+    
+    /**
+     * The parser that the body is parsed with, or null once it has been
+     *  parsed.
+     */
+    private Parser bodyParser;
+    
+    /**
+     * The result of parsing the body, or null until it has been parsed.
+     */
+    private ParseResult body;
+    
+    /**
+     * @param name - the function's name
+     * @param params - the names of the function's parameters
+     * @param bodyStart - the index of the body's "{"
+     * @param bodyEnd - the index of the body's "}"
+     * @param bodyParser - a new parser of the same tokens, to parse the body
+     *  with (@see Parser.createBodyParser)
+     */
+    public FnStmt(
+        String name,
+        ArrayList<String> params,
+        int bodyStart,
+        int bodyEnd,
+        Parser bodyParser)
+    {
+        this.name = name;
+        this.params = params;
+        this.bodyStart = bodyStart;
+        this.bodyEnd = bodyEnd;
+        this.bodyParser = bodyParser;
+    }
+    
+    /**
+     * Creates a function whose body was already parsed along with it.
+     * 
+     * @param name - the function's name
+     * @param params - the names of the function's parameters
+     * @param bodyStart - the index of the body's "{"
+     * @param bodyEnd - the index of the body's "}"
+     * @param body - the result of parsing the body (@see Parser.parseBlock)
+     */
+    public FnStmt(
+        String name,
+        ArrayList<String> params,
+        int bodyStart,
+        int bodyEnd,
+        ParseResult body)
+    {
+        this.name = name;
+        this.params = params;
+        this.bodyStart = bodyStart;
+        this.bodyEnd = bodyEnd;
+        this.body = body;
+    }
+    
+    /**
+     * Returns the result of parsing the body, parsing it first if this is
+     *  the first time it's been asked for.
+     * 
+     * @return the result of parsing the body. If it succeeded, its data is
+     *  the body's statements.
+     */
+    public ParseResult body()
+    {
+        if (this.body == null)
+        {
+            this.body
+                = this.bodyParser.parseBody(this.bodyStart, this.bodyEnd);
+            
+            // The parser holds on to the tokens, and isn't needed again.
+            this.bodyParser = null;
+        }
+        
+        return this.body;
+    }
+    
+    /**
+     * Returns true if the body has been parsed.
+     */
+    public boolean isBodyParsed()
+    {
+        return this.body != null;
+    }
+    
+    /**
+     * Returns a description of the function. The body is only described if
+     *  it has already been parsed, so that printing the function doesn't
+     *  parse it.
+     */
+    @Override
+    public String toString()
+    {
+        var bodyText
+            = this.isBodyParsed()
+            ? String.valueOf(this.body.data())
+            : "<not parsed>";
+        
+        return "fn " + this.name + "(" + String.join(", ", this.params)
+            + ") " + bodyText;
+    }
+}
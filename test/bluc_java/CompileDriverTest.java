@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package bluc_java;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the compile driver class.
+ *
+ * @author john
+ */
+public class CompileDriverTest
+{
+
+    public CompileDriverTest()
+    {
+    }
+
+    /**
+     * Test that files are found in sorted order, and that a file that fails
+     *  to lex stops the files after it from being printed.
+     */
+    @Test
+    public void testCompile_stopsAtFirstFailedFile() throws IOException
+    {
+        System.out.println("compile - stops at first failed file");
+
+        var dir = Files.createTempDirectory("bluc_driver_test");
+        Files.writeString(dir.resolve("c.bluc"), "d\n");
+        Files.writeString(dir.resolve("a.bluc"), "c\n");
+        Files.writeString(dir.resolve("b.bluc"), "x = \"unterminated\n");
+        Files.writeString(dir.resolve("ignored.txt"), "\"\n");
+
+        var sourceFiles
+                = CompileDriver.findSourceFiles(
+                    Arrays.asList(dir.toString()), System.err);
+
+        assertEquals(
+            Arrays.asList(
+                dir.resolve("a.bluc"),
+                dir.resolve("b.bluc"),
+                dir.resolve("c.bluc")),
+            sourceFiles);
+
+        var outBytes = new ByteArrayOutputStream();
+        var pool = new ForkJoinPool(3);
+
+        var result
+                = new CompileDriver(pool)
+                .compile(sourceFiles, new PrintStream(outBytes), System.err);
+
+        pool.shutdown();
+
+        var output = outBytes.toString();
+
+        assertEquals(CompileDriver.CompileErrCode.LEX_FAILED, result.errCode());
+        assertTrue(output.indexOf("a.bluc") < output.indexOf("b.bluc"));
+        assertFalse(output.contains("c.bluc"));
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package bluc_java;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the incremental lexer class.
+ *
+ * @author john
+ */
+public class IncrementalLexerTest
+{
+
+    public IncrementalLexerTest()
+    {
+    }
+
+    /**
+     * Returns the text, line and column of each token, so that two token
+     *  buffers can be compared.
+     */
+    private static ArrayList<String> describeTokens(
+        TokenSource tokens,
+        int size)
+    {
+        var descriptions = new ArrayList<String>();
+
+        for (int i = 0; i < size; i++)
+        {
+            descriptions.add(tokens.text(i) + "@" + tokens.lineNum(i) + ":"
+                + tokens.columnNum(i));
+        }
+
+        return descriptions;
+    }
+
+    /**
+     * Test that an edit produces the same tokens as lexing the edited file
+     *  from scratch, including an edit that opens a string literal across
+     *  the following lines.
+     */
+    @Test
+    public void testEdit_matchesFullLex()
+    {
+        System.out.println("edit - matches full lex");
+
+        var lines
+                = new ArrayList<>(Arrays.asList(
+                    "a = 1", "b = a + 2", "c = \"x\"", "d = c", ""));
+        var lexer = new IncrementalLexer(lines);
+
+        var newLines = Arrays.asList("b = \"a", "q r");
+        lexer.edit(2, 1, newLines);
+
+        lines.subList(1, 2).clear();
+        lines.addAll(1, newLines);
+
+        var fullTokens = new Lexer().lexString(lines).data();
+        var expResult
+                = IncrementalLexerTest.describeTokens(
+                    fullTokens, fullTokens.size());
+        var result
+                = IncrementalLexerTest.describeTokens(
+                    lexer.tokens(), lexer.tokens().size());
+
+        assertEquals(expResult, result);
+    }
+
+    /**
+     * Test that an edit that leaves no token in progress at the end of the
+     *  edited lines only re-lexes those lines.
+     */
+    @Test
+    public void testEdit_stopsWhenStateConverges()
+    {
+        System.out.println("edit - stops when state converges");
+
+        var lines = new ArrayList<String>();
+
+        for (int i = 0; i < 1000; i++)
+        {
+            lines.add("x" + i + " = (y + " + i + ") # comment");
+        }
+
+        var lexer = new IncrementalLexer(lines);
+
+        List<String> newLines = Arrays.asList("z = y * 2 ", "w = (z)");
+        var result = lexer.edit(500, 1, newLines);
+
+        assertFalse(result.hasFailed());
+        assertEquals(2, lexer.relexedLineCount());
+        assertEquals(1001, lexer.lineCount());
+        assertEquals(1001, lexer.tokens().lineNum(lexer.tokens().size() - 2));
+    }
+
+    /**
+     * Test that an edit keeps the token buffers of the lines that it didn't
+     *  re-lex, rather than copying every line's tokens again, and that
+     *  brackets are still matched across those lines.
+     */
+    @Test
+    public void testEdit_reusesUnchangedLineTokens()
+    {
+        System.out.println("edit - reuses unchanged line tokens");
+
+        var lines = new ArrayList<String>();
+        lines.add("f(");
+
+        for (int i = 0; i < 100; i++)
+        {
+            lines.add("x" + i + " = " + i);
+        }
+
+        lines.add(")");
+
+        var lexer = new IncrementalLexer(lines);
+        var firstLineTokens = lexer.lineTokens(0);
+        var lastLineTokens = lexer.lineTokens(101);
+
+        lexer.edit(50, 1, Arrays.asList("y = [1, 2]", "z = 3"));
+
+        var tokens = lexer.tokens();
+        var openIndex = 2;
+        var closeIndex = tokens.size() - 2;
+
+        assertSame(firstLineTokens, lexer.lineTokens(0));
+        assertSame(lastLineTokens, lexer.lineTokens(102));
+        assertEquals(closeIndex, tokens.matchingBracket(openIndex));
+        assertEquals(openIndex, tokens.matchingBracket(closeIndex));
+    }
+
+    /**
+     * Test that an edit that unbalances the brackets of lines that it didn't
+     *  touch is reported the same way as lexing the file from scratch, and
+     *  that fixing them clears the error.
+     */
+    @Test
+    public void testEdit_reportsUnbalancedBrackets()
+    {
+        System.out.println("edit - reports unbalanced brackets");
+
+        var lines = new ArrayList<>(Arrays.asList("f(", "x = [1]", ")"));
+        var lexer = new IncrementalLexer(lines);
+
+        var result = lexer.edit(3, 1, Arrays.asList("]"));
+        lines.set(2, "]");
+
+        var expResult = new Lexer().lexString(lines).errCode().errorMessage();
+
+        assertTrue(result.hasFailed());
+        assertEquals(expResult, result.errCode().errorMessage());
+        assertEquals(expResult, lexer.tokens().errCode().errorMessage());
+
+        result = lexer.edit(3, 1, Arrays.asList(")"));
+
+        assertFalse(result.hasFailed());
+        assertNull(lexer.tokens().errCode());
+    }
+
+    /**
+     * Test that the text of lines that were edited away is dropped from the
+     *  symbol table, and that the tokens that are left keep their text.
+     */
+    @Test
+    public void testEdit_compactsSymbolTable()
+    {
+        System.out.println("edit - compacts symbol table");
+
+        var lines = new ArrayList<>(Arrays.asList("a = 1", "b = a", ""));
+        var lexer = new IncrementalLexer(lines);
+
+        for (int i = 0; i < 10000; i++)
+        {
+            var newLines = Arrays.asList("b = x" + i + " + \"s" + i + "\"");
+            lexer.edit(2, 1, newLines);
+
+            lines.set(1, newLines.get(0));
+        }
+
+        var fullTokens = new Lexer().lexString(lines).data();
+        var expResult
+                = IncrementalLexerTest.describeTokens(
+                    fullTokens, fullTokens.size());
+        var result
+                = IncrementalLexerTest.describeTokens(
+                    lexer.tokens(), lexer.tokens().size());
+
+        assertEquals(expResult, result);
+        assertTrue(lexer.symbolCount() < 2000);
+    }
+}
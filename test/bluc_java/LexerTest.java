@@ -0,0 +1,428 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package bluc_java;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the lexer class.
+ *
+ * @author john
+ */
+public class LexerTest
+{
+
+    public LexerTest()
+    {
+    }
+
+    /**
+     * Lexes the specified lines and returns the text of each token, without
+     *  the SOF and EOF tokens.
+     */
+    private static ArrayList<String> lexToTexts(String... lines)
+    {
+        var tokens
+                = new Lexer()
+                .lexString(Arrays.asList(lines))
+                .data();
+
+        var texts = new ArrayList<String>();
+
+        for (int i = 1; i < tokens.size() - 1; i++)
+        {
+            texts.add(tokens.text(i));
+        }
+
+        return texts;
+    }
+
+    /**
+     * Test that words, operators and punctuation are split into the expected
+     *  tokens.
+     */
+    @Test
+    public void testLexString_splitsTokens()
+    {
+        System.out.println("lexString - splits tokens");
+
+        var expResult
+                = Arrays.asList("i32", "b", "=", "f", "(", "a", ",", "45",
+                    ")", "<=", "c");
+        var result
+                = LexerTest.lexToTexts("i32 b = f(a, 45) <= c");
+
+        assertEquals(expResult, result);
+    }
+
+    /**
+     * Test that the column of a token is the column that the lexer was on
+     *  when the token ended.
+     */
+    @Test
+    public void testLexString_tokenPositions()
+    {
+        System.out.println("lexString - token positions");
+
+        var tokens
+                = new Lexer()
+                .lexString(Arrays.asList("abc def ghi"))
+                .data();
+
+        var def = tokens.get(2);
+
+        assertEquals("def", def.text());
+        assertEquals(1, def.lineNum());
+        assertEquals(8, def.columnNum());
+    }
+
+    /**
+     * Test that escape chars are skipped inside of string literals.
+     */
+    @Test
+    public void testLexString_stringWithEscape()
+    {
+        System.out.println("lexString - string with escape");
+
+        var expResult
+                = Arrays.asList("x", "=", "\"anb c\"");
+        var result
+                = LexerTest.lexToTexts("x = \"a\\nb c\"");
+
+        assertEquals(expResult, result);
+    }
+
+    /**
+     * Test that comments are skipped, up until the end of their line.
+     */
+    @Test
+    public void testLexString_skipsComments()
+    {
+        System.out.println("lexString - skips comments");
+
+        var expResult
+                = Arrays.asList("a", "+", "b", "c");
+        var result
+                = LexerTest.lexToTexts("a + b # a comment", " c # another");
+
+        assertEquals(expResult, result);
+    }
+
+    /**
+     * Test that a '#' inside of a string literal doesn't start a comment.
+     */
+    @Test
+    public void testLexString_hashInsideString()
+    {
+        System.out.println("lexString - '#' inside of a string");
+
+        var expResult
+                = Arrays.asList("x", "=", "\"a # b\"", "y");
+        var result
+                = LexerTest.lexToTexts("x = \"a # b\" y # comment");
+
+        assertEquals(expResult, result);
+    }
+
+    /**
+     * Test that tokens are classified into the expected kinds, and that words
+     *  which aren't reserved (e.g. "if") are identifiers.
+     */
+    @Test
+    public void testLexString_classifiesKinds()
+    {
+        System.out.println("lexString - classifies kinds");
+
+        var tokens
+                = new Lexer()
+                .lexString(Arrays.asList("fn f(if) { null <= 2.5 \"s\" 7 }"))
+                .data();
+
+        var expResult = new int[]{
+            TokenKind.SOF, TokenKind.FN, TokenKind.IDENTIFIER,
+            TokenKind.LEFT_PAREN, TokenKind.IDENTIFIER, TokenKind.RIGHT_PAREN,
+            TokenKind.LEFT_BRACE, TokenKind.IDENTIFIER, TokenKind.LESS_EQUAL,
+            TokenKind.FLOAT_LITERAL, TokenKind.STRING_LITERAL,
+            TokenKind.INTEGER_LITERAL, TokenKind.RIGHT_BRACE, TokenKind.EOF
+        };
+        var result = new int[tokens.size()];
+
+        for (int i = 0; i < tokens.size(); i++)
+        {
+            result[i] = tokens.kind(i);
+        }
+
+        assertArrayEquals(expResult, result);
+    }
+
+    /**
+     * Test that operators are lexed as the longest operator that matches,
+     *  including an operator on the last char of the input.
+     */
+    @Test
+    public void testLexString_longestOperatorMatch()
+    {
+        System.out.println("lexString - longest operator match");
+
+        var tokens
+                = new Lexer()
+                .lexString(Arrays.asList("a>>=b+-c->d<<<=-e>"))
+                .data();
+
+        var expResult = new int[]{
+            TokenKind.SOF, TokenKind.IDENTIFIER,
+            TokenKind.GREATER_GREATER_EQUAL, TokenKind.IDENTIFIER,
+            TokenKind.PLUS, TokenKind.MINUS, TokenKind.IDENTIFIER,
+            TokenKind.ARROW, TokenKind.IDENTIFIER, TokenKind.LESS_LESS,
+            TokenKind.LESS_EQUAL, TokenKind.MINUS, TokenKind.IDENTIFIER,
+            TokenKind.GREATER, TokenKind.EOF
+        };
+        var result = new int[tokens.size()];
+
+        for (int i = 0; i < tokens.size(); i++)
+        {
+            result[i] = tokens.kind(i);
+        }
+
+        assertArrayEquals(expResult, result);
+    }
+
+    /**
+     * Test that skipping runs of chars gives the same tokens as lexing every
+     *  char one at a time, for runs that are longer than a vector.
+     */
+    @Test
+    public void testLexString_skippedRunsMatchCharByChar()
+    {
+        System.out.println("lexString - skipped runs match char by char");
+
+        var lines = Arrays.asList(
+            "        abcdefghijklmnopqrstuvwxyz_0123456789.ABCDEFGHIJ = 1",
+            "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\tname_with_日本_inside+x",
+            "\"a long string body, with (punctuation) and \\\" escapes in it\"",
+            "tail_word_spanning_the_last_line_of_the_input_0123456789");
+
+        var charByCharLexer = new Lexer();
+        charByCharLexer.runScanner(new RunScanner()
+        {
+            @Override
+            public int skipWhitespace(char[] buffer, int start, int end)
+            {
+                return start;
+            }
+
+            @Override
+            public int skipWordChars(char[] buffer, int start, int end)
+            {
+                return start;
+            }
+
+            @Override
+            public int skipStringChars(char[] buffer, int start, int end)
+            {
+                return start;
+            }
+        });
+
+        var expResult = charByCharLexer.lexString(lines).data().toTokenList();
+        var result = new Lexer().lexString(lines).data().toTokenList();
+
+        assertEquals(expResult, result);
+    }
+
+    /**
+     * Test that lexing a file's UTF-8 bytes gives the same tokens (and
+     *  columns) as decoding it into chars first.
+     */
+    @Test
+    public void testLexFile_bytesMatchChars() throws IOException
+    {
+        System.out.println("lexFile - bytes match chars");
+
+        var file = Files.createTempFile("bluc_lexer_test", ".bluc");
+        file.toFile().deleteOnExit();
+
+        Files.writeString(
+            file,
+            "naïve = \"日本語 \\\" text\" + 1\r\n"
+            + "\tπ\u2003* x😀y # comment é\n"
+            + "tail_日");
+
+        var charLexer = new Lexer();
+        charLexer.doLexBytes(false);
+
+        var expResult
+            = charLexer.lexFile(file.toString()).data().toTokenList();
+        var result
+            = new Lexer().lexFile(file.toString()).data().toTokenList();
+
+        assertEquals(expResult, result);
+    }
+
+    /**
+     * Test that invalid UTF-8 is reported as a lexer error when lexing bytes.
+     */
+    @Test
+    public void testLexFile_malformedBytes() throws IOException
+    {
+        System.out.println("lexFile - malformed bytes");
+
+        var file = Files.createTempFile("bluc_lexer_test", ".bluc");
+        file.toFile().deleteOnExit();
+
+        // An overlong encoding of '/'.
+        Files.write(file, new byte[]{'a', ' ', (byte) 0xC0, (byte) 0xAF});
+
+        var lexer = new Lexer();
+        lexer.out(new PrintStream(new ByteArrayOutputStream()));
+
+        var result = lexer.lexFile(file.toString());
+
+        assertTrue(result.hasFailed());
+        assertEquals(
+            Lexer.LexErrCode.MALFORMED_INPUT,
+            result.errCode().errorCode());
+        assertEquals(3, result.errCode().errorColumn());
+    }
+
+    /**
+     * Test that the lexer evaluates the values of literals, including
+     *  escaped quotes and backslashes in strings.
+     */
+    @Test
+    public void testLexString_literalValues()
+    {
+        System.out.println("lexString - literal values");
+
+        var tokens
+            = new Lexer().lexString(
+                Arrays.asList(
+                    "x = 42 + 0.125 + 99999999999999999999 + "
+                    + "\"a\\tb \\\"q\\\" \\\\\"")).data();
+
+        assertEquals(42L, tokens.integerValue(3));
+        assertEquals(0.125, tokens.floatValue(5), 0.0);
+        assertFalse(tokens.hasLiteralValue(7));
+        assertEquals("a\tb \"q\" \\", tokens.stringValue(9));
+    }
+
+    /**
+     * Test that a closing bracket that doesn't close the innermost open
+     *  bracket is reported as a lexer error.
+     */
+    @Test
+    public void testLexString_unbalancedBracket()
+    {
+        System.out.println("lexString - unbalanced bracket");
+
+        var lexer = new Lexer();
+        lexer.out(new PrintStream(new ByteArrayOutputStream()));
+
+        var result = lexer.lexString(Arrays.asList("f(a, [b)]", "c"));
+
+        assertTrue(result.hasFailed());
+        assertEquals(
+            Lexer.LexErrCode.UNBALANCED_BRACKET,
+            result.errCode().errorCode());
+        assertEquals(8, result.errCode().errorColumn());
+    }
+
+    /**
+     * Test that a lexer that's reset lexes the next input the same as a new
+     *  lexer, rather than appending to the tokens of the last input.
+     */
+    @Test
+    public void testReset_lexesLikeNewLexer() throws IOException
+    {
+        System.out.println("reset - lexes like new lexer");
+
+        var file = Files.createTempFile("bluc_lexer_test", ".bluc");
+        file.toFile().deleteOnExit();
+
+        Files.writeString(file, "b = \"é\" + 2.5\nc");
+
+        var expResult
+            = new Lexer().lexFile(file.toString()).data().toTokenList();
+
+        var instance = new Lexer();
+        instance.lexString(Arrays.asList("a longer input = 1 + 2 + 3"));
+        instance.reset();
+
+        var result = instance.lexFile(file.toString()).data().toTokenList();
+
+        assertEquals(expResult, result);
+    }
+
+    /**
+     * Test that one lexer can lex on many threads at once, when each thread
+     *  has its own state.
+     */
+    @Test
+    public void testLexString_sharedLexerWithOwnStates() throws Exception
+    {
+        System.out.println("lexString - shared lexer with own states");
+
+        var lines = Arrays.asList("fn f(a) { x <<= 2.5 \"s\" 7 }", "y -> z");
+        var expResult = new Lexer().lexString(lines).data().toTokenList();
+
+        var instance = new Lexer();
+        var results = new ArrayList<ArrayList<Token>>();
+        var threads = new ArrayList<Thread>();
+
+        for (int i = 0; i < 4; i++)
+        {
+            var threadResults = new ArrayList<Token>();
+            results.add(threadResults);
+
+            threads.add(new Thread(() ->
+            {
+                for (int run = 0; run < 100; run++)
+                {
+                    var tokens
+                        = instance.lexString(lines, new LexerState()).data();
+
+                    threadResults.clear();
+                    threadResults.addAll(tokens.toTokenList());
+                }
+            }));
+        }
+
+        for (var thread : threads)
+        {
+            thread.start();
+        }
+
+        for (var thread : threads)
+        {
+            thread.join();
+        }
+
+        for (var result : results)
+        {
+            assertEquals(expResult, result);
+        }
+    }
+}
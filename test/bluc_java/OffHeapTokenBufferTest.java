@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package bluc_java;
+
+import java.util.ArrayList;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the off-heap token buffer class.
+ *
+ * @author john
+ */
+public class OffHeapTokenBufferTest
+{
+
+    public OffHeapTokenBufferTest()
+    {
+    }
+
+    /**
+     * Test that lexing into an off-heap buffer gives the same tokens as
+     *  lexing into a heap buffer, when the tokens span more than one block.
+     */
+    @Test
+    public void testLexString_matchesHeapBuffer()
+    {
+        System.out.println("lexString - matches heap buffer");
+
+        var line = new StringBuilder();
+
+        while (line.length() < 4 * OffHeapTokenBuffer.BLOCK_SIZE)
+        {
+            line.append("var x = 12 + y; ");
+        }
+
+        var lines = new ArrayList<String>();
+        lines.add(line.toString());
+        lines.add("print(\"done\", 4.5)");
+
+        var expResult = new Lexer().lexString(lines).data().toTokenList();
+
+        try (var offHeapTokens = new OffHeapTokenBuffer())
+        {
+            var lexer = new Lexer();
+            lexer.state().lexedTokens(offHeapTokens);
+
+            var result = lexer.lexString(lines).data();
+
+            assertTrue(result.size() > OffHeapTokenBuffer.BLOCK_SIZE);
+            assertEquals(expResult, result.toTokenList());
+            assertEquals(12, result.integerValue(4));
+        }
+    }
+
+    /**
+     * Test that a closed buffer hands its blocks back to the pool, and can't
+     *  be used afterwards.
+     */
+    @Test
+    public void testClose_releasesBlocks()
+    {
+        System.out.println("close - releases blocks");
+
+        var instance = new OffHeapTokenBuffer();
+        instance.append(Token.BLUC_SOF);
+
+        var pooledBefore = OffHeapTokenBuffer.pooledBlockCount();
+        instance.close();
+
+        assertEquals(pooledBefore + 1, OffHeapTokenBuffer.pooledBlockCount());
+        assertTrue(instance.isClosed());
+        assertThrows(IllegalStateException.class, () -> instance.kind(0));
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package bluc_java;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the parallel lexer class.
+ *
+ * @author john
+ */
+public class ParallelLexerTest
+{
+
+    public ParallelLexerTest()
+    {
+    }
+
+    /**
+     * Returns the text, line and column of each token, so that two token
+     *  buffers can be compared.
+     */
+    private static ArrayList<String> describeTokens(TokenBuffer tokens)
+    {
+        var descriptions = new ArrayList<String>();
+
+        for (int i = 0; i < tokens.size(); i++)
+        {
+            descriptions.add(tokens.text(i) + "@" + tokens.lineNum(i) + ":"
+                + tokens.columnNum(i));
+        }
+
+        return descriptions;
+    }
+
+    /**
+     * Test that lexing in small chunks gives the same tokens as lexing
+     *  sequentially, even when strings and words span chunk boundaries.
+     */
+    @Test
+    public void testLexBuffer_matchesSequentialLexer()
+    {
+        System.out.println("lexBuffer - matches sequential lexer");
+
+        var lines
+                = Arrays.asList("a = \"first", "# not a comment", "end\" + b",
+                    "c", "d = (e)", "f = \"g\"");
+        var source = (String.join("\r\n", lines) + "\n").toCharArray();
+        var pool = new ForkJoinPool(2);
+
+        var expResult
+                = ParallelLexerTest.describeTokens(
+                    new Lexer().lexString(lines).data());
+        var result
+                = ParallelLexerTest.describeTokens(
+                    new ParallelLexer(pool, 4)
+                    .lexBuffer(source, source.length, null)
+                    .data());
+
+        pool.shutdown();
+
+        assertEquals(expResult, result);
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package bluc_java;
+
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the source file class.
+ *
+ * @author john
+ */
+public class SourceFileTest
+{
+
+    public SourceFileTest()
+    {
+    }
+
+    /**
+     * Test that offsets are resolved to the same lines and columns that the
+     *  lexer counts, for every kind of line terminator.
+     */
+    @Test
+    public void testFromChars_lineAndColumn()
+    {
+        System.out.println("fromChars - line and column");
+
+        var chars = "ab\r\ncd\ref\n\ngh".toCharArray();
+        var instance = SourceFile.fromChars("test.bluc", chars, chars.length);
+
+        assertEquals(5, instance.lineCount());
+        assertEquals(1, instance.lineNumAt(1));
+        assertEquals(2, instance.columnAt(1));
+        assertEquals(2, instance.lineNumAt(4));
+        assertEquals(1, instance.columnAt(4));
+        assertEquals(3, instance.lineNumAt(8));
+        assertEquals(2, instance.columnAt(8));
+        assertEquals(5, instance.lineNumAt(11));
+        assertEquals(1, instance.columnAt(11));
+    }
+
+    /**
+     * Test that columns of a UTF-8 file are counted in chars, with a char
+     *  outside of the BMP at the column of its second char.
+     */
+    @Test
+    public void testFromBytes_columnsAreChars()
+    {
+        System.out.println("fromBytes - columns are chars");
+
+        var bytes = "x\né😀y".getBytes(StandardCharsets.UTF_8);
+        var instance = SourceFile.fromBytes("test.bluc", bytes, bytes.length);
+
+        // 'é' is 2 bytes, and '😀' is 4 bytes.
+        assertEquals(2, instance.lineNumAt(2));
+        assertEquals(1, instance.columnAt(2));
+        assertEquals(3, instance.columnAt(4));
+        assertEquals(4, instance.columnAt(8));
+    }
+}
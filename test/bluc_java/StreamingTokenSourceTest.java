@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package bluc_java;
+
+import bluc_java.Lexer.LexErrCode;
+import bluc_java.parser.Parser;
+import bluc_java.parser.Parser.ParseResultErrCode;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the streaming token source class.
+ *
+ * @author john
+ */
+public class StreamingTokenSourceTest
+{
+
+    public StreamingTokenSourceTest()
+    {
+    }
+
+    /**
+     * Test that the streamed tokens are the same as the tokens from lexing
+     *  the whole input at once.
+     */
+    @Test
+    public void testStream_matchesLexString()
+    {
+        System.out.println("stream - matches lexString");
+
+        var lines
+                = Arrays.asList("a = (1 + b) # comment", "c = \"x y\" <= d",
+                    "e");
+        var tokens
+                = new Lexer()
+                .lexString(lines)
+                .data();
+        var instance
+                = new StreamingTokenSource(
+                    new StringReader(String.join("\n", lines)), null);
+
+        var expResult = new ArrayList<String>();
+        var result = new ArrayList<String>();
+
+        for (int i = 0; i < tokens.size(); i++)
+        {
+            expResult.add(tokens.text(i) + "@" + tokens.lineNum(i) + ":"
+                + tokens.columnNum(i));
+        }
+
+        for (int i = 0; i == 0 || instance.hasTokenAfter(i - 1); i++)
+        {
+            result.add(instance.text(i) + "@" + instance.lineNum(i) + ":"
+                + instance.columnNum(i));
+        }
+
+        assertEquals(expResult, result);
+    }
+
+    /**
+     * Test that the parser only keeps a bounded window of tokens (and of
+     *  their text and line starts) in memory while it reads through the
+     *  stream.
+     */
+    @Test
+    public void testStream_windowIsBounded()
+    {
+        System.out.println("stream - window is bounded");
+
+        var input = new StringBuilder();
+
+        for (int i = 0; i < 10000; i++)
+        {
+            input.append("a").append(i).append(" == b\n");
+        }
+
+        var instance
+                = new StreamingTokenSource(
+                    new StringReader(input.toString()), null);
+        var parser = new Parser(instance);
+        var maxWindowSize = 0;
+        var maxSymbolCount = 0;
+        var maxLineStartCount = 0;
+
+        while (parser.nextToken().hasSucceeded())
+        {
+            maxWindowSize = Math.max(maxWindowSize, instance.windowSize());
+            maxSymbolCount = Math.max(maxSymbolCount, instance.symbolCount());
+            maxLineStartCount
+                = Math.max(maxLineStartCount, instance.lineStartCount());
+        }
+
+        assertEquals(TokenKind.IDENTIFIER, parser.currentTokenKind());
+        assertTrue(maxWindowSize < 1000);
+        assertTrue(maxSymbolCount < 3000);
+        assertTrue(maxLineStartCount < 1000);
+    }
+
+    /**
+     * Test that unbalanced brackets fail the stream with the same error as
+     *  lexString, and that the parser returns it as a failure.
+     */
+    @Test
+    public void testStream_reportsUnbalancedBrackets()
+    {
+        System.out.println("stream - reports unbalanced brackets");
+
+        var sources
+                = new String[]{"fn f {\n    a\n", "a\n(b]\nc", "a)"};
+
+        for (var source : sources)
+        {
+            var lines = Arrays.asList(source.split("\n", -1));
+            var expResult
+                    = new Lexer()
+                    .lexString(lines, new LexerState())
+                    .errCode();
+            var instance
+                    = new StreamingTokenSource(new StringReader(source), null);
+            var parser = new Parser(instance);
+            parser.out(new PrintStream(new ByteArrayOutputStream()));
+            parser.err(new PrintStream(new ByteArrayOutputStream()));
+
+            var result = parser.parse();
+
+            assertEquals(LexErrCode.UNBALANCED_BRACKET, expResult.errorCode());
+            assertEquals(expResult.errorMessage(),
+                instance.errCode().errorMessage());
+            assertEquals(ParseResultErrCode.LEX_FAILED, result.errCode());
+        }
+    }
+
+    /**
+     * Test that looking for a bracket's match further ahead than the read
+     *  limit fails the stream, rather than lexing everything in between.
+     */
+    @Test
+    public void testStream_lookaheadIsLimited()
+    {
+        System.out.println("stream - lookahead is limited");
+
+        var input = new StringBuilder("{\n");
+
+        for (int i = 0; i < 1000; i++)
+        {
+            input.append("a").append(i).append(" == b\n");
+        }
+
+        input.append("}");
+
+        var instance
+                = new StreamingTokenSource(
+                    new StringReader(input.toString()), null);
+
+        var result = instance.matchingBracket(1);
+
+        assertEquals(TokenBuffer.NO_MATCH, result);
+        assertEquals(
+            LexErrCode.LOOKAHEAD_LIMIT, instance.errCode().errorCode());
+        assertTrue(instance.windowSize() < 2 * Parser.TOKEN_WINDOW_SIZE);
+    }
+}
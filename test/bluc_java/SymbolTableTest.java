@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package bluc_java;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the symbol table class.
+ *
+ * @author john
+ */
+public class SymbolTableTest
+{
+
+    public SymbolTableTest()
+    {
+    }
+
+    /**
+     * Test that tokens with the same text share one symbol and one string.
+     */
+    @Test
+    public void testLexString_sameTextSharesSymbol()
+    {
+        System.out.println("lexString - same text shares symbol");
+
+        var tokens
+                = new Lexer()
+                .lexString(Arrays.asList("count = count + other"))
+                .data();
+
+        assertEquals("count", tokens.text(1));
+        assertEquals(tokens.symbol(1), tokens.symbol(3));
+        assertNotEquals(tokens.symbol(1), tokens.symbol(5));
+        assertSame(tokens.text(1), tokens.text(3));
+    }
+
+    /**
+     * Test that interning the same texts from many threads at once gives
+     *  every thread the same ids.
+     */
+    @Test
+    public void testIntern_concurrentInsertsAgree()
+    {
+        System.out.println("intern - concurrent inserts agree");
+
+        var table = new SymbolTable();
+        var pool = new ForkJoinPool(4);
+        var tasks = new ArrayList<ForkJoinTask<int[]>>();
+
+        for (int thread = 0; thread < 4; thread++)
+        {
+            tasks.add(pool.submit(() ->
+            {
+                var ids = new int[5000];
+
+                for (int i = 0; i < ids.length; i++)
+                {
+                    var chars = ("name" + i).toCharArray();
+                    ids[i] = table.intern(chars, 0, chars.length);
+                }
+
+                return ids;
+            }));
+        }
+
+        var expResult = tasks.get(0).join();
+
+        for (var task : tasks)
+        {
+            assertArrayEquals(expResult, task.join());
+        }
+
+        pool.shutdown();
+
+        assertEquals(5000, table.size());
+        assertEquals("name1234", table.text(expResult[1234]));
+    }
+
+    /**
+     * Test that a cleared table forgets its symbols, and can be filled again.
+     */
+    @Test
+    public void testClear_forgetsSymbols()
+    {
+        System.out.println("clear - forgets symbols");
+
+        var table = new SymbolTable();
+
+        for (int i = 0; i < 1000; i++)
+        {
+            table.intern("old" + i);
+        }
+
+        table.clear();
+
+        var expResult = "new";
+        var id = table.intern(expResult);
+
+        assertEquals(1, table.size());
+        assertEquals(expResult, table.text(id));
+        assertEquals(id, table.intern("new".toCharArray(), 0, 3));
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package bluc_java.benchmarks;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Small timing and allocation utilities shared by the benchmarks in this
+ *  package.<br/><br/>
+ *
+ * <b>Remarks:</b><br/>&#9;
+ *      The benchmarks aren't unit tests, so they aren't run by the "test"
+ *  target. Build the tests, then run a benchmark's main method with both
+ *  build/classes and build/test/classes on the classpath.
+ *
+ * @author john
+ */
+public class Benchmarks
+{
+    /**
+     * Keeps results alive, so the JIT can't optimize away the benchmarked
+     *  work.
+     */
+    private static volatile Object blackhole;
+
+    /**
+     * Runs the task `warmupRuns` times without timing it, then times
+     *  `measuredRuns` runs of it.
+     *
+     * @param task - the work to measure
+     * @param unitsPerRun - the number of units (bytes, tokens etc) that one
+     *  run of the task processes
+     * @return the average nanoseconds per unit
+     */
+    public static double nanosPerUnit(
+        Task task,
+        long unitsPerRun,
+        int warmupRuns,
+        int measuredRuns)
+    {
+        for (int i = 0; i < warmupRuns; i++)
+        {
+            Benchmarks.blackhole = task.run();
+        }
+
+        var start = System.nanoTime();
+
+        for (int i = 0; i < measuredRuns; i++)
+        {
+            Benchmarks.blackhole = task.run();
+        }
+
+        var elapsed = System.nanoTime() - start;
+
+        return (double) elapsed / measuredRuns / unitsPerRun;
+    }
+
+    /**
+     * Runs the task `warmupRuns` times, then measures the bytes that the
+     *  current thread allocates over `measuredRuns` runs of it.
+     *
+     * @param task - the work to measure
+     * @param unitsPerRun - the number of units (bytes, tokens etc) that one
+     *  run of the task processes
+     * @return the average bytes allocated per unit
+     */
+    public static double bytesPerUnit(
+        Task task,
+        long unitsPerRun,
+        int warmupRuns,
+        int measuredRuns)
+    {
+        var threads
+            = (com.sun.management.ThreadMXBean)
+                ManagementFactory.getThreadMXBean();
+        var threadId = Thread.currentThread().threadId();
+
+        for (int i = 0; i < warmupRuns; i++)
+        {
+            Benchmarks.blackhole = task.run();
+        }
+
+        var start = threads.getThreadAllocatedBytes(threadId);
+
+        for (int i = 0; i < measuredRuns; i++)
+        {
+            Benchmarks.blackhole = task.run();
+        }
+
+        var allocated = threads.getThreadAllocatedBytes(threadId) - start;
+
+        return (double) allocated / measuredRuns / unitsPerRun;
+    }
+
+    /**
+     * Prints one result line.
+     */
+    public static void report(String name, double nanosPerUnit, String unit)
+    {
+        System.out.println(
+            String.format("%-48s %10.3f ns/%s", name, nanosPerUnit, unit));
+    }
+
+    /**
+     * Prints one allocation result line.
+     */
+    public static void reportBytes(
+        String name,
+        double bytesPerUnit,
+        String unit)
+    {
+        System.out.println(
+            String.format("%-48s %10.3f B/%s", name, bytesPerUnit, unit));
+    }
+
+    /**
+     * A unit of benchmarked work. The result is kept alive so that the work
+     *  can't be optimized away.
+     */
+    public interface Task
+    {
+        Object run();
+    }
+}
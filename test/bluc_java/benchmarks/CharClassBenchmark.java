@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package bluc_java.benchmarks;
+
+import bluc_java.CharClass;
+import bluc_java.Lexer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures the per-char cost of classifying chars on operator dense and
+ *  identifier dense source. "array scan" is the old approach, where each char
+ *  was checked with Character.isWhitespace and then searched for in freshly
+ *  allocated punctuation and operator arrays. "table" is CharClass.of. The
+ *  whole lexer's throughput is also reported for each input.
+ *
+ * @author john
+ */
+public class CharClassBenchmark
+{
+    public static void main(String[] args)
+    {
+        var inputs = new String[][]{
+            {"operator dense", "a+=b*-c<=d!=e>>f||g&&h^i%j "},
+            {"identifier dense", "alpha beta_gamma delta42 epsilon zeta "}
+        };
+
+        for (var input : inputs)
+        {
+            var name = input[0];
+            var line = CharClassBenchmark.repeat(input[1], 4096);
+            var chars = line.toCharArray();
+            var lines = CharClassBenchmark.repeatLines(line, 16);
+
+            var arrayScan
+                = Benchmarks.nanosPerUnit(
+                    () -> CharClassBenchmark.classifyWithArrayScans(chars),
+                    chars.length,
+                    20,
+                    20);
+
+            var table
+                = Benchmarks.nanosPerUnit(
+                    () -> CharClassBenchmark.classifyWithTable(chars),
+                    chars.length,
+                    20,
+                    20);
+
+            var lexer
+                = Benchmarks.nanosPerUnit(
+                    () -> new Lexer().lexString(lines),
+                    (long) lines.size() * (line.length() + 1),
+                    10,
+                    10);
+
+            Benchmarks.report("array scan, " + name, arrayScan, "char");
+            Benchmarks.report("table, " + name, table, "char");
+            Benchmarks.report("whole lexer, " + name, lexer, "char");
+        }
+    }
+
+    private static String repeat(String text, int length)
+    {
+        var repeated = new StringBuilder();
+
+        while (repeated.length() < length)
+        {
+            repeated.append(text);
+        }
+
+        return repeated.toString();
+    }
+
+    private static List<String> repeatLines(String line, int lineCount)
+    {
+        var lines = new ArrayList<String>();
+
+        for (int i = 0; i < lineCount; i++)
+        {
+            lines.add(line);
+        }
+
+        return lines;
+    }
+
+    /**
+     * The classification that the lexer used to do for each char.
+     */
+    private static Object classifyWithArrayScans(char[] chars)
+    {
+        var classSum = 0;
+
+        for (var character : chars)
+        {
+            if (Character.isWhitespace(character))
+            {
+                classSum += CharClass.WHITESPACE;
+            }
+            else if (CharClassBenchmark.matchesAny(character,
+                        new char[]{'(', ')', '{', '}', '[', ']', ','}))
+            {
+                classSum += CharClass.PUNCTUATION;
+            }
+            else if (CharClassBenchmark.matchesAny(character,
+                        new char[]{'+', '-', '*', '/', '%', '=', '!',
+                            '<', '>', '|', '&', '^'}))
+            {
+                classSum += CharClass.OPERATOR;
+            }
+        }
+
+        return classSum;
+    }
+
+    private static boolean matchesAny(char character, char[] charsToMatch)
+    {
+        for (var charToSearch : charsToMatch)
+        {
+            if (character == charToSearch)
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static Object classifyWithTable(char[] chars)
+    {
+        var classSum = 0;
+
+        for (var character : chars)
+        {
+            classSum += CharClass.of(character);
+        }
+
+        return classSum;
+    }
+}
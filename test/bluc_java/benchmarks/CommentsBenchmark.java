@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package bluc_java.benchmarks;
+
+import bluc_java.Lexer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures the per-byte cost of lexing commented source with long lines.
+ *  "separate pass" is the old approach, where comments were stripped by
+ *  rebuilding every line before lexing. "fused" skips comments inside of the
+ *  lexer's scan loop.
+ *
+ * @author john
+ */
+public class CommentsBenchmark
+{
+    public static void main(String[] args)
+    {
+        for (var lineLength : new int[]{256, 4096, 16384})
+        {
+            var lines = CommentsBenchmark.createLines(64, lineLength);
+            var byteCount = CommentsBenchmark.countChars(lines);
+
+            var separatePass
+                = Benchmarks.nanosPerUnit(
+                    () -> new Lexer().lexString(
+                        CommentsBenchmark.removeCommentsSeparately(lines)),
+                    byteCount,
+                    10,
+                    10);
+
+            var fused
+                = Benchmarks.nanosPerUnit(
+                    () -> new Lexer().lexString(lines),
+                    byteCount,
+                    10,
+                    10);
+
+            Benchmarks.report(
+                "separate pass, line length " + lineLength, separatePass, "B");
+            Benchmarks.report(
+                "fused, line length " + lineLength, fused, "B");
+        }
+    }
+
+    /**
+     * Creates lines of code that are about `lineLength` chars long, where the
+     *  second half of each line is a comment.
+     */
+    private static List<String> createLines(int lineCount, int lineLength)
+    {
+        var lines = new ArrayList<String>();
+
+        for (int i = 0; i < lineCount; i++)
+        {
+            var line = new StringBuilder();
+
+            while (line.length() < lineLength / 2)
+            {
+                line.append("a1 = (b2 + c3) * 45 ");
+            }
+
+            line.append("#");
+
+            while (line.length() < lineLength)
+            {
+                line.append(" commented out code = 6 ");
+            }
+
+            lines.add(line.toString());
+        }
+
+        return lines;
+    }
+
+    private static long countChars(List<String> lines)
+    {
+        var count = 0L;
+
+        for (var line : lines)
+        {
+            count += line.length() + 1;
+        }
+
+        return count;
+    }
+
+    /**
+     * The comment stripping pass that the lexer used to run before lexing.
+     */
+    private static List<String> removeCommentsSeparately(List<String> lines)
+    {
+        var decommentedLines = new ArrayList<String>();
+
+        for (var line : lines)
+        {
+            var lineSoFar = "";
+
+            for (var character : line.toCharArray())
+            {
+                if (character == '#')
+                {
+                    break;
+                }
+
+                lineSoFar += character;
+            }
+
+            decommentedLines.add(lineSoFar);
+        }
+
+        return decommentedLines;
+    }
+}
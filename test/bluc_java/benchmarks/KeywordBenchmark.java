@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package bluc_java.benchmarks;
+
+import bluc_java.TokenKind;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Measures classifying words as keywords or identifiers. "hash map" looks
+ *  each word up in a HashMap of the keywords, which has to create a string
+ *  for the word first. "perfect hash" is what the lexer does now, which
+ *  hashes the chars in place and compares against at most one keyword.
+ *
+ * @author john
+ */
+public class KeywordBenchmark
+{
+    private static final String[] WORDS = {
+        "fn", "main", "return", "total", "if", "counter", "else", "while",
+        "weight", "true", "false", "null", "index", "result", "fnord", "iff"
+    };
+
+    public static void main(String[] args)
+    {
+        var source = new StringBuilder();
+
+        for (int i = 0; i < 100_000; i++)
+        {
+            source.append(WORDS[i % WORDS.length]).append(' ');
+        }
+
+        var chars = source.toString().toCharArray();
+        var wordCount = 100_000;
+
+        var keywords = new HashMap<String, Integer>();
+        keywords.put("fn", TokenKind.FN);
+
+        var hashMap
+            = Benchmarks.nanosPerUnit(
+                () -> KeywordBenchmark.classifyWithMap(chars, keywords),
+                wordCount,
+                20,
+                20);
+
+        var perfectHash
+            = Benchmarks.nanosPerUnit(
+                () -> KeywordBenchmark.classifyWithPerfectHash(chars),
+                wordCount,
+                20,
+                20);
+
+        Benchmarks.report("hash map", hashMap, "word");
+        Benchmarks.report("perfect hash", perfectHash, "word");
+    }
+
+    private static Object classifyWithMap(
+        char[] chars,
+        Map<String, Integer> keywords)
+    {
+        var keywordCount = 0;
+        var wordStart = 0;
+
+        for (int i = 0; i < chars.length; i++)
+        {
+            if (chars[i] == ' ')
+            {
+                var word = new String(chars, wordStart, i - wordStart);
+                var kind = keywords.getOrDefault(word, TokenKind.IDENTIFIER);
+
+                if (kind != TokenKind.IDENTIFIER)
+                {
+                    keywordCount++;
+                }
+
+                wordStart = i + 1;
+            }
+        }
+
+        return keywordCount;
+    }
+
+    private static Object classifyWithPerfectHash(char[] chars)
+    {
+        var keywordCount = 0;
+        var wordStart = 0;
+
+        for (int i = 0; i < chars.length; i++)
+        {
+            if (chars[i] == ' ')
+            {
+                var kind = TokenKind.classify(chars, wordStart, i - wordStart);
+
+                if (kind != TokenKind.IDENTIFIER)
+                {
+                    keywordCount++;
+                }
+
+                wordStart = i + 1;
+            }
+        }
+
+        return keywordCount;
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package bluc_java.benchmarks;
+
+import bluc_java.NumberLiterals;
+import java.util.Random;
+
+/**
+ * Measures evaluating float literals straight from chars with
+ *  NumberLiterals, against creating a string and calling
+ *  Double.parseDouble, which is what reading a token's text would need.
+ *
+ * @author john
+ */
+public class NumberLiteralsBenchmark
+{
+    public static void main(String[] args)
+    {
+        var random = new Random(1);
+        var literals = new char[100_000][];
+
+        for (int i = 0; i < literals.length; i++)
+        {
+            var literal
+                = random.nextInt(100_000) + "." + random.nextInt(1_000);
+
+            literals[i] = literal.toCharArray();
+        }
+
+        var fromChars
+            = Benchmarks.nanosPerUnit(
+                () -> NumberLiteralsBenchmark.sumFromChars(literals),
+                literals.length,
+                20,
+                20);
+
+        var fromStrings
+            = Benchmarks.nanosPerUnit(
+                () -> NumberLiteralsBenchmark.sumFromStrings(literals),
+                literals.length,
+                20,
+                20);
+
+        Benchmarks.report("float, NumberLiterals", fromChars, "literal");
+        Benchmarks.report("float, Double.parseDouble", fromStrings, "literal");
+    }
+
+    private static Object sumFromChars(char[][] literals)
+    {
+        var sum = 0.0;
+
+        for (var literal : literals)
+        {
+            sum += NumberLiterals.parseFloat(literal, 0, literal.length);
+        }
+
+        return sum;
+    }
+
+    private static Object sumFromStrings(char[][] literals)
+    {
+        var sum = 0.0;
+
+        for (var literal : literals)
+        {
+            sum += Double.parseDouble(new String(literal));
+        }
+
+        return sum;
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package bluc_java.benchmarks;
+
+import bluc_java.Lexer;
+import bluc_java.ParallelLexer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Measures the per-char cost of lexing one large file sequentially, and in
+ *  parallel with an increasing number of cores (up to the number of cores on
+ *  this machine).
+ *
+ * @author john
+ */
+public class ParallelLexBenchmark
+{
+    public static void main(String[] args)
+    {
+        var lines = ParallelLexBenchmark.createLines(1_000_000);
+        var source = ParallelLexBenchmark.joinLines(lines);
+        var charCount = source.length;
+
+        var sequential
+            = Benchmarks.nanosPerUnit(
+                () -> new Lexer().lexString(lines),
+                charCount,
+                3,
+                5);
+
+        Benchmarks.report("sequential", sequential, "char");
+
+        var coreCount = Runtime.getRuntime().availableProcessors();
+
+        for (int cores = 1; cores <= coreCount; cores *= 2)
+        {
+            var pool = new ForkJoinPool(cores);
+            var lexer = new ParallelLexer(pool, 1024 * 1024);
+
+            var parallel
+                = Benchmarks.nanosPerUnit(
+                    () -> lexer.lexBuffer(source, charCount, null),
+                    charCount,
+                    3,
+                    5);
+
+            Benchmarks.report("parallel, " + cores + " core(s)", parallel, "char");
+
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Creates lines of generated code, some of which end with a word, so
+     *  that some chunks have a token carried over into them.
+     */
+    private static List<String> createLines(int lineCount)
+    {
+        var lines = new ArrayList<String>();
+
+        for (int i = 0; i < lineCount; i++)
+        {
+            lines.add(i % 3 == 0
+                ? "value" + i + " = (a + " + i + ") * \"text\" # generated"
+                : "f(value" + i + ", b <= c) != d");
+        }
+
+        return lines;
+    }
+
+    private static char[] joinLines(List<String> lines)
+    {
+        var source = new StringBuilder();
+
+        for (var line : lines)
+        {
+            source.append(line).append('\n');
+        }
+
+        return source.toString().toCharArray();
+    }
+}
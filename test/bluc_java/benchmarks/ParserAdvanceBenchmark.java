@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package bluc_java.benchmarks;
+
+import bluc_java.Lexer;
+import bluc_java.TokenBuffer;
+import bluc_java.parser.Parser;
+import java.util.ArrayList;
+
+/**
+ * Measures advancing the parser over every token of a file. "nextToken"
+ *  returns a Result for every token. "tryAdvance" is what the parser's own
+ *  loops use now, which returns a flag instead, and shouldn't allocate
+ *  anything per token.
+ *
+ * @author john
+ */
+public class ParserAdvanceBenchmark
+{
+    public static void main(String[] args)
+    {
+        var lines = new ArrayList<String>();
+
+        for (int i = 0; i < 20_000; i++)
+        {
+            lines.add("fn f" + i + "(a, b) { x = a + b * (c - 1) }");
+        }
+
+        var tokens = new Lexer().lexString(lines).data();
+        var parser = new Parser(tokens);
+        var tokenCount = tokens.size();
+
+        Benchmarks.Task nextToken
+            = () -> ParserAdvanceBenchmark.advanceWithNextToken(
+                parser, tokens);
+        Benchmarks.Task tryAdvance
+            = () -> ParserAdvanceBenchmark.advanceWithTryAdvance(
+                parser, tokens);
+
+        Benchmarks.report(
+            "nextToken",
+            Benchmarks.nanosPerUnit(nextToken, tokenCount, 20, 20),
+            "token");
+        Benchmarks.reportBytes(
+            "nextToken",
+            Benchmarks.bytesPerUnit(nextToken, tokenCount, 20, 20),
+            "token");
+        Benchmarks.report(
+            "tryAdvance",
+            Benchmarks.nanosPerUnit(tryAdvance, tokenCount, 20, 20),
+            "token");
+        Benchmarks.reportBytes(
+            "tryAdvance",
+            Benchmarks.bytesPerUnit(tryAdvance, tokenCount, 20, 20),
+            "token");
+    }
+
+    private static Object advanceWithNextToken(
+        Parser parser,
+        TokenBuffer tokens)
+    {
+        var advancedCount = 0;
+
+        parser.reset(tokens);
+
+        while (parser.nextToken().hasSucceeded())
+        {
+            advancedCount++;
+        }
+
+        return advancedCount;
+    }
+
+    private static Object advanceWithTryAdvance(
+        Parser parser,
+        TokenBuffer tokens)
+    {
+        var advancedCount = 0;
+
+        parser.reset(tokens);
+
+        while (parser.tryAdvance())
+        {
+            advancedCount++;
+        }
+
+        return advancedCount;
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package bluc_java.benchmarks;
+
+import bluc_java.Lexer;
+import bluc_java.RunScanner;
+import bluc_java.VectorRunScanner;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures the lexer's throughput on realistic code, and on code with very
+ *  long lines. "char by char" lexes every char on its own, the way the lexer
+ *  used to. "scalar runs" skips runs of white space, word chars and string
+ *  bodies one char at a time, and "vector runs" skips them a whole vector at
+ *  a time.<br/><br/>
+ *
+ * <b>Remarks:</b><br/>&#9;
+ *      Run with `--add-modules jdk.incubator.vector`, otherwise the vector
+ *  runs are skipped.
+ *
+ * @author john
+ */
+public class RunScannerBenchmark
+{
+    public static void main(String[] args)
+    {
+        var realisticLines = new ArrayList<String>();
+
+        for (int i = 0; i < 20_000; i++)
+        {
+            realisticLines.add("fn compute_total_" + i + "(items, count) {");
+            realisticLines.add("    var running_total = 0 # accumulate");
+            realisticLines.add(
+                "    print(\"processing the next batch of items now\")");
+            realisticLines.add(
+                "    running_total = running_total + items * count");
+            realisticLines.add("}");
+        }
+
+        var longLines = new ArrayList<String>();
+
+        for (int i = 0; i < 1_000; i++)
+        {
+            longLines.add(
+                " ".repeat(1024)
+                + "identifier_".repeat(100)
+                + " = \""
+                + "a long string body ".repeat(100)
+                + "\"");
+        }
+
+        var scanners = new ArrayList<RunScanner>();
+        var scannerNames = new ArrayList<String>();
+
+        scanners.add(new CharByCharScanner());
+        scannerNames.add("char by char");
+        scanners.add(new RunScanner());
+        scannerNames.add("scalar runs");
+
+        var fastest = RunScanner.fastest();
+
+        if (fastest instanceof VectorRunScanner)
+        {
+            scanners.add(fastest);
+            scannerNames.add("vector runs");
+        }
+        else
+        {
+            System.out.println(
+                "jdk.incubator.vector isn't loaded, skipping vector runs.");
+        }
+
+        for (int i = 0; i < scanners.size(); i++)
+        {
+            RunScannerBenchmark.report(
+                scannerNames.get(i) + ", realistic",
+                realisticLines,
+                scanners.get(i));
+
+            RunScannerBenchmark.report(
+                scannerNames.get(i) + ", long lines",
+                longLines,
+                scanners.get(i));
+        }
+    }
+
+    private static void report(
+        String name,
+        List<String> lines,
+        RunScanner scanner)
+    {
+        var byteCount = 0L;
+
+        for (var line : lines)
+        {
+            byteCount += line.length() + 1;
+        }
+
+        var nanosPerByte
+            = Benchmarks.nanosPerUnit(
+                () ->
+                {
+                    var lexer = new Lexer();
+                    lexer.runScanner(scanner);
+
+                    return lexer.lexString(lines);
+                },
+                byteCount,
+                10,
+                10);
+
+        System.out.println(String.format(
+            "%-48s %10.1f MB/s", name, 1000 / nanosPerByte));
+    }
+
+    /**
+     * Never skips any chars, so that every char is lexed on its own.
+     */
+    private static class CharByCharScanner extends RunScanner
+    {
+        @Override
+        public int skipWhitespace(char[] buffer, int start, int end)
+        {
+            return start;
+        }
+
+        @Override
+        public int skipWordChars(char[] buffer, int start, int end)
+        {
+            return start;
+        }
+
+        @Override
+        public int skipStringChars(char[] buffer, int start, int end)
+        {
+            return start;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package bluc_java.benchmarks;
+
+import bluc_java.Lexer;
+import bluc_java.Token;
+import bluc_java.TokenBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures the heap used by the tokens of identifier heavy code, and the
+ *  cost of comparing their text. "copied" gives every token its own string,
+ *  the way tokens used to be stored. "interned" is what the lexer does now,
+ *  where tokens with the same text share one symbol.
+ *
+ * @author john
+ */
+public class SymbolTableBenchmark
+{
+    public static void main(String[] args)
+    {
+        var lines = new ArrayList<String>();
+
+        for (int i = 0; i < 100_000; i++)
+        {
+            lines.add("total = total + counter" + (i % 100) + " * weight");
+        }
+
+        var tokens = new Lexer().lexString(lines).data();
+        var tokenCount = tokens.size();
+
+        var copiedBytes
+            = SymbolTableBenchmark.measureHeap(
+                () -> SymbolTableBenchmark.copyTokens(tokens));
+        var internedBytes
+            = SymbolTableBenchmark.measureHeap(tokens::toTokenList);
+
+        System.out.println(String.format(
+            "%-48s %10.1f B/token", "heap, copied", copiedBytes / tokenCount));
+        System.out.println(String.format(
+            "%-48s %10.1f B/token",
+            "heap, interned",
+            internedBytes / tokenCount));
+
+        var copiedTexts = SymbolTableBenchmark.copyTokens(tokens);
+
+        var compareText
+            = Benchmarks.nanosPerUnit(
+                () -> SymbolTableBenchmark.countTextMatches(copiedTexts),
+                tokenCount,
+                10,
+                10);
+
+        var compareSymbol
+            = Benchmarks.nanosPerUnit(
+                () -> SymbolTableBenchmark.countSymbolMatches(tokens),
+                tokenCount,
+                10,
+                10);
+
+        Benchmarks.report("compare, copied text", compareText, "token");
+        Benchmarks.report("compare, interned symbol", compareSymbol, "token");
+    }
+
+    /**
+     * Creates a Token for every token, each with its own copy of the text.
+     */
+    private static List<Token> copyTokens(TokenBuffer tokens)
+    {
+        var copies = new ArrayList<Token>(tokens.size());
+
+        for (int i = 0; i < tokens.size(); i++)
+        {
+            copies.add(new Token(
+                tokens.filePath(),
+                tokens.lineNum(i),
+                tokens.columnNum(i),
+                new String(tokens.text(i).toCharArray()),
+                tokens.kind(i)));
+        }
+
+        return copies;
+    }
+
+    private static Object countTextMatches(List<Token> tokens)
+    {
+        var target = new String("counter42".toCharArray());
+        var matches = 0;
+
+        for (var token : tokens)
+        {
+            if (token.text().equals(target))
+            {
+                matches++;
+            }
+        }
+
+        return matches;
+    }
+
+    private static Object countSymbolMatches(TokenBuffer tokens)
+    {
+        var target = tokens.symbolTable().intern("counter42");
+        var matches = 0;
+
+        for (int i = 0; i < tokens.size(); i++)
+        {
+            if (tokens.symbol(i) == target)
+            {
+                matches++;
+            }
+        }
+
+        return matches;
+    }
+
+    /**
+     * Returns the number of bytes of heap that the task's result keeps alive.
+     */
+    private static double measureHeap(Benchmarks.Task task)
+    {
+        var runtime = Runtime.getRuntime();
+
+        System.gc();
+        var before = runtime.totalMemory() - runtime.freeMemory();
+
+        var result = task.run();
+
+        System.gc();
+        var after = runtime.totalMemory() - runtime.freeMemory();
+
+        // Keep the result alive until after it's been measured.
+        if (result.hashCode() == 42)
+        {
+            System.out.println();
+        }
+
+        return after - before;
+    }
+}
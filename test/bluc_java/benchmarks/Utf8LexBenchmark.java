@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package bluc_java.benchmarks;
+
+import bluc_java.Lexer;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Measures the throughput of Lexer.lexFile when it decodes the file into
+ *  chars first ("chars"), and when it lexes the file's UTF-8 bytes directly
+ *  ("bytes"). Both inputs are mostly ASCII, but one has non-ASCII text in its
+ *  strings and identifiers.
+ *
+ * @author john
+ */
+public class Utf8LexBenchmark
+{
+    public static void main(String[] args) throws IOException
+    {
+        var inputs = new String[][]{
+            {
+                "ascii",
+                "fn compute_total(items, count) {\n"
+                + "    var running_total = 0 # accumulate\n"
+                + "    print(\"processing the next batch of items now\")\n"
+                + "}\n"
+            },
+            {
+                "some non-ascii",
+                "fn größe_berechnen(items, count) {\n"
+                + "    var zähler = 0 # zählt\n"
+                + "    print(\"処理中 der nächste Stapel 😀\")\n"
+                + "}\n"
+            }
+        };
+
+        for (var input : inputs)
+        {
+            var file = Files.createTempFile("bluc_utf8_benchmark", ".bluc");
+            file.toFile().deleteOnExit();
+
+            Files.writeString(file, input[1].repeat(20_000));
+
+            var byteCount = Files.size(file);
+
+            for (var doLexBytes : new boolean[]{false, true})
+            {
+                var nanosPerByte
+                    = Benchmarks.nanosPerUnit(
+                        () ->
+                        {
+                            var lexer = new Lexer();
+                            lexer.doLexBytes(doLexBytes);
+
+                            return lexer.lexFile(file.toString());
+                        },
+                        byteCount,
+                        30,
+                        30);
+
+                System.out.println(String.format(
+                    "%-48s %10.1f MB/s",
+                    (doLexBytes ? "bytes, " : "chars, ") + input[0],
+                    1000 / nanosPerByte));
+            }
+        }
+    }
+}
@@ -107,7 +107,8 @@ public class LexedTokenBuilder
         var newLexedTokens
                 = new Lexer()
                 .lexString(unlexedLines)
-                .data(); 
+                .data()
+                .toTokenList();
         
         // Remove the SOF and EOF tokens, since we already add them in this
         //  builder automatically. This must be done because we may potentially
@@ -19,10 +19,20 @@
 package bluc_java.parser;
 
 import bluc_java.Result;
+import bluc_java.StreamingTokenSource;
 import bluc_java.Token;
+import bluc_java.TokenBuffer;
+import bluc_java.TokenKind;
 import bluc_java.parser.Parser.AdvanceParserErrCode;
 import bluc_java.parser.Parser.NextTokenErrCode;
+import bluc_java.parser.Parser.ParseResult;
 import bluc_java.parser.Parser.ParseResultErrCode;
+import bluc_java.parser.StmtSubparser.StmtResultErrCode;
+import bluc_java.parser.statements.FnStmt;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.util.ArrayList;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
@@ -121,6 +131,38 @@ public class ParserTest
         assertEquals(expResult, result);
     }
     
+    /**
+     * Test that the non-allocating peek accessors read the same fields as the
+     *  token that peek returns.
+     */
+    @Test
+    public void testPeekText_matchesPeek()
+    {
+        System.out.println("peekText");
+        
+        var testFileName    = "junit4_fake_test_file2.txt";
+        var builder         = new LexedTokenBuilder(testFileName);
+        
+        var testTokens
+                = builder
+                .addToken(1, 1, "a")
+                .addToken(1, 3, "b")
+                .addToken(2, 2, "aubergine")
+                .build();
+        
+        var instance = new Parser(testTokens);
+        instance.nextToken();
+        
+        var expResult = instance.peek(2);
+        
+        assertEquals(expResult.text(), instance.peekText(2));
+        assertEquals(expResult.lineNum(), instance.peekLineNum(2));
+        assertEquals(expResult.columnNum(), instance.peekColumnNum(2));
+        assertEquals(
+            expResult.text(),
+            instance.getTokenTextAt(instance.currentTokenIndex() + 2));
+    }
+    
     /**
      * Test that the "next" token in the parser, when the parser is at the
      *  penultimate token, is the EOF token.
@@ -515,6 +557,54 @@ public class ParserTest
         assertEquals(expResult, result);
     }
     
+    /**
+     * Test of currentTokenIs method, of class Parser.
+     */
+    @Test
+    public void testCurrentTokenIs_matchesKind()
+    {
+        System.out.println("currentTokenIs(int kind)");
+        
+        var testFileName    = "junit4_fake_test_file11.txt";
+        var builder         = new LexedTokenBuilder(testFileName);
+        
+        var testTokens
+                = builder
+                .addTokens("a == b")
+                .build();
+        
+        var instance    = new Parser(testTokens);
+        
+        instance.nextToken(2);
+        
+        assertTrue(instance.currentTokenIs(TokenKind.EQUAL_EQUAL));
+        assertFalse(instance.currentTokenIs(TokenKind.EQUAL));
+    }
+    
+    /**
+     * Test of peekIsAny method, of class Parser.
+     */
+    @Test
+    public void testPeekIsAny_matchesKindSet()
+    {
+        System.out.println("peekIsAny(int offset, long kindMask)");
+        
+        var testFileName    = "junit4_fake_test_file12.txt";
+        var builder         = new LexedTokenBuilder(testFileName);
+        var comparisons
+                = TokenKind.mask(TokenKind.LESS, TokenKind.GREATER);
+        
+        var testTokens
+                = builder
+                .addTokens("x < y")
+                .build();
+        
+        var instance    = new Parser(testTokens);
+        
+        assertTrue(instance.peekIsAny(2, comparisons));
+        assertFalse(instance.peekIsAny(1, comparisons));
+    }
+    
     /**
      * Test of currentLineNum method, of class Parser.
      */
@@ -967,7 +1057,7 @@ public class ParserTest
         var expResult
                 = true;
         var result
-                = instance.atEOF(7);
+                = instance.atEOF(8);
         
         assertEquals(expResult, result);
     }
@@ -1170,12 +1260,9 @@ public class ParserTest
         System.out.println("castToNextTokenError");
         
         var advanceResult
-                = new Result<AdvanceParserErrCode>();
+                = Result.failure(AdvanceParserErrCode.AT_EOF);
         var expResult
-                = new Result<NextTokenErrCode>();
-        
-        advanceResult.errCode(AdvanceParserErrCode.AT_EOF);
-        expResult.errCode(NextTokenErrCode.AT_EOF);
+                = Result.failure(NextTokenErrCode.AT_EOF);
         
         var result
                 = Parser.castToNextTokenError(advanceResult);
@@ -1183,6 +1270,43 @@ public class ParserTest
         assertEquals(expResult.errCode(), result.errCode());
     }
 
+    /**
+     * Test of skipToMatchingBracket method, of class Parser.
+     */
+    @Test
+    public void testSkipToMatchingBracket_skipsNestedGroup()
+    {
+        System.out.println("skipToMatchingBracket");
+        
+        var testFileName
+                = "junit4_fake_test.txt";
+        var builder
+                = new LexedTokenBuilder(testFileName);
+        var testTokens
+                = builder
+                .addTokens("fn f(a) {\n" +
+                           "    g([a, (b)], { c })\n" +
+                           "} d")
+                .build();
+        
+        var instance
+                = new Parser(testTokens);
+        var expResult
+                = "}";
+        
+        // Advance onto the "{".
+        instance.nextToken(6);
+        
+        var skipResult
+                = instance.skipToMatchingBracket();
+        var result
+                = instance.currentTokenText();
+        
+        assertTrue(skipResult.hasSucceeded());
+        assertEquals(expResult, result);
+        assertEquals("d", instance.peek(1).text());
+    }
+
     /**
      * Test of parse method, of class Parser.
      */
@@ -1215,6 +1339,312 @@ public class ParserTest
         assertEquals(expResult, result.errCode());
     }
 
+    /**
+     * Test that function bodies are only parsed when they're asked for, when
+     *  parsing bodies lazily.
+     */
+    @Test
+    public void testParse_lazyFnBodies()
+    {
+        System.out.println("parse - lazy fn bodies");
+        
+        var testFileName
+                = "junit4_fake_test.txt";
+        var testTokens
+                = new LexedTokenBuilder(testFileName)
+                .addTokens("fn outer(a, b) {\n" +
+                           "    fn inner() { }\n" +
+                           "}\n" +
+                           "fn empty() { }")
+                .build();
+        
+        var instance = new Parser(testTokens);
+        instance.doParseBodiesLazily(true);
+        
+        var ast = instance.parse().data();
+        var outer = (FnStmt) ast.get(0);
+        
+        assertEquals(2, ast.size());
+        assertEquals("outer", outer.name());
+        assertEquals(2, outer.params().size());
+        assertFalse(outer.isBodyParsed());
+        
+        var body = outer.body();
+        
+        assertTrue(outer.isBodyParsed());
+        assertSame(body, outer.body());
+        assertEquals("inner", ((FnStmt) body.data().get(0)).name());
+    }
+    
+    /**
+     * Test that a function whose body is longer than the window of a
+     *  streaming source still has its body parsed, including when bodies
+     *  are meant to be parsed lazily.
+     */
+    @Test
+    public void testParse_longFnBodyFromStreamingSource()
+    {
+        System.out.println("parse - long fn body from streaming source");
+        
+        var source = new StringBuilder("fn outer() {\n");
+        
+        for (int i = 0; i < 200; i++)
+        {
+            source.append("    fn inner").append(i).append("(a) { }\n");
+        }
+        
+        source.append("}\nfn last() { }");
+        
+        for (var doParseBodiesLazily : new boolean[]{false, true})
+        {
+            var instance
+                    = new Parser(new StreamingTokenSource(
+                        new StringReader(source.toString()),
+                        "junit4_fake_test.txt"));
+            instance.out(new PrintStream(new ByteArrayOutputStream()));
+            instance.doParseBodiesLazily(doParseBodiesLazily);
+            
+            var result = instance.parse();
+            var outer = (FnStmt) result.data().get(0);
+            
+            assertTrue(result.hasSucceeded());
+            assertEquals(2, result.data().size());
+            assertTrue(outer.isBodyParsed());
+            assertEquals(200, outer.body().data().size());
+        }
+    }
+
+    /**
+     * Test that a body that's parsed as it's read from a streaming source
+     *  ends at its own "}", rather than at the "}" of a block inside of it.
+     */
+    @Test
+    public void testParse_fnBodyWithNestedBlocksFromStreamingSource()
+    {
+        System.out.println("parse - fn body with nested blocks from "
+            + "streaming source");
+        
+        var source = "fn f {\n    a { b }\n    (c)\n}\nfn g { }";
+        var instance
+                = new Parser(new StreamingTokenSource(
+                    new StringReader(source), "junit4_fake_test.txt"));
+        instance.out(new PrintStream(new ByteArrayOutputStream()));
+        instance.err(new PrintStream(new ByteArrayOutputStream()));
+        
+        var ast = instance.parse().data();
+        
+        assertEquals(2, ast.size());
+        assertEquals("f", ((FnStmt) ast.get(0)).name());
+        assertEquals("g", ((FnStmt) ast.get(1)).name());
+    }
+    
+    /**
+     * Test that a function declaration that's cut off inside of its
+     *  parameters fails, rather than reading its last token forever.
+     */
+    @Test
+    public void testParse_truncatedFnParams()
+    {
+        System.out.println("parse - truncated fn params");
+        
+        var expResult = StmtResultErrCode.EXPECTED_FN_PARAMS.formattedMessage();
+        
+        for (var source : new String[]{"fn f(a,", "fn f(a"})
+        {
+            var errBytes = new ByteArrayOutputStream();
+            var instance
+                    = new Parser(new StreamingTokenSource(
+                        new StringReader(source), "junit4_fake_test.txt"));
+            instance.out(new PrintStream(new ByteArrayOutputStream()));
+            instance.err(new PrintStream(errBytes));
+            
+            var result = instance.parse();
+            
+            assertTrue(result.hasFailed());
+            assertTrue(errBytes.toString().contains(expResult));
+        }
+    }
+    
+    /**
+     * Test that a parameter list must separate its names with single commas.
+     */
+    @Test
+    public void testParse_malformedFnParams()
+    {
+        System.out.println("parse - malformed fn params");
+        
+        var expResult = StmtResultErrCode.EXPECTED_FN_PARAMS.formattedMessage();
+        
+        for (var source
+            : new String[]{"fn f(a b) { }", "fn f(,,) { }", "fn f(a,) { }"})
+        {
+            var errBytes = new ByteArrayOutputStream();
+            var instance
+                    = new Parser(new LexedTokenBuilder("junit4_fake_test.txt")
+                        .addTokens(source)
+                        .build());
+            instance.out(new PrintStream(new ByteArrayOutputStream()));
+            instance.err(new PrintStream(errBytes));
+            
+            var result = instance.parse();
+            
+            assertTrue(source, result.hasFailed());
+            assertTrue(source, errBytes.toString().contains(expResult));
+        }
+    }
+    
+    /**
+     * Test that the parameter list is optional, and that the body may start
+     *  on the next line, the way src/test.bluc declares its function.
+     */
+    @Test
+    public void testParse_fnWithoutParams()
+    {
+        System.out.println("parse - fn without params");
+        
+        var testTokens
+                = new LexedTokenBuilder("junit4_fake_test.txt")
+                .addTokens("fn test\n" +
+                           "{\n" +
+                           "}\n" +
+                           "fn pair(a, b) { }")
+                .build();
+        
+        var instance = new Parser(testTokens);
+        instance.out(new PrintStream(new ByteArrayOutputStream()));
+        
+        var result = instance.parse();
+        var test = (FnStmt) result.data().get(0);
+        
+        assertTrue(result.hasSucceeded());
+        assertEquals(2, result.data().size());
+        assertEquals("test", test.name());
+        assertTrue(test.params().isEmpty());
+        assertEquals(2, ((FnStmt) result.data().get(1)).params().size());
+    }
+    
+    /**
+     * Test that a body that's parsed along with its function keeps the
+     *  function, even though its statements can't be parsed yet, and that
+     *  each of the body's errors is only logged once.
+     */
+    @Test
+    public void testParse_fnBodyErrorsKeepFn()
+    {
+        System.out.println("parse - fn body errors keep fn");
+        
+        var testTokens
+                = new LexedTokenBuilder("junit4_fake_test.txt")
+                .addTokens("fn test\n" +
+                           "{\n" +
+                           "    a\n" +
+                           "}")
+                .build();
+        
+        var errBytes = new ByteArrayOutputStream();
+        var instance = new Parser(testTokens);
+        instance.out(new PrintStream(new ByteArrayOutputStream()));
+        instance.err(new PrintStream(errBytes));
+        
+        var result = instance.parse();
+        var errors = errBytes.toString().split("\\R");
+        
+        assertTrue(result.hasFailed());
+        assertEquals(1, result.data().size());
+        assertEquals("test", ((FnStmt) result.data().get(0)).name());
+        assertEquals(1, errors.length);
+        assertTrue(errors[0].contains(StmtResultErrCode
+            .FUNCTION_NOT_IMPLEMENTED_YET.formattedMessage()));
+    }
+    
+    /**
+     * Test that parsers on different threads report their own errors, since
+     *  the error codes they share don't hold any details of an error.
+     */
+    @Test
+    public void testParse_concurrentParsersKeepOwnDiagnostics()
+        throws Exception
+    {
+        System.out.println("parse - concurrent parsers keep own diagnostics");
+        
+        var names = new String[]{"a", "b", "c", "d"};
+        var results = new ParseResult[names.length][100];
+        var threads = new ArrayList<Thread>();
+        
+        for (int i = 0; i < names.length; i++)
+        {
+            var threadIndex = i;
+            var testTokens
+                    = new LexedTokenBuilder("junit4_fake_test.txt")
+                    .addTokens(names[i] + " end")
+                    .build();
+            
+            threads.add(new Thread(() ->
+            {
+                for (int run = 0; run < 100; run++)
+                {
+                    var instance = new Parser(testTokens);
+                    instance.out(new PrintStream(new ByteArrayOutputStream()));
+                    instance.err(new PrintStream(new ByteArrayOutputStream()));
+                    
+                    results[threadIndex][run] = instance.parse();
+                }
+            }));
+        }
+        
+        for (var thread : threads)
+        {
+            thread.start();
+        }
+        
+        for (var thread : threads)
+        {
+            thread.join();
+        }
+        
+        for (int i = 0; i < names.length; i++)
+        {
+            for (var result : results[i])
+            {
+                assertEquals(
+                    ParseResultErrCode.FATAL_UNKNOWN_ERROR,
+                    result.errCode());
+                assertEquals(names[i], result.diagnostic().token().text());
+                assertEquals(names[i], result.errToken().text());
+            }
+        }
+    }
+
+    /**
+     * Test that a parser only parses once, until it's reset.
+     */
+    @Test
+    public void testReset_allowsParsingAgain()
+    {
+        System.out.println("reset - allows parsing again");
+        
+        var testFileName
+                = "junit4_fake_test.txt";
+        var testTokens
+                = new LexedTokenBuilder(testFileName)
+                .addTokens("I am no longer hungry after eating lunch")
+                .build();
+        
+        var instance = new Parser(testTokens);
+        instance.parse();
+        
+        assertEquals(
+            ParseResultErrCode.PARSER_ALREADY_RAN,
+            instance.parse().errCode());
+        
+        instance.reset(TokenBuffer.fromTokens(testTokens));
+        
+        var expResult = ParseResultErrCode.FATAL_UNKNOWN_ERROR;
+        var result = instance.parse();
+        
+        assertEquals(expResult, result.errCode());
+    }
+
     /**
      * Test of currentTokenIndex method, of class Parser.
      */